@@ -1,22 +1,41 @@
 package io.github.rerorero.kafka.jsonpath;
 
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 public class Accessor {
 
     public interface Getter<T> {
         /**
-         * Run the tasks generated from JsonPath to get the value from the given record.
+         * Evaluate the JsonPath to get the value from the given record.
          *
          * @param t A record from which to get the values
          * @return Map of field paths and values for retrieved values
          */
         Map<String, Object> run(T t);
+
+        /**
+         * @param t A record to test
+         * @return true if the JsonPath matches any value in the given record
+         */
+        default boolean exists(T t) {
+            return !run(t).isEmpty();
+        }
+
+        /**
+         * @param t A record to test
+         * @return the number of values matched by the JsonPath, which equals to the size of the result of run(t)
+         */
+        default int count(T t) {
+            return run(t).size();
+        }
     }
 
     public interface Updater<T> {
         /**
-         * Run the tasks generated from JsonPath and create a new record with updated value.
+         * Evaluate the JsonPath and create a new record with updated value.
          *
          * @param org           Original record
          * @param valueToUpdate Map of field paths and updated values
@@ -24,4 +43,95 @@ public class Accessor {
          */
         T run(T org, Map<String, Object> valueToUpdate);
     }
+
+    public interface Remover<T> {
+        /**
+         * Create a new record from which the values matched by the JsonPath are removed.
+         *
+         * @param org Original record
+         * @return a new record instance without the matched values.
+         */
+        T run(T org);
+    }
+
+    public interface Mover<T> {
+        /**
+         * Create a new record in which the value at the source path is moved to the target path.
+         *
+         * @param org Original record
+         * @return a new record instance with the value moved.
+         */
+        T run(T org);
+    }
+
+    public interface Projector<T> {
+        /**
+         * Create a new record which contains only the subtrees selected by the JsonPaths.
+         *
+         * @param org Original record
+         * @return a new record instance with only the selected subtrees.
+         */
+        T run(T org);
+    }
+
+    public interface Differ<T> {
+        /**
+         * Compare the values matched by the JsonPaths in the two records.
+         *
+         * @param before record before the change
+         * @param after  record after the change
+         * @return paths of the values which differ, in the same format as the keys returned by Getter.run()
+         */
+        Set<String> run(T before, T after);
+
+        /**
+         * @param before record before the change
+         * @param after  record after the change
+         * @return true if any value matched by the JsonPaths differs
+         */
+        default boolean changed(T before, T after) {
+            return !run(before, after).isEmpty();
+        }
+    }
+
+    /**
+     * Handler of type mismatches in lenient mode.
+     * Accessors created with a MismatchHandler treat a node which is null or is not a Map/Struct or an array
+     * as a non-match and report it to the handler, instead of throwing JsonPathException.
+     */
+    public interface MismatchHandler {
+        /**
+         * Ignores mismatches entirely.
+         */
+        MismatchHandler IGNORE = description -> {
+        };
+
+        /**
+         * @param description description of the mismatch, which is built only when it is requested
+         */
+        void onMismatch(Supplier<String> description);
+    }
+
+    /**
+     * A thread-safe MismatchHandler which just counts mismatches.
+     */
+    public static class MismatchCounter implements MismatchHandler {
+        private final LongAdder count = new LongAdder();
+
+        @Override
+        public void onMismatch(Supplier<String> description) {
+            count.increment();
+        }
+
+        /**
+         * @return the number of mismatches reported so far
+         */
+        public long count() {
+            return count.sum();
+        }
+
+        public void reset() {
+            count.reset();
+        }
+    }
 }
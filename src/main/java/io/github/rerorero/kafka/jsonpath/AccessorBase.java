@@ -8,13 +8,27 @@ import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.apache.kafka.connect.errors.DataException;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 abstract class AccessorBase {
-    protected static <S> List<ParserListener.Task<S>> parse(String jsonPath, ParserListener.TaskGen<S> taskGen) {
+
+    /**
+     * Parse the given JsonPath into a sequence of path segments, which the accessors evaluate depth-first.
+     */
+    protected static PathSegment[] compile(String jsonPath) {
         ErrorListener errorListener = new ErrorListener();
 
         CharStream cs = CharStreams.fromString(jsonPath);
@@ -24,19 +38,55 @@ abstract class AccessorBase {
         JsonPathParser parser = new JsonPathParser(tokens);
         parser.addErrorListener(errorListener);
 
-        ParserListener<S> listner = new ParserListener<>(taskGen);
-        ParseTreeWalker walker = ParseTreeWalker.DEFAULT;
-        walker.walk(listner, parser.jsonpath());
-
+        final JsonPathParser.JsonpathContext tree = parser.jsonpath();
+        // Check the errors before walking, since the listener cannot handle an incomplete parse tree.
         errorListener.throwIfError(jsonPath);
 
-        return listner.getTasks();
+        ParserListener listener = new ParserListener();
+        ParseTreeWalker.DEFAULT.walk(listener, tree);
+        return listener.getSegments().toArray(new PathSegment[0]);
+    }
+
+    /**
+     * Parse the given JsonPath which must be a non-empty path consisting only of object subscripts.
+     */
+    protected static PathSegment[] compileDefinite(String jsonPath) {
+        final PathSegment[] segments = compile(jsonPath);
+        if (segments.length == 0) {
+            throw new JsonPathException("The path must not be the root: " + jsonPath);
+        }
+        for (PathSegment segment : segments) {
+            if (!segment.isField()) {
+                throw new JsonPathException("The path must not contain array subscripts: " + jsonPath);
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * @return true if the path of the segments starts with the prefix (or equals to it)
+     */
+    protected static boolean startsWith(PathSegment[] segments, PathSegment[] prefix) {
+        if (prefix.length > segments.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (!segments[i].key().equals(prefix[i].key())) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    protected static <S> void runTasks(S state, List<ParserListener.Task<S>> tasks) {
-        for (ParserListener.Task<S> task : tasks) {
-            task.apply(state);
+    /**
+     * Parse the given JsonPaths and merge them into a trie for projection.
+     */
+    protected static PathTrie compileProjection(Collection<String> jsonPaths) {
+        final List<PathSegment[]> paths = new ArrayList<>(jsonPaths.size());
+        for (String jsonPath : jsonPaths) {
+            paths.add(compile(jsonPath));
         }
+        return PathTrie.projection(paths);
     }
 
     protected static String pathOfObjectSub(String base, String keyName) {
@@ -47,42 +97,682 @@ abstract class AccessorBase {
         return base + "[" + index + "]";
     }
 
-    protected static class ArraySubUpdateParam {
-        final String path;
-        final int index;
-        final List<Object> parent;
+    /**
+     * Report a type mismatch to the handler, or throw JsonPathException if no handler is given (strict mode).
+     * The message is built only when it is needed.
+     */
+    protected static void mismatch(Accessor.MismatchHandler onMismatch, String path, String expected, Object actual) {
+        if (onMismatch == null) {
+            throw mismatchError(path, expected, actual);
+        }
+        onMismatch.onMismatch(() -> mismatchMessage(path, expected, actual));
+    }
+
+    /**
+     * Report a type mismatch at the path of the segments up to the depth, which is rendered only when the message is
+     * built or the exception is thrown. The description takes a copy of the indices, since the traversal goes on
+     * to update them after the handler returns.
+     *
+     * @param indices array indices visited, indexed by the depth of the segments
+     */
+    protected static void mismatch(Accessor.MismatchHandler onMismatch, PathSegment[] segments, int[] indices, int depth, String expected, Object actual) {
+        if (onMismatch == null) {
+            throw mismatchError(pathOf(segments, indices, depth), expected, actual);
+        }
+        final int[] visited = Arrays.copyOf(indices, depth);
+        onMismatch.onMismatch(() -> mismatchMessage(pathOf(segments, visited, depth), expected, actual));
+    }
 
-        ArraySubUpdateParam(String path, int index, List<Object> parent) {
-            this.path = path;
-            this.index = index;
-            this.parent = parent;
+    /**
+     * Report a type mismatch at the path of the segments up to the depth, which has no wildcards.
+     * The path is rendered only when the message is built or the exception is thrown.
+     */
+    protected static void mismatch(Accessor.MismatchHandler onMismatch, PathSegment[] segments, int depth, String expected, Object actual) {
+        if (onMismatch == null) {
+            throw mismatchError(pathOf(Arrays.copyOf(segments, depth)), expected, actual);
         }
+        onMismatch.onMismatch(() -> mismatchMessage(pathOf(Arrays.copyOf(segments, depth)), expected, actual));
     }
 
-    protected static Map<String, Object> mapSubscriptArray(Map<String, Object> pathMap, int index, Function<ArraySubUpdateParam, Object> onSubscript) {
-        Map<String, Object> updated = new HashMap<>();
+    /**
+     * @return the exception of a type mismatch, for the accessors which are always strict
+     */
+    protected static JsonPathException mismatchError(String path, String expected, Object actual) {
+        return new JsonPathException(mismatchMessage(path, expected, actual));
+    }
 
-        pathMap.forEach((path, cur) -> {
-            if (cur instanceof List<?> == false) {
-                throw new JsonPathException("field '" + path + "' is not an array but " + cur.getClass());
+    private static String mismatchMessage(String path, String expected, Object actual) {
+        return "field '" + path + "' is not " + expected + " but " + (actual == null ? "null" : actual.getClass());
+    }
+
+    /**
+     * @return a new list without the elements matched by the array subscript, or the passed list itself if nothing is matched.
+     */
+    protected static List<Object> removeElements(List<Object> list, PathSegment segment) {
+        if (segment.isWildcard()) {
+            return list.isEmpty() ? list : new ArrayList<>();
+        }
+        if (segment.index() >= list.size()) {
+            return list;
+        }
+        final List<Object> updated = new ArrayList<>(list);
+        updated.remove(segment.index());
+        return updated;
+    }
+
+    /**
+     * The object nodes (Map or Struct) of the data the accessor navigates.
+     */
+    protected interface ObjectModel {
+        /**
+         * @return description used for mismatch messages, such as "a Map"
+         */
+        String description();
+
+        boolean isObject(Object node);
+
+        /**
+         * @return the child of the object node, or null if it is missing
+         */
+        Object child(Object node, String key);
+
+        /**
+         * Replace the child of the object node, which is called only for an existing child.
+         */
+        void put(Object node, String key, Object value);
+
+        /**
+         * @return true if the object node has the field, even if its value is null
+         */
+        default boolean has(Object node, String key) {
+            return child(node, key) != null;
+        }
+    }
+
+    /**
+     * Receives the values matched by the path.
+     */
+    protected interface MatchCollector {
+        /**
+         * @param indices array indices visited, indexed by the depth of the segments. It is reused during the traversal.
+         */
+        void add(Object value, int[] indices);
+    }
+
+    /**
+     * Count the values matched by the path without building any result, with the same semantics as Getter.
+     * Matches at a trailing array subscript are counted from the size of the array without visiting the elements.
+     *
+     * @param stopAtFirst true to return as soon as a match is found
+     */
+    protected static int countMatches(PathSegment[] segments, Object root, ObjectModel model, Accessor.MismatchHandler onMismatch, boolean stopAtFirst) {
+        return PathEvaluator.count(segments, new int[segments.length], root, model, onMismatch, stopAtFirst);
+    }
+
+    /**
+     * Collect the values matched by the path into the buffer, with the same semantics as Getter.
+     * Nothing is allocated except for growing the buffer and building mismatch messages.
+     */
+    protected static void collectMatches(PathSegment[] segments, Object root, ObjectModel model, Accessor.MismatchHandler onMismatch, ResultBuffer buffer) {
+        buffer.begin(segments);
+        PathEvaluator.collect(segments, buffer.cursor(), root, model, onMismatch, buffer.collector());
+    }
+
+    /**
+     * Pass the values matched by the path to the collector in the order of traversal, with the same semantics as Getter.
+     */
+    protected static void collectMatches(PathSegment[] segments, Object root, ObjectModel model, Accessor.MismatchHandler onMismatch, MatchCollector collector) {
+        PathEvaluator.collect(segments, new int[segments.length], root, model, onMismatch, collector);
+    }
+
+    /**
+     * Stream the values matched by the path lazily, with the same semantics as Getter.
+     * The traversal proceeds only as far as the stream is consumed, so short-circuiting operations stop it early.
+     */
+    protected static Stream<Match> streamMatches(PathSegment[] segments, Object root, ObjectModel model, Accessor.MismatchHandler onMismatch) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+                new MatchIterator(segments, root, model, onMismatch), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Collect the values matched by the path into a new Map of paths and values, which is the result of Getter.
+     */
+    protected static Map<String, Object> collectMatches(PathSegment[] segments, Object root, ObjectModel model, Accessor.MismatchHandler onMismatch) {
+        final Map<String, Object> values = new HashMap<>();
+        PathEvaluator.collect(segments, new int[segments.length], root, model, onMismatch,
+                (value, indices) -> values.put(pathOf(segments, indices, segments.length), value));
+        return values;
+    }
+
+    /**
+     * Append the values matched by the path to the column, with the same semantics as Getter.
+     * Values which are not Long, Integer, Short or Byte are treated as mismatches, and appended as null in lenient mode.
+     */
+    protected static void collectLongs(PathSegment[] segments, Object root, ObjectModel model, Accessor.MismatchHandler onMismatch, LongColumn column) {
+        collectColumn(segments, root, model, onMismatch, column);
+    }
+
+    /**
+     * Append the values matched by the path to the column, with the same semantics as Getter.
+     * Values which are not Double, Float or an integer are treated as mismatches, and appended as null in lenient mode.
+     */
+    protected static void collectDoubles(PathSegment[] segments, Object root, ObjectModel model, Accessor.MismatchHandler onMismatch, DoubleColumn column) {
+        collectColumn(segments, root, model, onMismatch, column);
+    }
+
+    /**
+     * Append the values matched by the path to the column, with the same semantics as Getter.
+     * Values which are not Boolean are treated as mismatches, and appended as null in lenient mode.
+     */
+    protected static void collectBooleans(PathSegment[] segments, Object root, ObjectModel model, Accessor.MismatchHandler onMismatch, BooleanColumn column) {
+        collectColumn(segments, root, model, onMismatch, column);
+    }
+
+    private static void collectColumn(PathSegment[] segments, Object root, ObjectModel model, Accessor.MismatchHandler onMismatch, Column column) {
+        PathEvaluator.collect(segments, new int[segments.length], root, model, onMismatch, (value, indices) -> {
+            if (!append(column, value)) {
+                mismatch(onMismatch, segments, indices, segments.length, expectedBy(column), value);
+                column.addNull();
+            }
+        });
+    }
+
+    /**
+     * Append the value to the column, converting it to the primitive type of the column.
+     *
+     * @return false if the value cannot be held by the column, in which case nothing is appended
+     */
+    protected static boolean append(Column column, Object value) {
+        if (value == null) {
+            column.addNull();
+        } else if (column instanceof ObjectColumn) {
+            ((ObjectColumn) column).add(value);
+        } else if (column instanceof LongColumn && isIntegral(value)) {
+            ((LongColumn) column).add(((Number) value).longValue());
+        } else if (column instanceof DoubleColumn && (value instanceof Double || value instanceof Float || isIntegral(value))) {
+            ((DoubleColumn) column).add(((Number) value).doubleValue());
+        } else if (column instanceof BooleanColumn && value instanceof Boolean) {
+            ((BooleanColumn) column).add((Boolean) value);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return description of the values the column holds, used for mismatch messages
+     */
+    protected static String expectedBy(Column column) {
+        if (column instanceof LongColumn) {
+            return "an integer";
+        }
+        if (column instanceof DoubleColumn) {
+            return "a number";
+        }
+        return column instanceof BooleanColumn ? "a boolean" : "a value";
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+    /**
+     * Parse the given JsonPaths for columnar access, which must not contain wildcards
+     * so that each of them matches at most one value in a record.
+     */
+    protected static PathSegment[][] compileColumns(List<String> jsonPaths) {
+        final PathSegment[][] compiled = new PathSegment[jsonPaths.size()][];
+        for (int i = 0; i < compiled.length; i++) {
+            compiled[i] = compile(jsonPaths.get(i));
+            for (PathSegment segment : compiled[i]) {
+                if (segment.isWildcard()) {
+                    throw new JsonPathException("The path for a column must not contain wildcards: " + jsonPaths.get(i));
+                }
             }
-            List<Object> curList = (List<Object>) cur;
+        }
+        return compiled;
+    }
+
+    /**
+     * @return the columns of the JsonPaths in the batch
+     * @throws JsonPathException if the batch has no column for a path or its size differs from the number of the records
+     */
+    protected static Column[] columnsOf(List<String> jsonPaths, ColumnBatch batch, int size) {
+        if (batch.size() != size) {
+            throw new JsonPathException("The batch has " + batch.size() + " values per column for " + size + " records");
+        }
+        final Column[] columns = new Column[jsonPaths.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = batch.column(jsonPaths.get(i));
+        }
+        return columns;
+    }
 
-            for (int i = 0; i < curList.size(); i++) {
-                if (index >= 0 && index != i) {
-                    continue;
+    /**
+     * Get the value at the path which has no wildcards, with the same semantics as Getter.
+     *
+     * @param end number of the segments to follow
+     * @return the value, or null if it is missing
+     */
+    protected static Object valueAt(PathSegment[] segments, int end, Object root, ObjectModel model, Accessor.MismatchHandler onMismatch) {
+        Object cur = root;
+        for (int depth = 0; depth < end; depth++) {
+            final PathSegment segment = segments[depth];
+            if (segment.isField()) {
+                if (!model.isObject(cur)) {
+                    mismatch(onMismatch, segments, depth + 1, model.description(), cur);
+                    return null;
                 }
-                String childPath = pathOfArraySub(path, i);
-                try {
-                    Object child = onSubscript.apply(new ArraySubUpdateParam(childPath, i, curList));
-                    updated.put(childPath, child);
-                } catch (DataException e) {
-                    throw new JsonPathException("An error occurred during processing of Array '" + childPath + "': " + e.getMessage(), e);
+                cur = model.child(cur, segment.key());
+                if (cur == null) {
+                    return null;
                 }
+                continue;
             }
-        });
+            if (cur instanceof List == false) {
+                mismatch(onMismatch, segments, depth, "an array", cur);
+                return null;
+            }
+            final List<Object> list = (List<Object>) cur;
+            if (segment.index() >= list.size()) {
+                return null;
+            }
+            cur = list.get(segment.index());
+        }
+        return cur;
+    }
 
-        return updated;
+    /**
+     * Replace the value at the path which has no wildcards in place, with the same semantics as updateMatches().
+     * The passed data has to be a mutable copy.
+     */
+    protected static void updateAt(PathSegment[] segments, Object root, ObjectModel model, Accessor.MismatchHandler onMismatch, Object newValue) {
+        if (segments.length == 0 || newValue == null) {
+            return;
+        }
+        final int depth = segments.length - 1;
+        final Object parent = valueAt(segments, depth, root, model, onMismatch);
+        if (parent == null && depth > 0) {
+            return;
+        }
+        final PathSegment segment = segments[depth];
+        if (segment.isField()) {
+            final int[] indices = indicesOf(segments);
+            final Object child = fieldOf(segments, indices, depth, parent, model, onMismatch);
+            if (child != null && isLeaf(model, child)) {
+                putField(segments, indices, depth, parent, model, newValue);
+            }
+            return;
+        }
+        if (parent instanceof List == false) {
+            mismatch(onMismatch, segments, depth, "an array", parent);
+            return;
+        }
+        final List<Object> list = (List<Object>) parent;
+        if (segment.index() < list.size() && isLeaf(model, list.get(segment.index()))) {
+            setElement(list, segment.index(), newValue);
+        }
+    }
+
+    private static int[] indicesOf(PathSegment[] segments) {
+        final int[] indices = new int[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            indices[i] = segments[i].isField() ? 0 : segments[i].index();
+        }
+        return indices;
+    }
+
+    // a value missing from a record, such as an array element past the end, which differs from a null value
+    private static final Object ABSENT = new Object();
+
+    /**
+     * Walk the two records in lockstep along the path and collect the paths of the values which differ.
+     * Subtrees which are the same instance in both records are skipped, and a value missing in one record
+     * differs from any value in the other, including null.
+     *
+     * @param changed Set to which the changed paths are added, or null to stop at the first change
+     * @return true if a change is found and changed is null
+     */
+    protected static boolean diffMatches(PathSegment[] segments, Object before, Object after, ObjectModel model, Accessor.MismatchHandler onMismatch, Set<String> changed) {
+        return diffMatches(segments, new int[segments.length], 0, before, after, model, onMismatch, changed);
+    }
+
+    private static boolean diffMatches(PathSegment[] segments, int[] indices, int depth, Object before, Object after, ObjectModel model, Accessor.MismatchHandler onMismatch, Set<String> changed) {
+        if (before == after) {
+            return false;
+        }
+        if (depth == segments.length) {
+            if (Objects.deepEquals(before, after)) {
+                return false;
+            }
+            if (changed == null) {
+                return true;
+            }
+            changed.add(pathOf(segments, indices, depth));
+            return false;
+        }
+        final PathSegment segment = segments[depth];
+        if (segment.isField()) {
+            return diffMatches(segments, indices, depth + 1,
+                    childOf(segments, indices, depth, before, model, onMismatch),
+                    childOf(segments, indices, depth, after, model, onMismatch), model, onMismatch, changed);
+        }
+
+        final List<Object> beforeList = listOf(segments, indices, depth, before, onMismatch);
+        final List<Object> afterList = listOf(segments, indices, depth, after, onMismatch);
+        final int from = segment.isWildcard() ? 0 : segment.index();
+        final int to = segment.isWildcard() ? Math.max(beforeList.size(), afterList.size()) : segment.index() + 1;
+        for (int i = from; i < to; i++) {
+            indices[depth] = i;
+            final Object b = i < beforeList.size() ? beforeList.get(i) : ABSENT;
+            final Object a = i < afterList.size() ? afterList.get(i) : ABSENT;
+            if (diffMatches(segments, indices, depth + 1, b, a, model, onMismatch, changed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the child of the node at the field subscript, or ABSENT if the node is absent, null or not an object,
+     * or has no such field
+     */
+    private static Object childOf(PathSegment[] segments, int[] indices, int depth, Object node, ObjectModel model, Accessor.MismatchHandler onMismatch) {
+        if (node == null || node == ABSENT) {
+            return ABSENT;
+        }
+        final Object child = fieldOf(segments, indices, depth, node, model, onMismatch);
+        if (child != null) {
+            return child;
+        }
+        return model.isObject(node) && model.has(node, segments[depth].key()) ? null : ABSENT;
+    }
+
+    /**
+     * @return the node as a List, or an empty List if the node is absent, null or not an array
+     */
+    private static List<Object> listOf(PathSegment[] segments, int[] indices, int depth, Object node, Accessor.MismatchHandler onMismatch) {
+        if (node instanceof List) {
+            return (List<Object>) node;
+        }
+        if (node != null && node != ABSENT) {
+            mismatch(onMismatch, segments, indices, depth, "an array", node);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Parse the keys of the values to update into a trie, against the segments of the path.
+     * Field subscripts are fixed by the path, so the trie branches only at array subscripts by the index,
+     * and the new values are held at the leaves. Keys which are not matched by the path and null values are ignored
+     * since they would never be applied.
+     */
+    protected static PathTrie compileUpdates(PathSegment[] segments, Map<String, Object> valueToUpdate) {
+        final PathTrie root = new PathTrie();
+        final int[] indices = new int[segments.length];
+        for (Map.Entry<String, Object> entry : valueToUpdate.entrySet()) {
+            if (entry.getValue() == null || !matchPath(segments, entry.getKey(), indices)) {
+                continue;
+            }
+            PathTrie node = root;
+            for (int i = 0; i < segments.length; i++) {
+                if (!segments[i].isField()) {
+                    node = node.addIndex(indices[i]);
+                }
+            }
+            node.setValue(entry.getValue());
+        }
+        return root;
+    }
+
+    /**
+     * Match the path in the format of the keys returned by Getter against the segments, and extract its array indices.
+     *
+     * @param indices array to which the array indices are written, indexed by the depth of the segments
+     * @return true if the path is matched by the segments
+     */
+    protected static boolean matchPath(PathSegment[] segments, String path, int[] indices) {
+        if (!path.startsWith("$")) {
+            return false;
+        }
+        int pos = 1;
+        for (int i = 0; i < segments.length; i++) {
+            final PathSegment segment = segments[i];
+            if (segment.isField()) {
+                final String key = segment.key();
+                if (!path.startsWith(".", pos) || !path.startsWith(key, pos + 1)) {
+                    return false;
+                }
+                pos += key.length() + 1;
+                continue;
+            }
+            if (!path.startsWith("[", pos)) {
+                return false;
+            }
+            pos++;
+            int index = 0;
+            final int start = pos;
+            while (pos < path.length() && Character.isDigit(path.charAt(pos))) {
+                index = index * 10 + (path.charAt(pos++) - '0');
+            }
+            if (pos == start || !path.startsWith("]", pos)) {
+                return false;
+            }
+            pos++;
+            if (!segment.isWildcard() && segment.index() != index) {
+                return false;
+            }
+            indices[i] = index;
+        }
+        return pos == path.length();
+    }
+
+    /**
+     * Replace the values matched by the path in place, with the semantics of Updater:
+     * Objects and arrays are never replaced, and a null value is replaced only if it is an array element.
+     * The passed data has to be a mutable copy.
+     *
+     * @param transform function which returns the new value from the current one, or null to keep the current value
+     */
+    protected static void updateMatches(PathSegment[] segments, Object root, ObjectModel model, Accessor.MismatchHandler onMismatch, Function<Object, Object> transform) {
+        if (segments.length == 0) {
+            return;
+        }
+        updateMatches(segments, new int[segments.length], 0, root, model, onMismatch, transform);
+    }
+
+    private static void updateMatches(PathSegment[] segments, int[] indices, int depth, Object cur, ObjectModel model, Accessor.MismatchHandler onMismatch, Function<Object, Object> transform) {
+        final PathSegment segment = segments[depth];
+        final boolean last = depth == segments.length - 1;
+        if (segment.isField()) {
+            final Object child = fieldOf(segments, indices, depth, cur, model, onMismatch);
+            if (child == null) {
+                return;
+            }
+            if (!last) {
+                updateMatches(segments, indices, depth + 1, child, model, onMismatch, transform);
+            } else if (isLeaf(model, child)) {
+                putField(segments, indices, depth, cur, model, transform.apply(child));
+            }
+            return;
+        }
+
+        if (cur instanceof List == false) {
+            mismatch(onMismatch, segments, indices, depth, "an array", cur);
+            return;
+        }
+        final List<Object> list = (List<Object>) cur;
+        final int from = segment.isWildcard() ? 0 : segment.index();
+        final int to = segment.isWildcard() ? list.size() : Math.min(segment.index() + 1, list.size());
+        for (int i = from; i < to; i++) {
+            indices[depth] = i;
+            final Object child = list.get(i);
+            if (!last) {
+                updateMatches(segments, indices, depth + 1, child, model, onMismatch, transform);
+            } else if (isLeaf(model, child)) {
+                setElement(list, i, transform.apply(child));
+            }
+        }
     }
 
+    /**
+     * Collect the locations of the values which updateMatches() would replace, in the order of traversal.
+     * The passed data has to be a mutable copy, which the locations modify.
+     */
+    protected static List<Locations.Location> locateMatches(PathSegment[] segments, Object root, ObjectModel model, Accessor.MismatchHandler onMismatch) {
+        final List<Locations.Location> locations = new ArrayList<>();
+        if (segments.length > 0) {
+            locateMatches(segments, new int[segments.length], 0, root, model, onMismatch, locations);
+        }
+        return locations;
+    }
+
+    private static void locateMatches(PathSegment[] segments, int[] indices, int depth, Object cur, ObjectModel model, Accessor.MismatchHandler onMismatch, List<Locations.Location> locations) {
+        final PathSegment segment = segments[depth];
+        final boolean last = depth == segments.length - 1;
+        if (segment.isField()) {
+            final Object child = fieldOf(segments, indices, depth, cur, model, onMismatch);
+            if (child == null) {
+                return;
+            }
+            if (!last) {
+                locateMatches(segments, indices, depth + 1, child, model, onMismatch, locations);
+            } else if (isLeaf(model, child)) {
+                locations.add(new Locations.Location(segments, indices.clone(), model, cur));
+            }
+            return;
+        }
+
+        if (cur instanceof List == false) {
+            mismatch(onMismatch, segments, indices, depth, "an array", cur);
+            return;
+        }
+        final List<Object> list = (List<Object>) cur;
+        final int from = segment.isWildcard() ? 0 : segment.index();
+        final int to = segment.isWildcard() ? list.size() : Math.min(segment.index() + 1, list.size());
+        for (int i = from; i < to; i++) {
+            indices[depth] = i;
+            final Object child = list.get(i);
+            if (!last) {
+                locateMatches(segments, indices, depth + 1, child, model, onMismatch, locations);
+            } else if (isLeaf(model, child)) {
+                locations.add(new Locations.Location(segments, indices.clone(), model, list));
+            }
+        }
+    }
+
+    /**
+     * Replace the values at the keys of the trie built by compileUpdates() in place, with the same semantics as
+     * updateMatches(). Only the branches which have a value to update are visited, so the cost depends on the number
+     * of the updates rather than on the size of the arrays.
+     */
+    protected static void updateSelected(PathSegment[] segments, Object root, ObjectModel model, Accessor.MismatchHandler onMismatch, PathTrie updates) {
+        if (segments.length == 0 || updates.isEmpty()) {
+            return;
+        }
+        updateSelected(segments, new int[segments.length], 0, root, model, onMismatch, updates);
+    }
+
+    private static void updateSelected(PathSegment[] segments, int[] indices, int depth, Object cur, ObjectModel model, Accessor.MismatchHandler onMismatch, PathTrie node) {
+        final PathSegment segment = segments[depth];
+        final boolean last = depth == segments.length - 1;
+        if (segment.isField()) {
+            final Object child = fieldOf(segments, indices, depth, cur, model, onMismatch);
+            if (child == null) {
+                return;
+            }
+            if (!last) {
+                updateSelected(segments, indices, depth + 1, child, model, onMismatch, node);
+            } else if (isLeaf(model, child)) {
+                putField(segments, indices, depth, cur, model, node.value());
+            }
+            return;
+        }
+
+        if (cur instanceof List == false) {
+            mismatch(onMismatch, segments, indices, depth, "an array", cur);
+            return;
+        }
+        final List<Object> list = (List<Object>) cur;
+        for (Map.Entry<Integer, PathTrie> entry : node.indexEntries()) {
+            final int i = entry.getKey();
+            if (i >= list.size()) {
+                continue;
+            }
+            indices[depth] = i;
+            final Object child = list.get(i);
+            if (!last) {
+                updateSelected(segments, indices, depth + 1, child, model, onMismatch, entry.getValue());
+            } else if (isLeaf(model, child)) {
+                setElement(list, i, entry.getValue().value());
+            }
+        }
+    }
+
+    /**
+     * @return the child of the object node at the field subscript, or null if it is missing or the node is not an object
+     */
+    private static Object fieldOf(PathSegment[] segments, int[] indices, int depth, Object cur, ObjectModel model, Accessor.MismatchHandler onMismatch) {
+        if (!model.isObject(cur)) {
+            mismatch(onMismatch, segments, indices, depth + 1, model.description(), cur);
+            return null;
+        }
+        return model.child(cur, segments[depth].key());
+    }
+
+    /**
+     * @return true if the node is neither an object nor an array, which is the only kind of values Updater replaces
+     */
+    private static boolean isLeaf(ObjectModel model, Object node) {
+        return !model.isObject(node) && !(node instanceof List);
+    }
+
+    private static void putField(PathSegment[] segments, int[] indices, int depth, Object cur, ObjectModel model, Object newValue) {
+        if (newValue == null) {
+            return;
+        }
+        try {
+            model.put(cur, segments[depth].key(), newValue);
+        } catch (DataException e) {
+            throw new JsonPathException("An error occurred during processing of field '" + pathOf(segments, indices, depth + 1) + "': " + e.getMessage(), e);
+        }
+    }
+
+    private static void setElement(List<Object> list, int index, Object newValue) {
+        if (newValue != null) {
+            list.set(index, newValue);
+        }
+    }
+
+    /**
+     * Build the path string of the segments, in which wildcards are kept as `[*]`.
+     */
+    protected static String pathOf(PathSegment[] segments) {
+        final StringBuilder sb = new StringBuilder("$");
+        for (PathSegment segment : segments) {
+            if (segment.isField()) {
+                sb.append('.').append(segment.key());
+            } else if (segment.isWildcard()) {
+                sb.append("[*]");
+            } else {
+                sb.append('[').append(segment.index()).append(']');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Build the path string of the first `depth` segments, with the array indices being visited.
+     */
+    protected static String pathOf(PathSegment[] segments, int[] indices, int depth) {
+        final StringBuilder sb = new StringBuilder("$");
+        for (int i = 0; i < depth; i++) {
+            if (segments[i].isField()) {
+                sb.append('.').append(segments[i].key());
+            } else {
+                sb.append('[').append(indices[i]).append(']');
+            }
+        }
+        return sb.toString();
+    }
 }
@@ -0,0 +1,95 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * An updater which transforms the values matched by a Getter across a batch of records with a single call of
+ * an asynchronous function, such as a request to an external tokenization service, and writes the results back
+ * with an Updater. e.g.
+ * <pre>
+ *     AsyncBatchUpdater&lt;Struct&gt; updater = new AsyncBatchUpdater&lt;&gt;(
+ *             new StructAccessor.Getter("$.users[*].email"),
+ *             new StructAccessor.Updater("$.users[*].email"),
+ *             emails -&gt; tokenizer.tokenizeAll(emails));
+ *     List&lt;Struct&gt; tokenized = updater.run(records).join();
+ * </pre>
+ *
+ * @param <T> type of the records
+ */
+public class AsyncBatchUpdater<T> {
+    private final Accessor.Getter<T> getter;
+    private final Accessor.Updater<T> updater;
+    private final Function<List<Object>, CompletableFuture<List<Object>>> transform;
+
+    /**
+     * @param getter    Getter which retrieves the values to transform
+     * @param updater   Updater which writes the transformed values back, usually built from the same JsonPath as the getter
+     * @param transform function which receives the matched values of the whole batch and completes with
+     *                  the transformed values in the same order. A null result keeps the original value.
+     */
+    public AsyncBatchUpdater(Accessor.Getter<T> getter, Accessor.Updater<T> updater, Function<List<Object>, CompletableFuture<List<Object>>> transform) {
+        this.getter = getter;
+        this.updater = updater;
+        this.transform = transform;
+    }
+
+    /**
+     * Collect the matched values of all the records, transform them with one call of the function,
+     * and create a new record for each of the passed records with the transformed values applied.
+     *
+     * @param records Original records
+     * @return a future which completes with the new records in the same order as the passed records,
+     * or completes exceptionally if the function fails or returns a wrong number of values.
+     */
+    public CompletableFuture<List<T>> run(List<T> records) {
+        final List<Map<String, Object>> matches = new ArrayList<>(records.size());
+        final List<Object> values = new ArrayList<>();
+        for (T record : records) {
+            final Map<String, Object> matched = getter.run(record);
+            matches.add(matched);
+            values.addAll(matched.values());
+        }
+        if (values.isEmpty()) {
+            return CompletableFuture.completedFuture(apply(records, matches, Collections.emptyList()));
+        }
+
+        final CompletableFuture<List<Object>> transformed;
+        try {
+            transformed = transform.apply(Collections.unmodifiableList(values));
+        } catch (RuntimeException e) {
+            final CompletableFuture<List<T>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        return transformed.thenApply(results -> {
+            if (results == null || results.size() != values.size()) {
+                throw new JsonPathException("The transform function returned " + (results == null ? "null" : results.size() + " values")
+                        + " for " + values.size() + " values");
+            }
+            return apply(records, matches, results);
+        });
+    }
+
+    /**
+     * Write the results back to each record, which are in the order of the values of the matches.
+     */
+    private List<T> apply(List<T> records, List<Map<String, Object>> matches, List<Object> results) {
+        final List<T> updated = new ArrayList<>(records.size());
+        int position = 0;
+        for (int i = 0; i < records.size(); i++) {
+            final Map<String, Object> matched = matches.get(i);
+            final Map<String, Object> valueToUpdate = new HashMap<>(matched.size() * 2);
+            for (String path : matched.keySet()) {
+                valueToUpdate.put(path, results.get(position++));
+            }
+            updated.add(updater.run(records.get(i), valueToUpdate));
+        }
+        return updated;
+    }
+}
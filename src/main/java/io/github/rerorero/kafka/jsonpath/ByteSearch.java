@@ -0,0 +1,23 @@
+package io.github.rerorero.kafka.jsonpath;
+
+/**
+ * Searches of UTF-8 encoded JSON bytes used on the hot paths of JsonScanner.
+ * This is the baseline implementation for Java 8, and the multi-release JAR contains another one for Java 17
+ * under META-INF/versions/17, which must behave the same.
+ */
+final class ByteSearch {
+    private ByteSearch() {
+    }
+
+    /**
+     * @return the position of the first '"' or '\' from `from` until `limit`, or `limit` if there is none.
+     * `from` is returned as is if it is not less than `limit`.
+     */
+    static int indexOfQuoteOrBackslash(byte[] buf, int from, int limit) {
+        int i = from;
+        while (i < limit && buf[i] != '"' && buf[i] != '\\') {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,109 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import java.util.Arrays;
+
+/**
+ * A growable column of values with a null bitmap, which receives values from Getter without building a Map.
+ * The subclasses hold the values in a primitive array, except for ObjectColumn.
+ * A column can be kept by a task thread and reused after clear().
+ * This class is not thread-safe.
+ */
+public abstract class Column {
+    static final int DEFAULT_CAPACITY = 16;
+
+    // bit i is set if the value at position i is null
+    private long[] nulls;
+    int size;
+
+    Column(int initialCapacity) {
+        this.nulls = new long[(Math.max(initialCapacity, 1) + 63) >>> 6];
+    }
+
+    /**
+     * @return the number of values including nulls
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param position position of the value, from 0 to size() - 1
+     * @return true if the value at the position is null
+     */
+    public boolean isNull(int position) {
+        checkPosition(position);
+        return (nulls[position >>> 6] & (1L << position)) != 0;
+    }
+
+    /**
+     * @return the number of null values
+     */
+    public int nullCount() {
+        int count = 0;
+        for (int i = 0; i < (size + 63) >>> 6; i++) {
+            count += Long.bitCount(nulls[i]);
+        }
+        return count;
+    }
+
+    /**
+     * @param position position of the value, from 0 to size() - 1
+     * @return the value at the position as an Object, or null if it is null
+     */
+    public abstract Object getBoxed(int position);
+
+    /**
+     * Append a null value.
+     */
+    public void addNull() {
+        final int position = next();
+        nulls[position >>> 6] |= 1L << position;
+    }
+
+    /**
+     * Replace the value at the position with null.
+     */
+    public void setNull(int position) {
+        checkPosition(position);
+        nulls[position >>> 6] |= 1L << position;
+    }
+
+    /**
+     * Remove all the values.
+     */
+    public void clear() {
+        Arrays.fill(nulls, 0, (size + 63) >>> 6, 0L);
+        size = 0;
+    }
+
+    /**
+     * Reserve the position for a new value which is not null.
+     */
+    final int next() {
+        if (size == capacity()) {
+            grow(Math.max(size * 2, DEFAULT_CAPACITY));
+        }
+        if (size >>> 6 >= nulls.length) {
+            nulls = Arrays.copyOf(nulls, Math.max(nulls.length * 2, (size >>> 6) + 1));
+        }
+        return size++;
+    }
+
+    final void clearNull(int position) {
+        nulls[position >>> 6] &= ~(1L << position);
+    }
+
+    final void checkPosition(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Position " + position + " is out of the column of size " + size);
+        }
+    }
+
+    abstract int capacity();
+
+    abstract void grow(int capacity);
+}
@@ -0,0 +1,53 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Column vectors of a batch of records, one Column per JsonPath, in which the value at position i
+ * is the value of the path in the i-th record, or null if the record has no value at the path.
+ */
+public final class ColumnBatch {
+    private final List<String> paths;
+    private final Column[] columns;
+    private final int size;
+
+    ColumnBatch(List<String> paths, Column[] columns, int size) {
+        this.paths = Collections.unmodifiableList(paths);
+        this.columns = columns;
+        this.size = size;
+    }
+
+    /**
+     * @return the number of records
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the JsonPaths of the columns in order
+     */
+    public List<String> paths() {
+        return paths;
+    }
+
+    /**
+     * @param index index of the JsonPath in paths()
+     */
+    public Column column(int index) {
+        return columns[index];
+    }
+
+    /**
+     * @param path one of the JsonPaths in paths()
+     * @throws JsonPathException if the batch has no column for the path
+     */
+    public Column column(String path) {
+        final int index = paths.indexOf(path);
+        if (index < 0) {
+            throw new JsonPathException("The batch has no column for " + path);
+        }
+        return columns[index];
+    }
+}
@@ -0,0 +1,350 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Accessors for serialized JSON, which evaluate the JsonPath while tokenizing the bytes.
+ * Subtrees which are not on the path are skipped without building any objects,
+ * and the values are represented in the same way as JsonConverter does for schemaless data,
+ * so that the results are the same as MapAccessor against the deserialized Map.
+ */
+public class JsonBytesAccessor extends AccessorBase {
+
+    public static class Getter implements Accessor.Getter<byte[]> {
+        private final PathSegment[] segments;
+
+        /**
+         * Parse the given JsonPath and build a new Getter instance which
+         * retrieves values from the passed JSON bytes according to the json path.
+         *
+         * @param jsonPath JsonPath string
+         */
+        public Getter(String jsonPath) {
+            this.segments = compile(jsonPath);
+        }
+
+        /**
+         * Evaluate the JsonPath and get the value from the given JSON.
+         * The scan stops as soon as all matches are found, so the rest of the input is not validated.
+         * Objects on the path are scanned to the end, since the last of duplicate member names wins as in JsonConverter.
+         *
+         * @param json UTF-8 encoded JSON from which to get the values
+         * @return Map of field paths and values for retrieved values
+         */
+        public Map<String, Object> run(byte[] json) {
+            return run(json, 0, json.length);
+        }
+
+        /**
+         * Evaluate the JsonPath and get the value from the given JSON.
+         * The position of the passed buffer is not changed.
+         *
+         * @param json UTF-8 encoded JSON from which to get the values
+         * @return Map of field paths and values for retrieved values
+         */
+        public Map<String, Object> run(ByteBuffer json) {
+            if (json.hasArray()) {
+                return run(json.array(), json.arrayOffset() + json.position(), json.remaining());
+            }
+            return run(toArray(json));
+        }
+
+        /**
+         * Count the values matched by the JsonPath in the given JSON, skipping the matched values without building them.
+         */
+        @Override
+        public int count(byte[] json) {
+            final int[] count = new int[1];
+            walk(new JsonScanner(json, 0, json.length), segments, (scanner, path) -> {
+                count[0]++;
+                scanner.skipValue();
+            });
+            return count[0];
+        }
+
+        /**
+         * Check whether the JsonPath matches any value in the given JSON.
+         * The scan stops at the first match, so the rest of the input is not validated,
+         * except for the rest of the objects on the path to it.
+         */
+        @Override
+        public boolean exists(byte[] json) {
+            final boolean[] found = new boolean[1];
+            walk(new JsonScanner(json, 0, json.length), segments, new MatchHandler() {
+                @Override
+                public void onMatch(JsonScanner scanner, StringBuilder path) {
+                    found[0] = true;
+                }
+
+                @Override
+                public boolean done() {
+                    return found[0];
+                }
+            });
+            return found[0];
+        }
+
+        private Map<String, Object> run(byte[] json, int offset, int length) {
+            final Map<String, Object> values = new HashMap<>();
+            walk(new JsonScanner(json, offset, offset + length), segments,
+                    (scanner, path) -> values.put(path.toString(), scanner.readValue()));
+            return values;
+        }
+    }
+
+    public static class Updater implements Accessor.Updater<byte[]> {
+        private final PathSegment[] segments;
+
+        /**
+         * Parse the given JsonPath and build a new Updater instance which
+         * updates the passed JSON bytes according to the json path.
+         *
+         * @param jsonPath JsonPath string
+         */
+        public Updater(String jsonPath) {
+            this.segments = compile(jsonPath);
+        }
+
+        /**
+         * Evaluate the JsonPath and create new JSON bytes with updated value.
+         * Byte ranges which are not updated are copied verbatim, including whitespaces.
+         *
+         * @param org           Original UTF-8 encoded JSON
+         * @param valueToUpdate Map of field paths and updated values
+         * @return new JSON bytes with the passed valueToUpdate applied.
+         */
+        public byte[] run(byte[] org, Map<String, Object> valueToUpdate) {
+            if (valueToUpdate.isEmpty()) {
+                return Arrays.copyOf(org, org.length);
+            }
+            return update(org, 0, org.length, new SelectableUpdateState(valueToUpdate));
+        }
+
+        /**
+         * Evaluate the JsonPath and create new JSON bytes with updated value.
+         * Byte ranges which are not updated are copied verbatim, including whitespaces.
+         *
+         * @param org           Original UTF-8 encoded JSON
+         * @param valueToUpdate value to update
+         * @return new JSON bytes with the passed valueToUpdate applied.
+         */
+        public byte[] run(byte[] org, Object valueToUpdate) {
+            return update(org, 0, org.length, new SimpleUpdateState(valueToUpdate));
+        }
+
+        /**
+         * Same as {@link #run(byte[], Map)}. The position of the passed buffer is not changed.
+         */
+        public byte[] run(ByteBuffer org, Map<String, Object> valueToUpdate) {
+            if (valueToUpdate.isEmpty()) {
+                return toArray(org);
+            }
+            return update(org, new SelectableUpdateState(valueToUpdate));
+        }
+
+        /**
+         * Same as {@link #run(byte[], Object)}. The position of the passed buffer is not changed.
+         */
+        public byte[] run(ByteBuffer org, Object valueToUpdate) {
+            return update(org, new SimpleUpdateState(valueToUpdate));
+        }
+
+        private byte[] update(ByteBuffer json, UpdateState state) {
+            if (json.hasArray()) {
+                return update(json.array(), json.arrayOffset() + json.position(), json.remaining(), state);
+            }
+            final byte[] bytes = toArray(json);
+            return update(bytes, 0, bytes.length, state);
+        }
+
+        private byte[] update(byte[] json, int offset, int length, UpdateState state) {
+            final Patcher patcher = new Patcher(json, offset, length, state);
+            walk(new JsonScanner(json, offset, offset + length), segments, patcher);
+            return patcher.finish();
+        }
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static abstract class UpdateState {
+        abstract Object getNewValue(StringBuilder path);
+    }
+
+    private static class SelectableUpdateState extends UpdateState {
+        private final Map<String, Object> newValue;
+
+        SelectableUpdateState(Map<String, Object> newValue) {
+            this.newValue = newValue;
+        }
+
+        @Override
+        Object getNewValue(StringBuilder path) {
+            return newValue.get(path.toString());
+        }
+    }
+
+    private static class SimpleUpdateState extends UpdateState {
+        private final Object newValue;
+
+        SimpleUpdateState(Object newValue) {
+            this.newValue = newValue;
+        }
+
+        @Override
+        Object getNewValue(StringBuilder path) {
+            return newValue;
+        }
+    }
+
+    /**
+     * Copies the untouched byte ranges verbatim and splices in the serialized new values.
+     */
+    private static class Patcher implements MatchHandler {
+        private final byte[] json;
+        private final int end;
+        private final UpdateState state;
+        private final JsonWriter out;
+        private int copied;
+
+        Patcher(byte[] json, int offset, int length, UpdateState state) {
+            this.json = json;
+            this.end = offset + length;
+            this.state = state;
+            this.out = new JsonWriter(length + 16);
+            this.copied = offset;
+        }
+
+        @Override
+        public void onMatch(JsonScanner scanner, StringBuilder path) {
+            // Objects and arrays are not replaced, same as MapAccessor.
+            if (scanner.isObject() || scanner.isArray()) {
+                scanner.skipValue();
+                return;
+            }
+            final int valueStart = scanner.position();
+            scanner.skipValue();
+            final Object newVal = state.getNewValue(path);
+            if (newVal == null) {
+                return;
+            }
+            out.write(json, copied, valueStart - copied);
+            out.writeValue(newVal);
+            copied = scanner.position();
+        }
+
+        byte[] finish() {
+            out.write(json, copied, end - copied);
+            return out.toByteArray();
+        }
+    }
+
+    interface MatchHandler {
+        /**
+         * Called when the scanner is positioned at a matched value. The handler has to consume the value,
+         * unless it is done after the match.
+         */
+        void onMatch(JsonScanner scanner, StringBuilder path);
+
+        /**
+         * @return true to end the walk right after the current match, without scanning the rest of the input
+         */
+        default boolean done() {
+            return false;
+        }
+    }
+
+    static void walk(JsonScanner scanner, PathSegment[] segments, MatchHandler handler) {
+        final StringBuilder path = new StringBuilder("$");
+        if (segments.length == 0) {
+            handler.onMatch(scanner, path);
+            return;
+        }
+        walk(scanner, segments, 0, path, false, handler);
+    }
+
+    /**
+     * Apply segments[depth] to the value at the current position of the scanner.
+     *
+     * @param consume if true, the value has to be consumed entirely because the caller continues scanning after it.
+     *                Otherwise the scan stops right after the last match.
+     * @return true if the handler is done, in which case the scan stops where it is
+     */
+    private static boolean walk(JsonScanner scanner, PathSegment[] segments, int depth, StringBuilder path, boolean consume, MatchHandler handler) {
+        final PathSegment segment = segments[depth];
+        final boolean last = depth == segments.length - 1;
+        final int pathLength = path.length();
+
+        if (segment.isField()) {
+            if (!scanner.isObject()) {
+                throw new JsonPathException("field '" + pathOfObjectSub(path.toString(), segment.key()) + "' is not a Map but " + scanner.typeOfNext());
+            }
+            // Jackson keeps the last of duplicate members, so the member is applied after the whole object is scanned.
+            scanner.beginObject();
+            int member = -1;
+            for (boolean first = true; scanner.nextMember(first); first = false) {
+                if (scanner.memberNameEquals(segment.keyBytes())) {
+                    member = scanner.position();
+                }
+                scanner.skipValue();
+            }
+            if (member < 0) {
+                return false;
+            }
+            final int end = scanner.position();
+            scanner.position(member);
+            path.append('.').append(segment.key());
+            if (scanner.isNull()) {
+                // null field is handled as missing, same as MapAccessor.
+                scanner.skipValue();
+            } else if (last) {
+                handler.onMatch(scanner, path);
+                if (handler.done()) {
+                    return true;
+                }
+            } else if (walk(scanner, segments, depth + 1, path, consume, handler)) {
+                return true;
+            }
+            path.setLength(pathLength);
+            if (consume) {
+                scanner.position(end);
+            }
+            return false;
+        }
+
+        if (!scanner.isArray()) {
+            throw new JsonPathException("field '" + path + "' is not an array but " + scanner.typeOfNext());
+        }
+        final boolean wildcard = segment.isWildcard();
+        scanner.beginArray();
+        for (int i = 0; scanner.nextElement(i == 0); i++) {
+            if (!wildcard && i != segment.index()) {
+                scanner.skipValue();
+                continue;
+            }
+            path.append('[').append(i).append(']');
+            if (last) {
+                handler.onMatch(scanner, path);
+                if (handler.done()) {
+                    return true;
+                }
+            } else if (walk(scanner, segments, depth + 1, path, consume || wildcard, handler)) {
+                return true;
+            }
+            path.setLength(pathLength);
+            if (!wildcard) {
+                if (consume) {
+                    scanner.skipRest();
+                }
+                return false;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,440 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal pull tokenizer over UTF-8 encoded JSON bytes.
+ * It lets the caller skip values without building any object, and materializes values
+ * the same way as JsonConverter does for schemaless data (Map, List, Long, Double, Boolean and String).
+ */
+final class JsonScanner {
+    private final byte[] buf;
+    private final int limit;
+    private int pos;
+
+    JsonScanner(byte[] buf, int offset, int limit) {
+        this.buf = buf;
+        this.pos = offset;
+        this.limit = limit;
+    }
+
+    int position() {
+        return pos;
+    }
+
+    void position(int pos) {
+        this.pos = pos;
+    }
+
+    /**
+     * Skip whitespaces and return the next byte without consuming it.
+     */
+    byte peek() {
+        skipWhitespace();
+        if (pos >= limit) {
+            throw error("unexpected end of input");
+        }
+        return buf[pos];
+    }
+
+    boolean isNull() {
+        return peek() == 'n';
+    }
+
+    boolean isObject() {
+        return peek() == '{';
+    }
+
+    boolean isArray() {
+        return peek() == '[';
+    }
+
+    /**
+     * @return a short description of the type of the next value, used for error messages.
+     */
+    String typeOfNext() {
+        switch (peek()) {
+            case '{':
+                return "object";
+            case '[':
+                return "array";
+            case '"':
+                return "string";
+            case 't':
+            case 'f':
+                return "boolean";
+            case 'n':
+                return "null";
+            default:
+                return "number";
+        }
+    }
+
+    void beginObject() {
+        expect('{');
+    }
+
+    void beginArray() {
+        expect('[');
+    }
+
+    /**
+     * Move to the next member of the current object.
+     *
+     * @param first true if no member of the object has been read yet
+     * @return false if the end of the object is reached
+     */
+    boolean nextMember(boolean first) {
+        if (peek() == '}') {
+            pos++;
+            return false;
+        }
+        if (!first) {
+            expect(',');
+        }
+        return true;
+    }
+
+    /**
+     * Move to the next element of the current array.
+     *
+     * @param first true if no element of the array has been read yet
+     * @return false if the end of the array is reached
+     */
+    boolean nextElement(boolean first) {
+        if (peek() == ']') {
+            pos++;
+            return false;
+        }
+        if (!first) {
+            expect(',');
+        }
+        return true;
+    }
+
+    /**
+     * Read the name of the current member and the following colon.
+     *
+     * @param expected UTF-8 encoded name to compare with
+     * @return true if the name equals to the expected one
+     */
+    boolean memberNameEquals(byte[] expected) {
+        expect('"');
+        final int start = pos;
+        boolean escaped = false;
+        while (true) {
+            pos = ByteSearch.indexOfQuoteOrBackslash(buf, pos, limit);
+            if (pos >= limit) {
+                throw error("unterminated string");
+            }
+            if (buf[pos] == '"') {
+                break;
+            }
+            escaped = true;
+            pos += 2;
+        }
+        final int end = pos;
+        pos++;
+        expect(':');
+
+        if (escaped) {
+            pos = start - 1;
+            final String name = readString();
+            expect(':');
+            return name.equals(new String(expected, StandardCharsets.UTF_8));
+        }
+        if (end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (buf[start + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read the name of the current member and the following colon.
+     */
+    String memberName() {
+        final String name = readString();
+        expect(':');
+        return name;
+    }
+
+    /**
+     * Skip the next value without materializing it.
+     */
+    void skipValue() {
+        switch (peek()) {
+            case '{':
+            case '[':
+                pos++;
+                skipRest();
+                return;
+            case '"':
+                pos++;
+                skipStringBody();
+                return;
+            case 't':
+                expectLiteral("true");
+                return;
+            case 'f':
+                expectLiteral("false");
+                return;
+            case 'n':
+                expectLiteral("null");
+                return;
+            default:
+                skipNumber();
+        }
+    }
+
+    /**
+     * Skip the remaining members or elements of the object or array which has already been entered,
+     * including its closing bracket.
+     */
+    void skipRest() {
+        int depth = 1;
+        while (depth > 0) {
+            if (pos >= limit) {
+                throw error("unexpected end of input");
+            }
+            switch (buf[pos++]) {
+                case '{':
+                case '[':
+                    depth++;
+                    break;
+                case '}':
+                case ']':
+                    depth--;
+                    break;
+                case '"':
+                    skipStringBody();
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Read the next value and build the Object in the same representation as JsonConverter with schemas disabled.
+     */
+    Object readValue() {
+        switch (peek()) {
+            case '{': {
+                pos++;
+                final Map<String, Object> map = new HashMap<>();
+                for (boolean first = true; nextMember(first); first = false) {
+                    final String name = memberName();
+                    map.put(name, readValue());
+                }
+                return map;
+            }
+            case '[': {
+                pos++;
+                final List<Object> list = new ArrayList<>();
+                for (boolean first = true; nextElement(first); first = false) {
+                    list.add(readValue());
+                }
+                return list;
+            }
+            case '"':
+                return readString();
+            case 't':
+                expectLiteral("true");
+                return Boolean.TRUE;
+            case 'f':
+                expectLiteral("false");
+                return Boolean.FALSE;
+            case 'n':
+                expectLiteral("null");
+                return null;
+            default:
+                return readNumber();
+        }
+    }
+
+    String readString() {
+        expect('"');
+        final int start = pos;
+        pos = ByteSearch.indexOfQuoteOrBackslash(buf, pos, limit);
+        if (pos >= limit) {
+            throw error("unterminated string");
+        }
+        if (buf[pos] == '"') {
+            pos++;
+            return new String(buf, start, pos - 1 - start, StandardCharsets.UTF_8);
+        }
+
+        // slow path for escaped strings
+        final StringBuilder sb = new StringBuilder(new String(buf, start, pos - start, StandardCharsets.UTF_8));
+        while (true) {
+            if (pos >= limit) {
+                throw error("unterminated string");
+            }
+            final byte b = buf[pos];
+            if (b == '"') {
+                pos++;
+                return sb.toString();
+            }
+            if (b == '\\') {
+                pos++;
+                sb.append(readEscape());
+                continue;
+            }
+            final int runStart = pos;
+            pos = ByteSearch.indexOfQuoteOrBackslash(buf, pos, limit);
+            sb.append(new String(buf, runStart, pos - runStart, StandardCharsets.UTF_8));
+        }
+    }
+
+    private char readEscape() {
+        if (pos >= limit) {
+            throw error("unterminated string");
+        }
+        final byte b = buf[pos++];
+        switch (b) {
+            case '"':
+            case '\\':
+            case '/':
+                return (char) b;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                if (pos + 4 > limit) {
+                    throw error("invalid unicode escape");
+                }
+                int c = 0;
+                for (int i = 0; i < 4; i++) {
+                    final int digit = Character.digit(buf[pos++], 16);
+                    if (digit < 0) {
+                        throw error("invalid unicode escape");
+                    }
+                    c = (c << 4) | digit;
+                }
+                return (char) c;
+            default:
+                throw error("invalid escape character '" + (char) b + "'");
+        }
+    }
+
+    /**
+     * Read the next number exactly, without converting it to Long or Double.
+     */
+    BigDecimal readDecimal() {
+        peek();
+        final int start = pos;
+        skipNumber();
+        final String s = new String(buf, start, pos - start, StandardCharsets.US_ASCII);
+        try {
+            return new BigDecimal(s);
+        } catch (NumberFormatException e) {
+            throw error("invalid number '" + s + "'");
+        }
+    }
+
+    private Object readNumber() {
+        final int start = pos;
+        boolean integral = true;
+        skipNumber();
+        for (int i = start; i < pos; i++) {
+            final byte b = buf[i];
+            if (b == '.' || b == 'e' || b == 'E') {
+                integral = false;
+                break;
+            }
+        }
+        final String s = new String(buf, start, pos - start, StandardCharsets.US_ASCII);
+        try {
+            if (!integral) {
+                return Double.parseDouble(s);
+            }
+            if (pos - start <= 18) {
+                return Long.parseLong(s);
+            }
+            // Same as JsonConverter, which reads a big integral number with JsonNode.asLong()
+            return new BigInteger(s).longValue();
+        } catch (NumberFormatException e) {
+            throw error("invalid number '" + s + "'");
+        }
+    }
+
+    private void skipNumber() {
+        final int start = pos;
+        while (pos < limit) {
+            final byte b = buf[pos];
+            if ((b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E') {
+                pos++;
+            } else {
+                break;
+            }
+        }
+        if (start == pos) {
+            throw error("unexpected character '" + (char) buf[pos] + "'");
+        }
+    }
+
+    private void skipStringBody() {
+        while (true) {
+            pos = ByteSearch.indexOfQuoteOrBackslash(buf, pos, limit);
+            if (pos >= limit) {
+                throw error("unterminated string");
+            }
+            if (buf[pos++] == '"') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private void expectLiteral(String literal) {
+        if (pos + literal.length() > limit) {
+            throw error("unexpected end of input");
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (buf[pos + i] != literal.charAt(i)) {
+                throw error("invalid literal, expected '" + literal + "'");
+            }
+        }
+        pos += literal.length();
+    }
+
+    private void expect(char c) {
+        if (peek() != c) {
+            throw error("expected '" + c + "' but found '" + (char) buf[pos] + "'");
+        }
+        pos++;
+    }
+
+    private void skipWhitespace() {
+        while (pos < limit) {
+            final byte b = buf[pos];
+            if (b == ' ' || b == '\t' || b == '\n' || b == '\r') {
+                pos++;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private JsonPathException error(String message) {
+        return new JsonPathException("Malformed JSON at offset " + pos + ": " + message);
+    }
+}
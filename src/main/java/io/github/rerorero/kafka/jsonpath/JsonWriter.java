@@ -0,0 +1,166 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A growable byte buffer which serializes values into UTF-8 JSON,
+ * in the same representation as JsonConverter does for schemaless data.
+ */
+final class JsonWriter {
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] buf;
+    private int size;
+
+    JsonWriter(int capacity) {
+        this.buf = new byte[Math.max(capacity, 16)];
+    }
+
+    int size() {
+        return size;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buf, size);
+    }
+
+    void write(byte[] src, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(src, offset, buf, size, length);
+        size += length;
+    }
+
+    void writeByte(int b) {
+        ensureCapacity(1);
+        buf[size++] = (byte) b;
+    }
+
+    void writeValue(Object value) {
+        if (value == null) {
+            writeAscii("null");
+        } else if (value instanceof String) {
+            writeString((String) value);
+        } else if (value instanceof Boolean) {
+            writeAscii(value.toString());
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte
+                || value instanceof BigInteger || value instanceof BigDecimal) {
+            writeAscii(value.toString());
+        } else if (value instanceof Double || value instanceof Float) {
+            final double d = ((Number) value).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                throw new JsonPathException(value + " cannot be serialized as a JSON number");
+            }
+            writeAscii(value.toString());
+        } else if (value instanceof byte[]) {
+            writeString(Base64.getEncoder().encodeToString((byte[]) value));
+        } else if (value instanceof ByteBuffer) {
+            final ByteBuffer bb = ((ByteBuffer) value).duplicate();
+            final byte[] bytes = new byte[bb.remaining()];
+            bb.get(bytes);
+            writeString(Base64.getEncoder().encodeToString(bytes));
+        } else if (value instanceof Map) {
+            writeByte('{');
+            final Iterator<? extends Map.Entry<?, ?>> it = ((Map<?, ?>) value).entrySet().iterator();
+            while (it.hasNext()) {
+                final Map.Entry<?, ?> entry = it.next();
+                writeString(String.valueOf(entry.getKey()));
+                writeByte(':');
+                writeValue(entry.getValue());
+                if (it.hasNext()) {
+                    writeByte(',');
+                }
+            }
+            writeByte('}');
+        } else if (value instanceof List) {
+            writeByte('[');
+            final List<?> list = (List<?>) value;
+            for (int i = 0; i < list.size(); i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeValue(list.get(i));
+            }
+            writeByte(']');
+        } else {
+            throw new JsonPathException(value.getClass() + " is not supported to be serialized as JSON");
+        }
+    }
+
+    void writeString(String s) {
+        ensureCapacity(s.length() + 2);
+        buf[size++] = '"';
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                writeByte('\\');
+                writeByte(c);
+            } else if (c < 0x20) {
+                writeControl(c);
+            } else if (c < 0x80) {
+                writeByte(c);
+            } else if (c < 0x800) {
+                writeByte(0xc0 | (c >> 6));
+                writeByte(0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                final int cp = Character.toCodePoint(c, s.charAt(++i));
+                writeByte(0xf0 | (cp >> 18));
+                writeByte(0x80 | ((cp >> 12) & 0x3f));
+                writeByte(0x80 | ((cp >> 6) & 0x3f));
+                writeByte(0x80 | (cp & 0x3f));
+            } else {
+                writeByte(0xe0 | (c >> 12));
+                writeByte(0x80 | ((c >> 6) & 0x3f));
+                writeByte(0x80 | (c & 0x3f));
+            }
+        }
+        writeByte('"');
+    }
+
+    private void writeControl(char c) {
+        writeByte('\\');
+        switch (c) {
+            case '\b':
+                writeByte('b');
+                return;
+            case '\f':
+                writeByte('f');
+                return;
+            case '\n':
+                writeByte('n');
+                return;
+            case '\r':
+                writeByte('r');
+                return;
+            case '\t':
+                writeByte('t');
+                return;
+            default:
+                writeByte('u');
+                writeByte('0');
+                writeByte('0');
+                writeByte(HEX[c >> 4]);
+                writeByte(HEX[c & 0xf]);
+        }
+    }
+
+    private void writeAscii(String s) {
+        ensureCapacity(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            buf[size++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+        }
+    }
+}
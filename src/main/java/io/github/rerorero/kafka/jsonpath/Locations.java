@@ -0,0 +1,125 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import org.apache.kafka.connect.errors.DataException;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The locations of the values matched by an Updater in a copy of a record, which is built by Updater.locate().
+ * Each location holds the container of the value, so a value can be read and replaced without traversing the record
+ * again, e.g.
+ * <pre>
+ *     Locations&lt;Struct&gt; locations = new StructAccessor.Updater("$.users[*].email").locate(struct);
+ *     for (Locations.Location location : locations) {
+ *         location.set(normalize((String) location.get()));
+ *     }
+ *     Struct updated = locations.record();
+ * </pre>
+ * Only the copy is modified, never the original record. This class is not thread-safe.
+ *
+ * @param <T> type of the records
+ */
+public final class Locations<T> implements Iterable<Locations.Location> {
+    private final T record;
+    private final List<Location> locations;
+
+    Locations(T record, List<Location> locations) {
+        this.record = record;
+        this.locations = Collections.unmodifiableList(locations);
+    }
+
+    /**
+     * @return the copy of the record to which the locations point, including the values set so far
+     */
+    public T record() {
+        return record;
+    }
+
+    /**
+     * @return the number of the locations
+     */
+    public int size() {
+        return locations.size();
+    }
+
+    public boolean isEmpty() {
+        return locations.isEmpty();
+    }
+
+    /**
+     * @param position position of the location in the order of traversal, from 0 to size() - 1
+     * @return the location at the position
+     */
+    public Location get(int position) {
+        return locations.get(position);
+    }
+
+    @Override
+    public Iterator<Location> iterator() {
+        return locations.iterator();
+    }
+
+    /**
+     * A field of an object or an element of an array in the copy of a record.
+     */
+    public static final class Location {
+        private final PathSegment[] segments;
+        private final int[] indices;
+        private final AccessorBase.ObjectModel model;
+        private final Object container;
+
+        /**
+         * @param indices   array indices of the location, indexed by the depth of the segments
+         * @param container object node which has the field, or List which has the element, at the last segment
+         */
+        Location(PathSegment[] segments, int[] indices, AccessorBase.ObjectModel model, Object container) {
+            this.segments = segments;
+            this.indices = indices;
+            this.model = model;
+            this.container = container;
+        }
+
+        /**
+         * @return the path of the value, in the same format as the keys returned by Getter.run()
+         */
+        public String path() {
+            return AccessorBase.pathOf(segments, indices, segments.length);
+        }
+
+        /**
+         * @return the current value at the location
+         */
+        public Object get() {
+            final int last = segments.length - 1;
+            if (segments[last].isField()) {
+                return model.child(container, segments[last].key());
+            }
+            return ((List<Object>) container).get(indices[last]);
+        }
+
+        /**
+         * Replace the value at the location. Unlike Updater, a null value is set as it is.
+         *
+         * @throws JsonPathException if the container rejects the value, e.g. it does not match the schema of the field
+         */
+        public void set(Object value) {
+            final int last = segments.length - 1;
+            if (!segments[last].isField()) {
+                ((List<Object>) container).set(indices[last], value);
+                return;
+            }
+            try {
+                model.put(container, segments[last].key(), value);
+            } catch (DataException e) {
+                throw new JsonPathException("An error occurred during processing of field '" + path() + "': " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return path();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import java.util.Arrays;
+
+/**
+ * A growable column of long values with a null bitmap. A null value is held as 0L.
+ */
+public final class LongColumn extends Column {
+    private long[] values;
+
+    public LongColumn() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity number of values the column can hold without growing
+     */
+    public LongColumn(int initialCapacity) {
+        super(initialCapacity);
+        this.values = new long[Math.max(initialCapacity, 1)];
+    }
+
+    /**
+     * Append a value.
+     */
+    public void add(long value) {
+        // next() may grow the array, so it has to be called before the array is read
+        final int position = next();
+        values[position] = value;
+    }
+
+    /**
+     * @param position position of the value, from 0 to size() - 1
+     * @return the value at the position, or 0L if it is null
+     */
+    public long get(int position) {
+        checkPosition(position);
+        return values[position];
+    }
+
+    /**
+     * Replace the value at the position, which is no longer null.
+     */
+    public void set(int position, long value) {
+        checkPosition(position);
+        values[position] = value;
+        clearNull(position);
+    }
+
+    /**
+     * @return the value at the position, or null if it is null
+     */
+    @Override
+    public Long getBoxed(int position) {
+        return isNull(position) ? null : values[position];
+    }
+
+    /**
+     * @return a new array of the values, in which null values are 0L
+     */
+    public long[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    @Override
+    public void setNull(int position) {
+        super.setNull(position);
+        values[position] = 0L;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, 0, size, 0L);
+        super.clear();
+    }
+
+    @Override
+    int capacity() {
+        return values.length;
+    }
+
+    @Override
+    void grow(int capacity) {
+        values = Arrays.copyOf(values, capacity);
+    }
+}
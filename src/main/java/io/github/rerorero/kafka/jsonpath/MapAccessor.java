@@ -1,273 +1,820 @@
 package io.github.rerorero.kafka.jsonpath;
 
-import org.apache.kafka.connect.data.ConnectSchema;
-import org.apache.kafka.connect.data.Schema;
-import org.apache.kafka.connect.errors.DataException;
-
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class MapAccessor extends AccessorBase {
 
-    private static final ParserListener.TaskGen<GetTaskState> getTaskGen = new GetTaskGen();
-    private static final ParserListener.TaskGen<UpdateTaskState> updateTaskGen = new UpdateTaskGen();
+    static final ObjectModel objectModel = new ObjectModel() {
+        @Override
+        public String description() {
+            return "a Map";
+        }
+
+        @Override
+        public boolean isObject(Object node) {
+            return node instanceof Map;
+        }
+
+        @Override
+        public Object child(Object node, String key) {
+            return ((Map<String, Object>) node).get(key);
+        }
+
+        @Override
+        public void put(Object node, String key, Object value) {
+            ((Map<String, Object>) node).put(key, value);
+        }
+
+        @Override
+        public boolean has(Object node, String key) {
+            return ((Map<String, Object>) node).containsKey(key);
+        }
+    };
 
     public static class Getter implements Accessor.Getter<Map<String, Object>> {
-        private final List<ParserListener.Task<GetTaskState>> tasks;
+        private final PathSegment[] segments;
+        private final Accessor.MismatchHandler onMismatch;
 
         /**
-         * Parse the given JsonPath and build a new Getter instance which is a
-         * task runner to retrieve values from the passed Map according to the json path.
+         * Parse the given JsonPath and build a new Getter instance which
+         * retrieves values from the passed Map according to the json path.
          *
          * @param jsonPath JsonPath string
          */
         public Getter(String jsonPath) {
-            this.tasks = parse(jsonPath, getTaskGen);
+            this(jsonPath, null);
+        }
+
+        /**
+         * Parse the given JsonPath and build a new Getter instance in lenient mode,
+         * which treats a type mismatch or a null node as a non-match instead of throwing JsonPathException.
+         *
+         * @param jsonPath   JsonPath string
+         * @param onMismatch handler to which mismatches are reported, or null to throw JsonPathException
+         */
+        public Getter(String jsonPath, Accessor.MismatchHandler onMismatch) {
+            this.segments = compile(jsonPath);
+            this.onMismatch = onMismatch;
         }
 
         /**
-         * Run the tasks generated from JsonPath and get the value from the given Object.
+         * Evaluate the JsonPath and get the value from the given Object.
          *
          * @param m Object from which to get the values
          * @return Map of field paths and values for retrieved values
          */
         public Map<String, Object> run(Map<String, Object> m) {
-            final GetTaskState state = new GetTaskState(m);
-            runTasks(state, tasks);
-            return state.pathMap;
+            return collectMatches(segments, m, objectModel, onMismatch);
+        }
+
+        /**
+         * Get the values from the given Map into the reusable buffer, without building the result Map.
+         * The buffer is cleared before it is filled.
+         *
+         * @param m      Map from which to get the values
+         * @param buffer buffer to fill
+         * @return the passed buffer
+         */
+        public ResultBuffer run(Map<String, Object> m, ResultBuffer buffer) {
+            collectMatches(segments, m, objectModel, onMismatch, buffer);
+            return buffer;
+        }
+
+        /**
+         * Test whether the JsonPath matches any value in the given Map, without building the result.
+         * The evaluation stops at the first match.
+         */
+        @Override
+        public boolean exists(Map<String, Object> m) {
+            return countMatches(segments, m, objectModel, onMismatch, true) > 0;
+        }
+
+        /**
+         * Count the values matched by the JsonPath in the given Map, without building the result.
+         * The matches at a trailing array subscript are counted without visiting the elements.
+         */
+        @Override
+        public int count(Map<String, Object> m) {
+            return countMatches(segments, m, objectModel, onMismatch, false);
+        }
+
+        /**
+         * Evaluate the JsonPath lazily, depth-first, and iterate over the matched values in the order of traversal.
+         * The given Map is traversed only as far as the iterator is advanced, so a mismatch is thrown by hasNext() or next().
+         */
+        public Iterator<Match> iterator(Map<String, Object> m) {
+            return new MatchIterator(segments, m, objectModel, onMismatch);
+        }
+
+        /**
+         * Evaluate the JsonPath lazily, depth-first, and stream the matched values in the order of traversal.
+         * Short-circuiting operations such as findFirst(), limit() and anyMatch() stop the traversal early.
+         */
+        public Stream<Match> stream(Map<String, Object> m) {
+            return streamMatches(segments, m, objectModel, onMismatch);
+        }
+
+        /**
+         * Append the integer values (Long, Integer, Short or Byte) matched by the JsonPath to the column,
+         * without boxing them into a Map. Null array elements are appended as null.
+         *
+         * @param m      Map from which to get the values
+         * @param column column to which the values are appended
+         * @return the passed column
+         */
+        public LongColumn getLongs(Map<String, Object> m, LongColumn column) {
+            collectLongs(segments, m, objectModel, onMismatch, column);
+            return column;
+        }
+
+        /**
+         * @return a new array of the integer values matched by the JsonPath, in which null values are 0
+         */
+        public long[] getLongs(Map<String, Object> m) {
+            return getLongs(m, new LongColumn()).toArray();
+        }
+
+        /**
+         * Append the numeric values (Double, Float or an integer) matched by the JsonPath to the column,
+         * without boxing them into a Map. Null array elements are appended as null.
+         *
+         * @param m      Map from which to get the values
+         * @param column column to which the values are appended
+         * @return the passed column
+         */
+        public DoubleColumn getDoubles(Map<String, Object> m, DoubleColumn column) {
+            collectDoubles(segments, m, objectModel, onMismatch, column);
+            return column;
+        }
+
+        /**
+         * @return a new array of the numeric values matched by the JsonPath, in which null values are 0.0
+         */
+        public double[] getDoubles(Map<String, Object> m) {
+            return getDoubles(m, new DoubleColumn()).toArray();
+        }
+
+        /**
+         * Append the Boolean values matched by the JsonPath to the column, without boxing them into a Map.
+         * Null array elements are appended as null.
+         *
+         * @param m      Map from which to get the values
+         * @param column column to which the values are appended
+         * @return the passed column
+         */
+        public BooleanColumn getBooleans(Map<String, Object> m, BooleanColumn column) {
+            collectBooleans(segments, m, objectModel, onMismatch, column);
+            return column;
+        }
+
+        /**
+         * @return a new array of the Boolean values matched by the JsonPath, in which null values are false
+         */
+        public boolean[] getBooleans(Map<String, Object> m) {
+            return getBooleans(m, new BooleanColumn()).toArray();
         }
     }
 
     public static class Updater implements Accessor.Updater<Map<String, Object>> {
-        private final List<ParserListener.Task<UpdateTaskState>> tasks;
+        private final PathSegment[] segments;
+        private final Accessor.MismatchHandler onMismatch;
 
         /**
-         * Parse the given JsonPath and build a new Updater instance which is a
-         * task runner to update the given Map according to the json path.
+         * Parse the given JsonPath and build a new Updater instance which
+         * updates the given Map according to the json path.
          *
          * @param jsonPath JsonPath string
          */
         public Updater(String jsonPath) {
-            this.tasks = parse(jsonPath, updateTaskGen);
+            this(jsonPath, null);
+        }
+
+        /**
+         * Parse the given JsonPath and build a new Updater instance in lenient mode,
+         * which treats a type mismatch or a null node as a non-match instead of throwing JsonPathException.
+         *
+         * @param jsonPath   JsonPath string
+         * @param onMismatch handler to which mismatches are reported, or null to throw JsonPathException
+         */
+        public Updater(String jsonPath, Accessor.MismatchHandler onMismatch) {
+            this.segments = compile(jsonPath);
+            this.onMismatch = onMismatch;
         }
 
         /**
-         * Run the tasks generated from JsonPath and create a new Object with updated value.
+         * Evaluate the JsonPath and create a new Object with updated value.
          *
          * @param org           Original Object value
          * @param valueToUpdate Map of field paths and updated values
          * @return a new Object instance with the passed valueToUpdate applied.
          */
         public Map<String, Object> run(Map<String, Object> org, Map<String, Object> valueToUpdate) {
-            final Map<String, Object> updated = copyMap(org);
+            if (org instanceof PersistentMap) {
+                return valueToUpdate.isEmpty() ? org : updatePersistent(org, null, compileUpdates(segments, valueToUpdate));
+            }
+            final Map<String, Object> updated = RecordCopier.copyMap(org);
             if (valueToUpdate.isEmpty()) {
                 return updated;
             }
-            final UpdateTaskState state = new SelectableUpdateTaskState(updated, valueToUpdate);
-            runTasks(state, tasks);
+            updateSelected(segments, updated, objectModel, onMismatch, compileUpdates(segments, valueToUpdate));
             return updated;
         }
 
         /**
-         * Run the tasks generated from JsonPath and create a new Object with updated value.
+         * Evaluate the JsonPath and create a new Object with updated value.
          *
          * @param org           Original Object value
          * @param valueToUpdate value to update
          * @return a new Object instance with the passed valueToUpdate applied.
          */
         public Map<String, Object> run(Map<String, Object> org, Object valueToUpdate) {
-            final Map<String, Object> updated = copyMap(org);
-            final UpdateTaskState state = new SimpleUpdateTaskState(updated, valueToUpdate);
-            runTasks(state, tasks);
+            if (org instanceof PersistentMap) {
+                return updatePersistent(org, current -> valueToUpdate, null);
+            }
+            final Map<String, Object> updated = RecordCopier.copyMap(org);
+            updateMatches(segments, updated, objectModel, onMismatch, current -> valueToUpdate);
             return updated;
         }
-    }
 
-    private static Map<String, Object> copyMap(Map<String, Object> org) {
-        final Map<String, Object> newMap = new HashMap<>();
-        org.forEach((key, value) -> {
-            final Object obj = org.get(key);
-            if (obj == null) {
-                return;
+        /**
+         * Evaluate the JsonPath and create a new Map in which each matched value is replaced with the result of
+         * the function, e.g. to hash or tokenize the values. Wrap the function with TransformCache to memoize it.
+         *
+         * @param org       Original Map value
+         * @param transform function which returns the new value from the current one, or null to keep the current value
+         * @return a new Map instance with the transformed values applied.
+         */
+        public Map<String, Object> transform(Map<String, Object> org, Function<Object, Object> transform) {
+            if (org instanceof PersistentMap) {
+                return updatePersistent(org, transform, null);
             }
-            final Schema.Type inferredType = ConnectSchema.schemaType(obj.getClass());
-            switch (inferredType) {
-                case INT32:
-                case INT64:
-                case FLOAT32:
-                case FLOAT64:
-                case BOOLEAN:
-                case STRING:
-                case BYTES:
-                    newMap.put(key, obj);
-                    return;
-                case MAP:
-                    newMap.put(key, copyMap((Map<String, Object>) obj));
-                    return;
-                case ARRAY:
-                    newMap.put(key, copyArray(key, (List<Object>) obj));
-                    return;
-                default:
-                    throw new JsonPathException(value.getClass() + " is not supported for schemaless record field " + key);
+            final Map<String, Object> updated = RecordCopier.copyMap(org);
+            updateMatches(segments, updated, objectModel, onMismatch, transform);
+            return updated;
+        }
+
+        /**
+         * Evaluate the JsonPath once and return the locations of the matched values in a new Map, through which
+         * the values can be read and replaced without another traversal, e.g. to update values depending on themselves.
+         *
+         * @param org Original Map value
+         * @return the locations in a new Map instance, which is returned by Locations.record().
+         */
+        public Locations<Map<String, Object>> locate(Map<String, Object> org) {
+            final Map<String, Object> updated = RecordCopier.copyMap(org);
+            return new Locations<>(updated, locateMatches(segments, updated, objectModel, onMismatch));
+        }
+
+        /**
+         * Replace the matched values of a PersistentMap by path copying, with the semantics of updateMatches(), or of
+         * updateSelected() if the updates are given. Only the Maps and arrays on the paths of the replaced values are
+         * rebuilt, and everything else is shared with the original.
+         */
+        private Map<String, Object> updatePersistent(Map<String, Object> org, Function<Object, Object> transform, PathTrie updates) {
+            if (segments.length == 0 || (updates != null && updates.isEmpty())) {
+                return org;
             }
-        });
-        return newMap;
-    }
+            return (Map<String, Object>) updatePersistent(new int[segments.length], 0, org, transform, updates);
+        }
+
+        /**
+         * @return the new node, or the same node if no value under it is replaced
+         */
+        private Object updatePersistent(int[] indices, int depth, Object cur, Function<Object, Object> transform, PathTrie node) {
+            final PathSegment segment = segments[depth];
+            if (segment.isField()) {
+                if (cur instanceof Map == false) {
+                    mismatch(onMismatch, segments, indices, depth + 1, objectModel.description(), cur);
+                    return cur;
+                }
+                final Map<String, Object> map = (Map<String, Object>) cur;
+                final Object child = map.get(segment.key());
+                if (child == null) {
+                    return cur;
+                }
+                final Object updated = updatePersistentChild(indices, depth, child, transform, node);
+                // a Map nested in a PersistentMap by other code is converted when it is updated
+                return updated == child ? cur : PersistentMap.of(map).plus(segment.key(), updated);
+            }
+
+            if (cur instanceof List == false) {
+                mismatch(onMismatch, segments, indices, depth, "an array", cur);
+                return cur;
+            }
+            final List<Object> list = (List<Object>) cur;
+            List<Object> copy = null;
+            if (node == null) {
+                final int from = segment.isWildcard() ? 0 : segment.index();
+                final int to = segment.isWildcard() ? list.size() : Math.min(segment.index() + 1, list.size());
+                for (int i = from; i < to; i++) {
+                    copy = updatePersistentElement(indices, depth, list, copy, i, transform, null);
+                }
+            } else {
+                for (Map.Entry<Integer, PathTrie> entry : node.indexEntries()) {
+                    if (entry.getKey() < list.size()) {
+                        copy = updatePersistentElement(indices, depth, list, copy, entry.getKey(), null, entry.getValue());
+                    }
+                }
+            }
+            return copy == null ? cur : Collections.unmodifiableList(copy);
+        }
+
+        /**
+         * @return the copy of the list with the updated element, which is created when an element is updated first
+         */
+        private List<Object> updatePersistentElement(int[] indices, int depth, List<Object> list, List<Object> copy, int i, Function<Object, Object> transform, PathTrie node) {
+            indices[depth] = i;
+            final Object child = list.get(i);
+            final Object updated = updatePersistentChild(indices, depth, child, transform, node);
+            if (updated == child) {
+                return copy;
+            }
+            final List<Object> result = copy == null ? new ArrayList<>(list) : copy;
+            result.set(i, updated);
+            return result;
+        }
 
-    private static List<Object> copyArray(String key, List<Object> org) {
-        return org.stream().map(o -> {
-            final Schema.Type inferredType = ConnectSchema.schemaType(o.getClass());
-            switch (inferredType) {
-                case INT32:
-                case INT64:
-                case FLOAT32:
-                case FLOAT64:
-                case BOOLEAN:
-                case STRING:
-                case BYTES:
-                    return o;
-                case MAP:
-                    return copyMap((Map<String, Object>) o);
-                default:
-                    throw new JsonPathException(o.getClass() + " is not supported for the element of array field " + key);
+        private Object updatePersistentChild(int[] indices, int depth, Object child, Function<Object, Object> transform, PathTrie node) {
+            if (depth < segments.length - 1) {
+                return updatePersistent(indices, depth + 1, child, transform, node);
             }
-        }).collect(Collectors.toList());
+            if (child instanceof Map || child instanceof List) {
+                return child;
+            }
+            final Object updated = node == null ? transform.apply(child) : node.value();
+            return updated == null ? child : updated;
+        }
     }
 
-    private static class GetTaskState {
-        Map<String, Object> pathMap;
+    /**
+     * An Updater which also creates the Maps missing on the path, e.g. `$.meta.routing.region` where `meta` has no
+     * `routing` key. Unlike Updater, the matched values are replaced even if they are Maps or arrays, arrays are never
+     * created, and only the Maps and arrays on the path are rebuilt.
+     */
+    public static class Upserter implements Accessor.Updater<Map<String, Object>> {
+        private final PathSegment[] segments;
 
-        GetTaskState(Map<String, Object> org) {
-            this.pathMap = Collections.singletonMap("$", org);
+        /**
+         * Parse the given JsonPath and build a new Upserter instance.
+         *
+         * @param jsonPath JsonPath string
+         */
+        public Upserter(String jsonPath) {
+            this.segments = compile(jsonPath);
+        }
+
+        /**
+         * Run the upserter and create a new Map with updated value.
+         *
+         * @param org           Original Map value
+         * @param valueToUpdate Map of field paths and updated values
+         * @return a new Map instance with the passed valueToUpdate applied.
+         */
+        public Map<String, Object> run(Map<String, Object> org, Map<String, Object> valueToUpdate) {
+            final PathTrie updates = compileUpdates(segments, valueToUpdate);
+            if (updates.isEmpty()) {
+                return org;
+            }
+            return (Map<String, Object>) rewrite(segments, segments.length, true, org, new int[segments.length], 0, updates,
+                    (cur, indices, node) -> node.value());
+        }
+
+        /**
+         * Run the upserter and create a new Map with updated value.
+         *
+         * @param org           Original Map value
+         * @param valueToUpdate value to update
+         * @return a new Map instance with the passed valueToUpdate applied.
+         */
+        public Map<String, Object> run(Map<String, Object> org, Object valueToUpdate) {
+            return (Map<String, Object>) rewrite(segments, segments.length, true, org, new int[segments.length], 0, null, (cur, indices, node) -> valueToUpdate != null ? valueToUpdate : cur);
         }
     }
 
-    private static class ObjectSubUpdateParam {
-        final String path;
-        final String key;
-        final Map<String, Object> parent;
+    /**
+     * A Remover which removes every key or array element matched by the JsonPath.
+     * Only the Maps and arrays on the path are rebuilt, and the removed values are never copied.
+     */
+    public static class Remover implements Accessor.Remover<Map<String, Object>> {
+        private final PathSegment[] segments;
+        private final PathSegment last;
+
+        /**
+         * Parse the given JsonPath and build a new Remover instance.
+         *
+         * @param jsonPath JsonPath string
+         */
+        public Remover(String jsonPath) {
+            this.segments = compile(jsonPath);
+            if (segments.length == 0) {
+                throw new JsonPathException("The root cannot be removed: " + jsonPath);
+            }
+            this.last = segments[segments.length - 1];
+        }
 
-        ObjectSubUpdateParam(String path, String key, Map<String, Object> parent) {
-            this.path = path;
-            this.key = key;
-            this.parent = parent;
+        /**
+         * Create a new Map from which the values matched by the JsonPath are removed.
+         *
+         * @param org Original Map value
+         * @return a new Map instance without the matched values, or the original one if nothing is matched.
+         */
+        public Map<String, Object> run(Map<String, Object> org) {
+            return (Map<String, Object>) rewrite(segments, segments.length - 1, false, org, new int[segments.length], 0, null, this::removeFrom);
+        }
+
+        private Object removeFrom(Object parent, int[] indices, PathTrie node) {
+            if (parent == null) {
+                return null;
+            }
+            if (last.isField()) {
+                if (parent instanceof Map == false) {
+                    throw mismatchError(pathOf(segments, indices, segments.length), "a Map", parent);
+                }
+                final Map<String, Object> map = (Map<String, Object>) parent;
+                if (!map.containsKey(last.key())) {
+                    return map;
+                }
+                final Map<String, Object> updated = new HashMap<>(map);
+                updated.remove(last.key());
+                return updated;
+            }
+            if (parent instanceof List == false) {
+                throw mismatchError(pathOf(segments, indices, segments.length - 1), "an array", parent);
+            }
+            return removeElements((List<Object>) parent, last);
         }
     }
 
-    private static Map<String, Object> mapObjectSubscript(Map<String, Object> pathMap, String keyName, Function<ObjectSubUpdateParam, Object> onSubscript) {
-        final Map<String, Object> updated = new HashMap<>();
+    /**
+     * A Mover which moves the value at the source path to the target path, e.g. `$.after.cust_id` to
+     * `$.after.customer.id`. Both paths must consist only of object subscripts. Missing Maps on the target path
+     * are created, an existing target value is overwritten, and nothing is changed if the source value is missing.
+     * Only the Maps on the two paths are rebuilt.
+     */
+    public static class Mover implements Accessor.Mover<Map<String, Object>> {
+        private final PathSegment[] from;
+        private final PathSegment[] to;
+        private final String lastKey;
 
-        pathMap.forEach((path, cur) -> {
-            final String childPath = pathOfObjectSub(path, keyName);
-            if (cur instanceof Map == false) {
-                throw new JsonPathException("field '" + childPath + "' is not a Map but " + cur.getClass());
+        /**
+         * Parse the given JsonPaths and build a new Mover instance.
+         *
+         * @param fromJsonPath JsonPath of the value to move
+         * @param toJsonPath   JsonPath to which the value is moved
+         */
+        public Mover(String fromJsonPath, String toJsonPath) {
+            this.from = compileDefinite(fromJsonPath);
+            this.to = compileDefinite(toJsonPath);
+            if (startsWith(from, to) || startsWith(to, from)) {
+                throw new JsonPathException("Cannot move '" + fromJsonPath + "' to '" + toJsonPath + "'");
             }
-            try {
-                final Object child = onSubscript.apply(new ObjectSubUpdateParam(childPath, keyName, (Map<String, Object>) cur));
-                if (child != null) {
-                    updated.put(childPath, child);
+            this.lastKey = from[from.length - 1].key();
+        }
+
+        /**
+         * Create a new Map in which the value at the source path is moved to the target path.
+         *
+         * @param org Original Map value
+         * @return a new Map instance with the value moved, or the original one if the source value is missing.
+         */
+        public Map<String, Object> run(Map<String, Object> org) {
+            final Object[] moved = new Object[1];
+            final Object removed = rewrite(from, from.length - 1, false, org, new int[from.length], 0, null, (parent, indices, node) -> {
+                if (parent == null) {
+                    return null;
+                }
+                if (parent instanceof Map == false) {
+                    throw mismatchError(pathOf(from, indices, from.length), "a Map", parent);
                 }
-            } catch (DataException e) {
-                throw new JsonPathException("An error occurred during processing of Map value '" + childPath + "': " + e.getMessage(), e);
+                final Map<String, Object> map = (Map<String, Object>) parent;
+                moved[0] = map.get(lastKey);
+                if (moved[0] == null) {
+                    return map;
+                }
+                final Map<String, Object> updated = new HashMap<>(map);
+                updated.remove(lastKey);
+                return updated;
+            });
+            if (moved[0] == null) {
+                return org;
             }
-        });
+            return (Map<String, Object>) rewrite(to, to.length, true, removed, new int[to.length], 0, null, (cur, indices, node) -> moved[0]);
+        }
+    }
 
-        return updated;
+    /**
+     * A Projector which builds a new Map containing only the subtrees selected by the JsonPaths.
+     * Array subscripts keep the shape of arrays, that is, every element is narrowed to the union of the paths
+     * below any subscript of the array. The selected subtrees are shared with the original Map.
+     */
+    public static class Projector implements Accessor.Projector<Map<String, Object>> {
+        private final PathTrie projection;
+
+        /**
+         * Parse the given JsonPaths and build a new Projector instance.
+         *
+         * @param jsonPaths JsonPath strings to select
+         */
+        public Projector(Collection<String> jsonPaths) {
+            this.projection = compileProjection(jsonPaths);
+        }
+
+        /**
+         * Create a new Map which contains only the subtrees selected by the JsonPaths.
+         *
+         * @param org Original Map value
+         * @return a new Map instance with only the selected subtrees.
+         */
+        public Map<String, Object> run(Map<String, Object> org) {
+            return (Map<String, Object>) project(org, projection);
+        }
+
+        private static Object project(Object cur, PathTrie node) {
+            if (node.isTerminal()) {
+                return cur;
+            }
+            if (node.hasFields() && cur instanceof Map) {
+                final Map<String, Object> map = (Map<String, Object>) cur;
+                final Map<String, Object> projected = new HashMap<>();
+                for (Map.Entry<String, PathTrie> field : node.fieldEntries()) {
+                    final Object child = map.get(field.getKey());
+                    if (child != null || map.containsKey(field.getKey())) {
+                        projected.put(field.getKey(), project(child, field.getValue()));
+                    }
+                }
+                return projected;
+            }
+            if (node.wildcard() != null && cur instanceof List) {
+                final List<Object> list = (List<Object>) cur;
+                final List<Object> projected = new ArrayList<>(list.size());
+                for (Object element : list) {
+                    projected.add(project(element, node.wildcard()));
+                }
+                return projected;
+            }
+            // The path does not fit the shape of the value. Keep it as it is so that accessors report the same result.
+            return cur;
+        }
     }
 
-    private static class GetTaskGen implements ParserListener.TaskGen<GetTaskState> {
+    /**
+     * A Differ which reports the values matched by the JsonPaths that differ between two Maps, e.g. the `before` and
+     * `after` of a change event. Both Maps are walked in lockstep along the paths, and subtrees which are the same
+     * instance in both are skipped. A value missing in one of them differs from any non-null value in the other.
+     */
+    public static class Differ implements Accessor.Differ<Map<String, Object>> {
+        private final PathSegment[][] segments;
+        private final Accessor.MismatchHandler onMismatch;
+
+        /**
+         * Parse the given JsonPaths and build a new Differ instance.
+         *
+         * @param jsonPaths JsonPath strings to compare
+         */
+        public Differ(Collection<String> jsonPaths) {
+            this(jsonPaths, null);
+        }
+
+        /**
+         * Parse the given JsonPaths and build a new Differ instance in lenient mode,
+         * which treats a type mismatch or a null node as a missing value instead of throwing JsonPathException.
+         *
+         * @param jsonPaths  JsonPath strings to compare
+         * @param onMismatch handler to which mismatches are reported, or null to throw JsonPathException
+         */
+        public Differ(Collection<String> jsonPaths, Accessor.MismatchHandler onMismatch) {
+            this.segments = new PathSegment[jsonPaths.size()][];
+            int i = 0;
+            for (String jsonPath : jsonPaths) {
+                segments[i++] = compile(jsonPath);
+            }
+            this.onMismatch = onMismatch;
+        }
+
+        /**
+         * Compare the values matched by the JsonPaths in the two Maps.
+         *
+         * @param before Map before the change
+         * @param after  Map after the change
+         * @return paths of the values which differ, in the order of the JsonPaths
+         */
         @Override
-        public ParserListener.Task<GetTaskState> subscriptObject(String keyName) {
-            return state ->
-                    state.pathMap = mapObjectSubscript(state.pathMap, keyName, param -> param.parent.get(param.key));
+        public Set<String> run(Map<String, Object> before, Map<String, Object> after) {
+            final Set<String> changed = new LinkedHashSet<>();
+            for (PathSegment[] path : segments) {
+                diffMatches(path, before, after, objectModel, onMismatch, changed);
+            }
+            return changed;
         }
 
+        /**
+         * Test whether any value matched by the JsonPaths differs, without building the paths.
+         * The comparison stops at the first change.
+         */
         @Override
-        public ParserListener.Task<GetTaskState> subscriptArray(int index) {
-            return state ->
-                    state.pathMap = mapSubscriptArray(state.pathMap, index, param -> param.parent.get(param.index));
+        public boolean changed(Map<String, Object> before, Map<String, Object> after) {
+            for (PathSegment[] path : segments) {
+                if (diffMatches(path, before, after, objectModel, onMismatch, null)) {
+                    return true;
+                }
+            }
+            return false;
         }
     }
 
-    private static abstract class UpdateTaskState {
-        Map<String, Object> pathMap;
+    /**
+     * A Getter which evaluates a set of JsonPaths over a batch of Maps and fills a column for each path,
+     * in which the value at position i is the value in the i-th Map. The values are held in ObjectColumns.
+     * The paths must not contain wildcards, so that each of them matches at most one value in a Map.
+     */
+    public static class ColumnGetter {
+        private final List<String> jsonPaths;
+        private final PathSegment[][] segments;
+        private final Accessor.MismatchHandler onMismatch;
 
-        UpdateTaskState(Map<String, Object> org) {
-            this.pathMap = Collections.singletonMap("$", org);
+        /**
+         * Parse the given JsonPaths and build a new ColumnGetter instance.
+         *
+         * @param jsonPaths JsonPath strings without wildcards
+         */
+        public ColumnGetter(List<String> jsonPaths) {
+            this(jsonPaths, null);
         }
 
-        abstract Object getNewValue(String path);
+        /**
+         * Parse the given JsonPaths and build a new ColumnGetter instance in lenient mode,
+         * which treats a type mismatch or a null node as a missing value instead of throwing JsonPathException.
+         *
+         * @param jsonPaths  JsonPath strings without wildcards
+         * @param onMismatch handler to which mismatches are reported, or null to throw JsonPathException
+         */
+        public ColumnGetter(List<String> jsonPaths, Accessor.MismatchHandler onMismatch) {
+            this.jsonPaths = new ArrayList<>(jsonPaths);
+            this.segments = compileColumns(this.jsonPaths);
+            this.onMismatch = onMismatch;
+        }
+
+        /**
+         * Evaluate the JsonPaths over the batch.
+         *
+         * @param records Maps from which to get the values
+         * @return the columns of the JsonPaths, in which missing values are null
+         */
+        public ColumnBatch run(List<Map<String, Object>> records) {
+            final ObjectColumn[] columns = new ObjectColumn[segments.length];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = new ObjectColumn(records.size());
+            }
+            for (Map<String, Object> record : records) {
+                for (int i = 0; i < segments.length; i++) {
+                    columns[i].add(valueAt(segments[i], segments[i].length, record, objectModel, onMismatch));
+                }
+            }
+            return new ColumnBatch(jsonPaths, columns, records.size());
+        }
     }
 
-    private static class SelectableUpdateTaskState extends UpdateTaskState {
-        private final Map<String, Object> newValue;
+    /**
+     * An Updater which writes the columns of a ColumnBatch back to the batch of Maps from which it was built.
+     * Each Map is copied once for all the paths, and null values in the columns keep the current values.
+     * The values are replaced with the same semantics as Updater.
+     */
+    public static class ColumnUpdater {
+        private final List<String> jsonPaths;
+        private final PathSegment[][] segments;
+        private final Accessor.MismatchHandler onMismatch;
+
+        /**
+         * Parse the given JsonPaths and build a new ColumnUpdater instance.
+         *
+         * @param jsonPaths JsonPath strings of the columns to write, which must not contain wildcards
+         */
+        public ColumnUpdater(List<String> jsonPaths) {
+            this(jsonPaths, null);
+        }
 
-        SelectableUpdateTaskState(Map<String, Object> org, Map<String, Object> newValue) {
-            super(org);
-            this.newValue = newValue;
+        /**
+         * Parse the given JsonPaths and build a new ColumnUpdater instance in lenient mode.
+         *
+         * @param jsonPaths  JsonPath strings of the columns to write, which must not contain wildcards
+         * @param onMismatch handler to which mismatches are reported, or null to throw JsonPathException
+         */
+        public ColumnUpdater(List<String> jsonPaths, Accessor.MismatchHandler onMismatch) {
+            this.jsonPaths = new ArrayList<>(jsonPaths);
+            this.segments = compileColumns(this.jsonPaths);
+            this.onMismatch = onMismatch;
         }
 
-        @Override
-        Object getNewValue(String path) {
-            return newValue.get(path);
+        /**
+         * Create new Maps with the values of the columns applied.
+         *
+         * @param records Original Maps
+         * @param columns columns which have the JsonPaths of this updater, of the same size as the records
+         * @return new Map instances in the same order as the records
+         */
+        public List<Map<String, Object>> run(List<Map<String, Object>> records, ColumnBatch columns) {
+            final Column[] sources = columnsOf(jsonPaths, columns, records.size());
+            final List<Map<String, Object>> updated = new ArrayList<>(records.size());
+            for (int r = 0; r < records.size(); r++) {
+                final Map<String, Object> copy = RecordCopier.copyMap(records.get(r));
+                for (int i = 0; i < segments.length; i++) {
+                    updateAt(segments[i], copy, objectModel, onMismatch, sources[i].getBoxed(r));
+                }
+                updated.add(copy);
+            }
+            return updated;
         }
     }
 
-    private static class SimpleUpdateTaskState extends UpdateTaskState {
-        private final Object newValue;
+    private interface LeafRewriter {
+        /**
+         * @param cur     value at the end of the path, or null if it is missing
+         * @param indices array indices of the value, indexed by the depth of the segments
+         * @param node    leaf of the trie of update keys which holds the new value, or null if no trie is given
+         * @return new value, or cur itself if it is not changed
+         */
+        Object rewrite(Object cur, int[] indices, PathTrie node);
+    }
 
-        SimpleUpdateTaskState(Map<String, Object> org, Object newValue) {
-            super(org);
-            this.newValue = newValue;
+    /**
+     * Walk the path and rebuild only the Maps and arrays on it, sharing the other values with the original.
+     *
+     * @param end     index of the segment at which the leaf rewriter is called
+     * @param create  true to create missing Maps on the path
+     * @param indices array indices being visited, from which the paths are built only when they are needed
+     * @param node    node of the trie of update keys built by compileUpdates(), which selects the array elements to
+     *                visit instead of the array subscripts, or null to visit every element matched by the path
+     */
+    private static Object rewrite(PathSegment[] segments, int end, boolean create, Object cur, int[] indices, int depth, PathTrie node, LeafRewriter leaf) {
+        if (depth == end) {
+            return leaf.rewrite(cur, indices, node);
+        }
+        final PathSegment segment = segments[depth];
+        if (cur == null && !(create && segment.isField())) {
+            return null;
         }
 
-        @Override
-        Object getNewValue(String path) {
-            return this.newValue;
+        if (segment.isField()) {
+            if (cur != null && cur instanceof Map == false) {
+                throw mismatchError(pathOf(segments, indices, depth + 1), "a Map", cur);
+            }
+            final Map<String, Object> map = (Map<String, Object>) cur;
+            final Object child = map == null ? null : map.get(segment.key());
+            final Object newChild = rewrite(segments, end, create, child, indices, depth + 1, node, leaf);
+            if (newChild == child) {
+                return map;
+            }
+            final Map<String, Object> updated = map == null ? new HashMap<>() : new HashMap<>(map);
+            updated.put(segment.key(), newChild);
+            return updated;
         }
-    }
 
-    private static class UpdateTaskGen implements ParserListener.TaskGen<UpdateTaskState> {
-        @Override
-        public ParserListener.Task<UpdateTaskState> subscriptObject(String keyName) {
-            return state ->
-                    state.pathMap = mapObjectSubscript(state.pathMap, keyName, param -> {
-                        Object child = param.parent.get(param.key);
-                        if (child instanceof Map || child instanceof List || child == null) {
-                            return child;
-                        }
-                        // if path is found in newValue, modify the Map in the state
-                        // otherwise just get the field and return it.
-                        final Object newVal = state.getNewValue(param.path);
-                        if (newVal != null) {
-                            param.parent.put(param.key, newVal);
-                            return newVal;
-                        } else {
-                            return child;
-                        }
-                    });
+        if (cur instanceof List == false) {
+            throw mismatchError(pathOf(segments, indices, depth), "an array", cur);
         }
+        final List<Object> list = (List<Object>) cur;
+        List<Object> updated = null;
+        if (node != null) {
+            for (Map.Entry<Integer, PathTrie> entry : node.indexEntries()) {
+                if (entry.getKey() < list.size()) {
+                    updated = rewriteElement(segments, end, create, list, updated, entry.getKey(), indices, depth, entry.getValue(), leaf);
+                }
+            }
+            return updated == null ? list : updated;
+        }
+        final int from = segment.isWildcard() ? 0 : segment.index();
+        final int to = segment.isWildcard() ? list.size() : Math.min(segment.index() + 1, list.size());
+        for (int i = from; i < to; i++) {
+            updated = rewriteElement(segments, end, create, list, updated, i, indices, depth, null, leaf);
+        }
+        return updated == null ? list : updated;
+    }
 
-        @Override
-        public ParserListener.Task<UpdateTaskState> subscriptArray(int index) {
-            return state ->
-                    state.pathMap = mapSubscriptArray(state.pathMap, index, param -> {
-                        Object child = param.parent.get(param.index);
-                        if (child instanceof Map || child instanceof List) {
-                            return child;
-                        }
-                        final Object newVal = state.getNewValue(param.path);
-                        if (newVal != null) {
-                            param.parent.set(param.index, newVal);
-                            return newVal;
-                        } else {
-                            return child;
-                        }
-                    });
+    /**
+     * @param updated copy of the list to which the rewritten elements are set, or null if no element is rewritten yet
+     * @return the copy of the list if the element is rewritten or has already been, otherwise null
+     */
+    private static List<Object> rewriteElement(PathSegment[] segments, int end, boolean create, List<Object> list, List<Object> updated, int i, int[] indices, int depth, PathTrie node, LeafRewriter leaf) {
+        indices[depth] = i;
+        final Object child = list.get(i);
+        final Object newChild = rewrite(segments, end, create, child, indices, depth + 1, node, leaf);
+        if (newChild == child) {
+            return updated;
+        }
+        if (updated == null) {
+            updated = new ArrayList<>(list);
         }
+        updated.set(i, newChild);
+        return updated;
     }
 }
@@ -0,0 +1,39 @@
+package io.github.rerorero.kafka.jsonpath;
+
+/**
+ * A value matched by a Getter, which is produced lazily by Getter.iterator() and Getter.stream().
+ * The path is built only when it is requested.
+ */
+public final class Match {
+    private final PathSegment[] segments;
+    private final int[] indices;
+    private final Object value;
+
+    /**
+     * @param indices array indices of the match, indexed by the depth of the segments
+     */
+    Match(PathSegment[] segments, int[] indices, Object value) {
+        this.segments = segments;
+        this.indices = indices;
+        this.value = value;
+    }
+
+    /**
+     * @return the path of the value, in the same format as the keys returned by Getter.run()
+     */
+    public String path() {
+        return AccessorBase.pathOf(segments, indices, segments.length);
+    }
+
+    /**
+     * @return the matched value
+     */
+    public Object value() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return path() + "=" + value;
+    }
+}
@@ -0,0 +1,124 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Visits the values matched by the path depth-first, with the same semantics as AccessorBase.collectMatches(),
+ * but one match at a time so that the traversal stops as soon as the caller stops asking for the next match.
+ * The recursion is replaced with a stack of the nodes and the ranges of the array subscripts being visited.
+ * Mismatches are reported when the traversal reaches them, so nothing is visited before the first hasNext() or next().
+ */
+final class MatchIterator implements Iterator<Match> {
+    private final PathSegment[] segments;
+    private final AccessorBase.ObjectModel model;
+    private final Accessor.MismatchHandler onMismatch;
+    // node, next array index to visit and end of the array indices at each depth
+    private final Object[] nodes;
+    private final int[] indices;
+    private final int[] ends;
+    private int depth;
+    private Match next;
+    // root node until the traversal is started by the first call to advance()
+    private Object root;
+    private boolean started;
+
+    MatchIterator(PathSegment[] segments, Object root, AccessorBase.ObjectModel model, Accessor.MismatchHandler onMismatch) {
+        this.segments = segments;
+        this.model = model;
+        this.onMismatch = onMismatch;
+        this.nodes = new Object[segments.length];
+        this.indices = new int[segments.length];
+        this.ends = new int[segments.length];
+        if (segments.length == 0) {
+            this.next = new Match(segments, indices, root);
+            this.depth = -1;
+            this.started = true;
+        } else {
+            this.root = root;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = advance();
+        }
+        return next != null;
+    }
+
+    @Override
+    public Match next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Match match = next;
+        next = null;
+        return match;
+    }
+
+    /**
+     * Prepare to visit the children of the node at the depth. Nothing is visited if the node is not of the expected type.
+     */
+    private void enter(int depth, Object node) {
+        this.depth = depth;
+        final PathSegment segment = segments[depth];
+        nodes[depth] = node;
+        indices[depth] = 0;
+        ends[depth] = 0;
+        if (segment.isField()) {
+            if (model.isObject(node)) {
+                ends[depth] = 1;
+            } else {
+                AccessorBase.mismatch(onMismatch, segments, indices, depth + 1, model.description(), node);
+            }
+            return;
+        }
+        if (node instanceof List == false) {
+            AccessorBase.mismatch(onMismatch, segments, indices, depth, "an array", node);
+            return;
+        }
+        final int size = ((List<Object>) node).size();
+        indices[depth] = segment.isWildcard() ? 0 : segment.index();
+        ends[depth] = segment.isWildcard() ? size : Math.min(segment.index() + 1, size);
+    }
+
+    /**
+     * @return the next match, or null if the traversal is finished
+     */
+    private Match advance() {
+        if (!started) {
+            started = true;
+            enter(0, root);
+            root = null;
+        }
+        while (depth >= 0) {
+            if (indices[depth] >= ends[depth]) {
+                depth--;
+                if (depth >= 0) {
+                    indices[depth]++;
+                }
+                continue;
+            }
+            final PathSegment segment = segments[depth];
+            final Object child;
+            if (segment.isField()) {
+                child = model.child(nodes[depth], segment.key());
+                if (child == null) {
+                    indices[depth]++;
+                    continue;
+                }
+            } else {
+                child = ((List<Object>) nodes[depth]).get(indices[depth]);
+            }
+            if (depth == segments.length - 1) {
+                final Match match = new Match(segments, indices.clone(), child);
+                indices[depth]++;
+                return match;
+            }
+            enter(depth + 1, child);
+        }
+        return null;
+    }
+}
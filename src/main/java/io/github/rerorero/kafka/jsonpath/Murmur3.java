@@ -0,0 +1,152 @@
+package io.github.rerorero.kafka.jsonpath;
+
+/**
+ * A streaming implementation of MurmurHash3 x64 128-bit, to which the input is fed incrementally
+ * without building a byte array. The result equals to MurmurHash3_x64_128 over the concatenation of the input,
+ * in which longs are fed in little-endian order.
+ */
+final class Murmur3 {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private long h1;
+    private long h2;
+    // bytes of the current block which is not processed yet, in little-endian order
+    private long k1;
+    private long k2;
+    private int pending;
+    private long length;
+
+    Murmur3(long seed) {
+        this.h1 = seed;
+        this.h2 = seed;
+    }
+
+    void putByte(int b) {
+        final long v = b & 0xffL;
+        if (pending < 8) {
+            k1 |= v << (pending << 3);
+        } else {
+            k2 |= v << ((pending - 8) << 3);
+        }
+        length++;
+        if (++pending == 16) {
+            mixBlock();
+        }
+    }
+
+    void putLong(long v) {
+        if (pending == 0) {
+            k1 = v;
+            pending = 8;
+            length += 8;
+        } else if (pending == 8) {
+            k2 = v;
+            length += 8;
+            mixBlock();
+        } else {
+            for (int i = 0; i < 64; i += 8) {
+                putByte((int) (v >>> i));
+            }
+        }
+    }
+
+    void putInt(int v) {
+        for (int i = 0; i < 32; i += 8) {
+            putByte(v >>> i);
+        }
+    }
+
+    /**
+     * Feed the UTF-8 encoding of the string, without encoding it into a byte array.
+     */
+    void putUtf8(String s) {
+        final int length = s.length();
+        for (int i = 0; i < length; i++) {
+            final char c = s.charAt(i);
+            if (c < 0x80) {
+                putByte(c);
+            } else if (c < 0x800) {
+                putByte(0xc0 | (c >>> 6));
+                putByte(0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                final int cp = Character.toCodePoint(c, s.charAt(++i));
+                putByte(0xf0 | (cp >>> 18));
+                putByte(0x80 | ((cp >>> 12) & 0x3f));
+                putByte(0x80 | ((cp >>> 6) & 0x3f));
+                putByte(0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // an unpaired surrogate is encoded as '?', the same as String.getBytes()
+                putByte('?');
+            } else {
+                putByte(0xe0 | (c >>> 12));
+                putByte(0x80 | ((c >>> 6) & 0x3f));
+                putByte(0x80 | (c & 0x3f));
+            }
+        }
+    }
+
+    /**
+     * Finish the hash. The instance must not be fed after this is called.
+     *
+     * @return the 128-bit hash, the first 64 bits followed by the second ones
+     */
+    long[] finish() {
+        long x1 = k1;
+        long x2 = k2;
+        if (pending > 8) {
+            x2 *= C2;
+            x2 = Long.rotateLeft(x2, 33);
+            x2 *= C1;
+            h2 ^= x2;
+        }
+        if (pending > 0) {
+            x1 *= C1;
+            x1 = Long.rotateLeft(x1, 31);
+            x1 *= C2;
+            h1 ^= x1;
+        }
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        return new long[]{h1, h2};
+    }
+
+    private void mixBlock() {
+        long x1 = k1;
+        long x2 = k2;
+        x1 *= C1;
+        x1 = Long.rotateLeft(x1, 31);
+        x1 *= C2;
+        h1 ^= x1;
+        h1 = Long.rotateLeft(h1, 27);
+        h1 += h2;
+        h1 = h1 * 5 + 0x52dce729;
+
+        x2 *= C2;
+        x2 = Long.rotateLeft(x2, 33);
+        x2 *= C1;
+        h2 ^= x2;
+        h2 = Long.rotateLeft(h2, 31);
+        h2 += h1;
+        h2 = h2 * 5 + 0x38495ab5;
+
+        k1 = 0;
+        k2 = 0;
+        pending = 0;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
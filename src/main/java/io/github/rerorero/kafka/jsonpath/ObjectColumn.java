@@ -0,0 +1,91 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import java.util.Arrays;
+
+/**
+ * A growable column of values of any type with a null bitmap, used for the values which have no primitive column.
+ */
+public final class ObjectColumn extends Column {
+    private Object[] values;
+
+    public ObjectColumn() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity number of values the column can hold without growing
+     */
+    public ObjectColumn(int initialCapacity) {
+        super(initialCapacity);
+        this.values = new Object[Math.max(initialCapacity, 1)];
+    }
+
+    /**
+     * Append a value, which is appended as null if it is null.
+     */
+    public void add(Object value) {
+        if (value == null) {
+            addNull();
+            return;
+        }
+        // next() may grow the array, so it has to be called before the array is read
+        final int position = next();
+        values[position] = value;
+    }
+
+    /**
+     * @param position position of the value, from 0 to size() - 1
+     * @return the value at the position, or null if it is null
+     */
+    public Object get(int position) {
+        checkPosition(position);
+        return values[position];
+    }
+
+    /**
+     * Replace the value at the position.
+     */
+    public void set(int position, Object value) {
+        if (value == null) {
+            setNull(position);
+            return;
+        }
+        checkPosition(position);
+        values[position] = value;
+        clearNull(position);
+    }
+
+    @Override
+    public Object getBoxed(int position) {
+        return get(position);
+    }
+
+    /**
+     * @return a new array of the values
+     */
+    public Object[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    @Override
+    public void setNull(int position) {
+        super.setNull(position);
+        values[position] = null;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, 0, size, null);
+        super.clear();
+    }
+
+    @Override
+    int capacity() {
+        return values.length;
+    }
+
+    @Override
+    void grow(int capacity) {
+        values = Arrays.copyOf(values, capacity);
+    }
+}
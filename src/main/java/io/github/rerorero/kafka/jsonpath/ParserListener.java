@@ -7,27 +7,12 @@ import org.antlr.v4.runtime.tree.TerminalNode;
 import java.util.ArrayList;
 import java.util.List;
 
-class ParserListener<S> extends JsonPathBaseListener {
+class ParserListener extends JsonPathBaseListener {
 
-    interface Task<S> {
-        void apply(S state);
-    }
-
-    interface TaskGen<S> {
-        Task<S> subscriptObject(String keyName);
-
-        Task<S> subscriptArray(int index);
-    }
-
-    private final TaskGen<S> taskGen;
-    private final List<Task<S>> tasks = new ArrayList<>();
-
-    ParserListener(TaskGen<S> taskGen) {
-        this.taskGen = taskGen;
-    }
+    private final List<PathSegment> segments = new ArrayList<>();
 
-    List<Task<S>> getTasks() {
-        return tasks;
+    List<PathSegment> getSegments() {
+        return segments;
     }
 
     private String unquoteSTRING(TerminalNode node) {
@@ -40,22 +25,22 @@ class ParserListener<S> extends JsonPathBaseListener {
             return;
         }
         if (ctx.NUMBER() != null) {
-            tasks.add(taskGen.subscriptArray(Integer.parseInt(ctx.NUMBER().getText())));
+            segments.add(PathSegment.index(Integer.parseInt(ctx.NUMBER().getText())));
         } else if (ctx.WILDCARD() != null) {
-            tasks.add(taskGen.subscriptArray(-1));
+            segments.add(PathSegment.index(PathSegment.WILDCARD));
         }
     }
 
     @Override
     public void exitSubscriptBracket(JsonPathParser.SubscriptBracketContext ctx) {
         final String field = unquoteSTRING(ctx.STRING());
-        tasks.add(taskGen.subscriptObject(field));
+        segments.add(PathSegment.field(field));
         parseArraySubscript(ctx.arraySub());
     }
 
     @Override
     public void exitSubscriptDot(JsonPathParser.SubscriptDotContext ctx) {
-        tasks.add(taskGen.subscriptObject(ctx.ID().toString()));
+        segments.add(PathSegment.field(ctx.ID().toString()));
         parseArraySubscript(ctx.arraySub());
     }
 }
@@ -0,0 +1,119 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import java.util.List;
+
+/**
+ * Evaluates a path over Structs and Maps for Getter and the other read-only accessors.
+ * This is the baseline implementation for Java 8, and the multi-release JAR contains another one for Java 17
+ * under META-INF/versions/17, which must behave the same.
+ */
+final class PathEvaluator {
+    private PathEvaluator() {
+    }
+
+    /**
+     * Pass the values matched by the path to the collector in the order of traversal.
+     *
+     * @param indices array indices visited, indexed by the depth of the segments
+     */
+    static void collect(PathSegment[] segments, int[] indices, Object root, AccessorBase.ObjectModel model, Accessor.MismatchHandler onMismatch, AccessorBase.MatchCollector collector) {
+        if (segments.length == 0) {
+            collector.add(root, indices);
+            return;
+        }
+        collect(segments, indices, 0, root, model, onMismatch, collector);
+    }
+
+    /**
+     * Count the values matched by the path. Matches at a trailing array subscript are counted from the size of the array.
+     *
+     * @param stopAtFirst true to return as soon as a match is found
+     */
+    static int count(PathSegment[] segments, int[] indices, Object root, AccessorBase.ObjectModel model, Accessor.MismatchHandler onMismatch, boolean stopAtFirst) {
+        if (segments.length == 0) {
+            return 1;
+        }
+        return count(segments, indices, 0, root, model, onMismatch, stopAtFirst);
+    }
+
+    private static void collect(PathSegment[] segments, int[] indices, int depth, Object cur, AccessorBase.ObjectModel model, Accessor.MismatchHandler onMismatch, AccessorBase.MatchCollector collector) {
+        final PathSegment segment = segments[depth];
+        final boolean last = depth == segments.length - 1;
+        if (segment.isField()) {
+            if (!model.isObject(cur)) {
+                AccessorBase.mismatch(onMismatch, segments, indices, depth + 1, model.description(), cur);
+                return;
+            }
+            final Object child = model.child(cur, segment.key());
+            if (child == null) {
+                return;
+            }
+            if (last) {
+                collector.add(child, indices);
+            } else {
+                collect(segments, indices, depth + 1, child, model, onMismatch, collector);
+            }
+            return;
+        }
+
+        if (cur instanceof List == false) {
+            AccessorBase.mismatch(onMismatch, segments, indices, depth, "an array", cur);
+            return;
+        }
+        final List<Object> list = (List<Object>) cur;
+        final int from = segment.isWildcard() ? 0 : segment.index();
+        final int to = segment.isWildcard() ? list.size() : Math.min(segment.index() + 1, list.size());
+        for (int i = from; i < to; i++) {
+            indices[depth] = i;
+            if (last) {
+                collector.add(list.get(i), indices);
+            } else {
+                collect(segments, indices, depth + 1, list.get(i), model, onMismatch, collector);
+            }
+        }
+    }
+
+    private static int count(PathSegment[] segments, int[] indices, int depth, Object cur, AccessorBase.ObjectModel model, Accessor.MismatchHandler onMismatch, boolean stopAtFirst) {
+        final PathSegment segment = segments[depth];
+        final boolean last = depth == segments.length - 1;
+        if (segment.isField()) {
+            if (!model.isObject(cur)) {
+                AccessorBase.mismatch(onMismatch, segments, indices, depth + 1, model.description(), cur);
+                return 0;
+            }
+            final Object child = model.child(cur, segment.key());
+            if (child == null) {
+                return 0;
+            }
+            return last ? 1 : count(segments, indices, depth + 1, child, model, onMismatch, stopAtFirst);
+        }
+
+        if (cur instanceof List == false) {
+            AccessorBase.mismatch(onMismatch, segments, indices, depth, "an array", cur);
+            return 0;
+        }
+        final List<Object> list = (List<Object>) cur;
+        if (last) {
+            if (segment.isWildcard()) {
+                return list.size();
+            }
+            return segment.index() < list.size() ? 1 : 0;
+        }
+        if (!segment.isWildcard()) {
+            if (segment.index() >= list.size()) {
+                return 0;
+            }
+            indices[depth] = segment.index();
+            return count(segments, indices, depth + 1, list.get(segment.index()), model, onMismatch, stopAtFirst);
+        }
+        int count = 0;
+        for (int i = 0; i < list.size(); i++) {
+            indices[depth] = i;
+            count += count(segments, indices, depth + 1, list.get(i), model, onMismatch, stopAtFirst);
+            if (stopAtFirst && count > 0) {
+                return count;
+            }
+        }
+        return count;
+    }
+}
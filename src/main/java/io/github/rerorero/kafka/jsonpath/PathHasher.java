@@ -0,0 +1,269 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import org.apache.kafka.connect.data.Date;
+import org.apache.kafka.connect.data.Decimal;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.data.Time;
+import org.apache.kafka.connect.data.Timestamp;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes a stable hash of the values matched by a set of JsonPaths, e.g. for partition keys or dedupe keys.
+ * The matched values are fed to MurmurHash3 x64 128-bit as they are visited, without building result Maps or strings.
+ * <p>
+ * The hash depends only on the values as JsonConverter writes them, so a Struct and the schemaless Map of the same data
+ * (as converted by JsonConverter) have the same hash:
+ * <ul>
+ *     <li>Integers of any width are hashed as a long, and Float and Double as a double.
+ *     A Float is widened through its shortest decimal form, e.g. 1.1f as 1.1, as it is read back from JSON.</li>
+ *     <li>Bytes are hashed as the base64 string which JsonConverter writes for them.</li>
+ *     <li>Values of the logical types Date, Time, Timestamp and Decimal are hashed in the form given by fromLogical
+ *     of their schema, i.e. the days since the epoch, the milliseconds of the day, the epoch milliseconds and
+ *     the bytes of the unscaled value, which are hashed as base64 like other bytes. This matches the default
+ *     decimal.format=BASE64 of JsonConverter, but not NUMERIC. Without a schema, e.g. in a Map, java.util.Date
+ *     is taken as a Timestamp and BigDecimal as a Decimal of its own scale.</li>
+ *     <li>Structs and Maps are hashed as a set of their non-null fields, regardless of the order of the fields.</li>
+ * </ul>
+ * Records may be a Struct or a Map, and instances of this class are thread-safe.
+ */
+public class PathHasher extends AccessorBase {
+    private static final int TAG_NULL = 0;
+    private static final int TAG_FALSE = 1;
+    private static final int TAG_TRUE = 2;
+    private static final int TAG_INTEGER = 3;
+    private static final int TAG_FLOATING = 4;
+    private static final int TAG_STRING = 5;
+    private static final int TAG_ARRAY = 7;
+    private static final int TAG_OBJECT = 8;
+    private static final int TAG_PATH = 9;
+    private static final byte[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+
+    private static final ObjectModel objectModel = new ObjectModel() {
+        @Override
+        public String description() {
+            return "a Struct or a Map";
+        }
+
+        @Override
+        public boolean isObject(Object node) {
+            return node instanceof Struct || node instanceof Map;
+        }
+
+        @Override
+        public Object child(Object node, String key) {
+            return node instanceof Struct ? StructAccessor.objectModel.child(node, key) : MapAccessor.objectModel.child(node, key);
+        }
+
+        @Override
+        public void put(Object node, String key, Object value) {
+            throw new UnsupportedOperationException("PathHasher never updates records");
+        }
+    };
+
+    private final PathSegment[][] segments;
+    private final SchemaCache<Schema[]> leafSchemas = new SchemaCache<>();
+    private final long seed;
+    private final Accessor.MismatchHandler onMismatch;
+
+    /**
+     * Parse the given JsonPaths and build a new PathHasher instance with the seed 0.
+     *
+     * @param jsonPaths JsonPath strings of the values to hash
+     */
+    public PathHasher(Collection<String> jsonPaths) {
+        this(jsonPaths, 0L, null);
+    }
+
+    /**
+     * Parse the given JsonPaths and build a new PathHasher instance.
+     *
+     * @param jsonPaths  JsonPath strings of the values to hash
+     * @param seed       seed of the hash
+     * @param onMismatch handler to which mismatches are reported, or null to throw JsonPathException
+     */
+    public PathHasher(Collection<String> jsonPaths, long seed, Accessor.MismatchHandler onMismatch) {
+        this.segments = new PathSegment[jsonPaths.size()][];
+        int i = 0;
+        for (String jsonPath : jsonPaths) {
+            segments[i++] = compile(jsonPath);
+        }
+        this.seed = seed;
+        this.onMismatch = onMismatch;
+    }
+
+    /**
+     * @param record Struct or Map to hash
+     * @return the first 64 bits of the 128-bit hash
+     */
+    public long hash64(Object record) {
+        return hash128(record)[0];
+    }
+
+    /**
+     * @param record Struct or Map to hash
+     * @return the 128-bit hash as two longs
+     */
+    public long[] hash128(Object record) {
+        final Murmur3 hasher = new Murmur3(seed);
+        final Schema[] leaves = record instanceof Struct ? leafSchemas(((Struct) record).schema()) : null;
+        for (int i = 0; i < segments.length; i++) {
+            final Schema leaf = leaves == null ? null : leaves[i];
+            hasher.putByte(TAG_PATH);
+            hasher.putInt(i);
+            collectMatches(segments[i], record, objectModel, onMismatch, (value, indices) -> putValue(hasher, leaf, value));
+        }
+        return hasher.finish();
+    }
+
+    /**
+     * @return the schemas of the values at the paths, which are null if they cannot be determined from the schema
+     */
+    private Schema[] leafSchemas(Schema schema) {
+        return leafSchemas.computeIfAbsent(schema, s -> {
+            final Schema[] leaves = new Schema[segments.length];
+            for (int i = 0; i < segments.length; i++) {
+                leaves[i] = Schemas.leafSchema(s, segments[i]);
+            }
+            return leaves;
+        });
+    }
+
+    /**
+     * @param schema schema of the value, or null if it is unknown
+     */
+    private void putValue(Murmur3 hasher, Schema schema, Object value) {
+        if (value == null) {
+            hasher.putByte(TAG_NULL);
+        } else if (value instanceof Boolean) {
+            hasher.putByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            hasher.putByte(TAG_INTEGER);
+            hasher.putLong(((Number) value).longValue());
+        } else if (value instanceof Double) {
+            hasher.putByte(TAG_FLOATING);
+            hasher.putLong(Double.doubleToLongBits((Double) value));
+        } else if (value instanceof Float) {
+            // (double) 1.1f is 1.100000023841858, but JsonConverter writes 1.1, which is read back as a double
+            hasher.putByte(TAG_FLOATING);
+            hasher.putLong(Double.doubleToLongBits(Double.parseDouble(value.toString())));
+        } else if (value instanceof String) {
+            putString(hasher, (String) value);
+        } else if (value instanceof byte[]) {
+            putBase64(hasher, ByteBuffer.wrap((byte[]) value));
+        } else if (value instanceof ByteBuffer) {
+            putBase64(hasher, (ByteBuffer) value);
+        } else if (value instanceof List) {
+            final List<?> list = (List<?>) value;
+            final Schema elementSchema = schema != null && schema.type() == Schema.Type.ARRAY ? schema.valueSchema() : null;
+            hasher.putByte(TAG_ARRAY);
+            hasher.putInt(list.size());
+            for (Object element : list) {
+                putValue(hasher, elementSchema, element);
+            }
+        } else if (value instanceof Struct) {
+            final Struct struct = (Struct) value;
+            final long[] sum = new long[3];
+            for (Field field : struct.schema().fields()) {
+                addEntry(sum, field.name(), field.schema(), struct.get(field));
+            }
+            putObject(hasher, sum);
+        } else if (value instanceof Map) {
+            final Schema valueSchema = schema != null && schema.type() == Schema.Type.MAP ? schema.valueSchema() : null;
+            final long[] sum = new long[3];
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                addEntry(sum, entry.getKey(), valueSchema, entry.getValue());
+            }
+            putObject(hasher, sum);
+        } else if (value instanceof java.util.Date) {
+            hasher.putByte(TAG_INTEGER);
+            hasher.putLong(fromLogicalDate(schema, (java.util.Date) value));
+        } else if (value instanceof BigDecimal) {
+            final BigDecimal decimal = (BigDecimal) value;
+            putBase64(hasher, ByteBuffer.wrap(schema != null && Decimal.LOGICAL_NAME.equals(schema.name())
+                    ? Decimal.fromLogical(schema, decimal)
+                    : decimal.unscaledValue().toByteArray()));
+        } else {
+            putString(hasher, value.toString());
+        }
+    }
+
+    /**
+     * @return the integer which JsonConverter writes for the java.util.Date value of the logical type
+     */
+    private static long fromLogicalDate(Schema schema, java.util.Date value) {
+        final String name = schema == null ? null : schema.name();
+        if (Date.LOGICAL_NAME.equals(name)) {
+            return Date.fromLogical(schema, value);
+        }
+        if (Time.LOGICAL_NAME.equals(name)) {
+            return Time.fromLogical(schema, value);
+        }
+        return Timestamp.fromLogical(Timestamp.SCHEMA, value);
+    }
+
+    /**
+     * Hash the bytes from the position to the limit of the buffer the same as putString of their base64 encoding
+     * with padding, which is encoded as it is fed without building the string.
+     */
+    private static void putBase64(Murmur3 hasher, ByteBuffer buffer) {
+        final int length = buffer.remaining();
+        hasher.putByte(TAG_STRING);
+        hasher.putInt((length + 2) / 3 * 4);
+        int i = buffer.position();
+        for (; i + 3 <= buffer.limit(); i += 3) {
+            final int bits = (buffer.get(i) & 0xff) << 16 | (buffer.get(i + 1) & 0xff) << 8 | (buffer.get(i + 2) & 0xff);
+            hasher.putByte(BASE64[bits >>> 18]);
+            hasher.putByte(BASE64[(bits >>> 12) & 0x3f]);
+            hasher.putByte(BASE64[(bits >>> 6) & 0x3f]);
+            hasher.putByte(BASE64[bits & 0x3f]);
+        }
+        final int rest = buffer.limit() - i;
+        if (rest > 0) {
+            final int bits = (buffer.get(i) & 0xff) << 16 | (rest == 2 ? (buffer.get(i + 1) & 0xff) << 8 : 0);
+            hasher.putByte(BASE64[bits >>> 18]);
+            hasher.putByte(BASE64[(bits >>> 12) & 0x3f]);
+            hasher.putByte(rest == 2 ? BASE64[(bits >>> 6) & 0x3f] : '=');
+            hasher.putByte('=');
+        }
+    }
+
+    private static void putString(Murmur3 hasher, String value) {
+        hasher.putByte(TAG_STRING);
+        hasher.putInt(value.length());
+        hasher.putUtf8(value);
+    }
+
+    /**
+     * Hash an entry of a Struct or a Map separately and add it to the sum, which makes the hash of the object
+     * independent of the order of the entries. Null entries are skipped, since a Map may have no key for them.
+     *
+     * @param sum the number of entries followed by the sum of the 128-bit hashes of the entries
+     */
+    private void addEntry(long[] sum, Object key, Schema schema, Object value) {
+        if (value == null) {
+            return;
+        }
+        final Murmur3 entry = new Murmur3(seed);
+        putValue(entry, null, key);
+        putValue(entry, schema, value);
+        final long[] hash = entry.finish();
+        sum[0]++;
+        sum[1] += hash[0];
+        sum[2] += hash[1];
+    }
+
+    private static void putObject(Murmur3 hasher, long[] sum) {
+        hasher.putByte(TAG_OBJECT);
+        hasher.putLong(sum[0]);
+        hasher.putLong(sum[1]);
+        hasher.putLong(sum[2]);
+    }
+}
@@ -0,0 +1,53 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A single step of a compiled JsonPath, either an object subscript (`.name` or `['name']`)
+ * or an array subscript (`[n]` or `[*]`).
+ */
+final class PathSegment {
+    static final int WILDCARD = -1;
+
+    private final String key;
+    private final byte[] keyBytes;
+    private final int index;
+
+    private PathSegment(String key, int index) {
+        this.key = key;
+        this.keyBytes = key == null ? null : key.getBytes(StandardCharsets.UTF_8);
+        this.index = index;
+    }
+
+    static PathSegment field(String key) {
+        return new PathSegment(key, 0);
+    }
+
+    static PathSegment index(int index) {
+        // A negative index has always been handled as a wildcard.
+        return new PathSegment(null, index < 0 ? WILDCARD : index);
+    }
+
+    boolean isField() {
+        return key != null;
+    }
+
+    boolean isWildcard() {
+        return key == null && index == WILDCARD;
+    }
+
+    String key() {
+        return key;
+    }
+
+    /**
+     * @return UTF-8 encoded key, used to compare keys against raw JSON without decoding them.
+     */
+    byte[] keyBytes() {
+        return keyBytes;
+    }
+
+    int index() {
+        return index;
+    }
+}
@@ -0,0 +1,106 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A trie of path segments which merges several JsonPaths sharing the same prefix,
+ * so that a record can be walked once for all of them.
+ * Array indices are branched only in the tries of update keys, which also hold the new values at their leaves.
+ */
+final class PathTrie {
+    private final Map<String, PathTrie> fields = new HashMap<>();
+    private Map<Integer, PathTrie> indices;
+    private PathTrie wildcard;
+    private boolean terminal;
+    private Object value;
+
+    /**
+     * Build a trie in which every array subscript is merged into the wildcard,
+     * which is how projections keep the shape of arrays.
+     */
+    static PathTrie projection(Iterable<PathSegment[]> paths) {
+        final PathTrie root = new PathTrie();
+        for (PathSegment[] segments : paths) {
+            PathTrie node = root;
+            for (PathSegment segment : segments) {
+                node = segment.isField() ? node.addField(segment.key()) : node.addWildcard();
+            }
+            node.terminal = true;
+        }
+        return root;
+    }
+
+    PathTrie addField(String key) {
+        return fields.computeIfAbsent(key, k -> new PathTrie());
+    }
+
+    PathTrie addWildcard() {
+        if (wildcard == null) {
+            wildcard = new PathTrie();
+        }
+        return wildcard;
+    }
+
+    PathTrie addIndex(int index) {
+        if (indices == null) {
+            indices = new HashMap<>();
+        }
+        return indices.computeIfAbsent(index, k -> new PathTrie());
+    }
+
+    /**
+     * @return true if a path ends at this node. The whole subtree is selected then, regardless of the children.
+     */
+    boolean isTerminal() {
+        return terminal;
+    }
+
+    PathTrie field(String key) {
+        return fields.get(key);
+    }
+
+    PathTrie wildcard() {
+        return wildcard;
+    }
+
+    /**
+     * @return the child of the array index, or null if it is not added
+     */
+    PathTrie index(int index) {
+        return indices == null ? null : indices.get(index);
+    }
+
+    /**
+     * @return the children of the array indices, or an empty Set if no index is added
+     */
+    Set<Map.Entry<Integer, PathTrie>> indexEntries() {
+        return indices == null ? Collections.<Integer, PathTrie>emptyMap().entrySet() : indices.entrySet();
+    }
+
+    /**
+     * @return the value held by the leaf of an update key
+     */
+    Object value() {
+        return value;
+    }
+
+    void setValue(Object value) {
+        this.value = value;
+        this.terminal = true;
+    }
+
+    boolean isEmpty() {
+        return !terminal && fields.isEmpty() && wildcard == null && (indices == null || indices.isEmpty());
+    }
+
+    Set<Map.Entry<String, PathTrie>> fieldEntries() {
+        return fields.entrySet();
+    }
+
+    boolean hasFields() {
+        return !fields.isEmpty();
+    }
+}
@@ -0,0 +1,407 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable Map of schemaless records, implemented as a hash array mapped trie.
+ * A new version with a key added, replaced or removed is built by copying only the nodes on the path to the key,
+ * in O(log n), and shares all the other nodes with the original.
+ * <p>
+ * MapAccessor.Updater updates a PersistentMap the same way, rebuilding only the Maps and arrays on the paths of
+ * the replaced values, so that a record converted once, e.g. by ProjectingJsonConverter, is never copied as a whole.
+ * Being a normal java.util.Map, it can be read by Getter and any other code. The mutating methods of Map throw
+ * UnsupportedOperationException, and keys must not be null.
+ */
+public final class PersistentMap extends AbstractMap<String, Object> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    // 7 levels of bitmap nodes consume the 32 bits of a hash, followed by a collision node
+    private static final int MAX_DEPTH = 8;
+    private static final PersistentMap EMPTY = new PersistentMap(null, 0);
+
+    // null if the map is empty
+    private final Node root;
+    private final int size;
+    private int hash;
+    private Set<Map.Entry<String, Object>> entrySet;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * @return the empty PersistentMap
+     */
+    public static PersistentMap empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Convert the Map into a PersistentMap, along with the Maps nested in it, and the arrays into unmodifiable Lists,
+     * so that the whole record is immutable. Null values are dropped, the same as Updater does when it copies a Map.
+     *
+     * @param map Map of a schemaless record
+     * @return the map itself if it is a PersistentMap, or a new PersistentMap
+     */
+    public static PersistentMap of(Map<String, ?> map) {
+        if (map instanceof PersistentMap) {
+            return (PersistentMap) map;
+        }
+        PersistentMap converted = EMPTY;
+        for (Map.Entry<String, ?> entry : map.entrySet()) {
+            if (entry.getValue() != null) {
+                converted = converted.plus(entry.getKey(), convert(entry.getValue()));
+            }
+        }
+        return converted;
+    }
+
+    private static Object convert(Object value) {
+        if (value instanceof Map) {
+            return of((Map<String, ?>) value);
+        }
+        if (value instanceof List) {
+            final List<?> list = (List<?>) value;
+            final List<Object> converted = new ArrayList<>(list.size());
+            for (Object element : list) {
+                converted.add(element == null ? null : convert(element));
+            }
+            return Collections.unmodifiableList(converted);
+        }
+        return value;
+    }
+
+    /**
+     * @return a new PersistentMap in which the key is mapped to the value, or this map if it already is
+     */
+    public PersistentMap plus(String key, Object value) {
+        final boolean[] added = new boolean[1];
+        final Node node = root == null ? BitmapNode.EMPTY : root;
+        final Node updated = node.plus(0, hashOf(key), key, value, added);
+        return updated == root ? this : new PersistentMap(updated, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * @return a new PersistentMap without the key, or this map if it has no such key
+     */
+    public PersistentMap minus(String key) {
+        if (root == null) {
+            return this;
+        }
+        final Node updated = root.minus(0, hashOf(key), key);
+        if (updated == root) {
+            return this;
+        }
+        return updated == null ? EMPTY : new PersistentMap(updated, size - 1);
+    }
+
+    @Override
+    public Object get(Object key) {
+        return root == null || key == null ? null : root.find(0, key.hashCode(), key, null);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return root != null && key != null && root.find(0, key.hashCode(), key, Node.NOT_FOUND) != Node.NOT_FOUND;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Map.Entry<String, Object>>() {
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator() {
+                    return new EntryIterator(root);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    @Override
+    public int hashCode() {
+        // immutable, so computed at most once except for races which compute the same value
+        if (hash == 0) {
+            hash = super.hashCode();
+        }
+        return hash;
+    }
+
+    private static int hashOf(String key) {
+        if (key == null) {
+            throw new NullPointerException("PersistentMap does not support null keys");
+        }
+        return key.hashCode();
+    }
+
+    /**
+     * A node of the trie, which holds the pairs of keys and values in an array.
+     */
+    private abstract static class Node {
+        static final Object NOT_FOUND = new Object();
+
+        // keys and values alternately. A null key of a bitmap node means that the value is a child node.
+        final Object[] array;
+
+        Node(Object[] array) {
+            this.array = array;
+        }
+
+        abstract Object find(int shift, int hash, Object key, Object notFound);
+
+        /**
+         * @param added set to true if the key is added rather than replaced
+         * @return the new node, or this node if the key is already mapped to the value
+         */
+        abstract Node plus(int shift, int hash, String key, Object value, boolean[] added);
+
+        /**
+         * @return the new node, this node if it has no such key, or null if the node becomes empty
+         */
+        abstract Node minus(int shift, int hash, Object key);
+    }
+
+    /**
+     * A node which has a slot for each 5 bits of the hashes at its level, of which only the used ones are allocated.
+     */
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        final int bitmap;
+
+        BitmapNode(int bitmap, Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        private static int bitOf(int hash, int shift) {
+            return 1 << ((hash >>> shift) & MASK);
+        }
+
+        private int indexOf(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key, Object notFound) {
+            final int bit = bitOf(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return notFound;
+            }
+            final int i = 2 * indexOf(bit);
+            final Object k = array[i];
+            if (k == null) {
+                return ((Node) array[i + 1]).find(shift + BITS, hash, key, notFound);
+            }
+            return key.equals(k) ? array[i + 1] : notFound;
+        }
+
+        @Override
+        Node plus(int shift, int hash, String key, Object value, boolean[] added) {
+            final int bit = bitOf(hash, shift);
+            final int i = 2 * indexOf(bit);
+            if ((bitmap & bit) == 0) {
+                added[0] = true;
+                final Object[] inserted = new Object[array.length + 2];
+                System.arraycopy(array, 0, inserted, 0, i);
+                inserted[i] = key;
+                inserted[i + 1] = value;
+                System.arraycopy(array, i, inserted, i + 2, array.length - i);
+                return new BitmapNode(bitmap | bit, inserted);
+            }
+
+            final Object k = array[i];
+            final Object v = array[i + 1];
+            if (k == null) {
+                final Node child = ((Node) v).plus(shift + BITS, hash, key, value, added);
+                return child == v ? this : replace(i, null, child);
+            }
+            if (key.equals(k)) {
+                return v == value ? this : replace(i, k, value);
+            }
+            added[0] = true;
+            return replace(i, null, split(shift + BITS, (String) k, v, hash, key, value));
+        }
+
+        /**
+         * @return a new node which holds both of the keys, which have different hashes unless it is a collision node
+         */
+        private static Node split(int shift, String k1, Object v1, int hash2, String k2, Object v2) {
+            final int hash1 = k1.hashCode();
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[]{k1, v1, k2, v2});
+            }
+            final boolean[] added = new boolean[1];
+            return EMPTY.plus(shift, hash1, k1, v1, added).plus(shift, hash2, k2, v2, added);
+        }
+
+        private BitmapNode replace(int i, Object key, Object value) {
+            final Object[] replaced = array.clone();
+            replaced[i] = key;
+            replaced[i + 1] = value;
+            return new BitmapNode(bitmap, replaced);
+        }
+
+        @Override
+        Node minus(int shift, int hash, Object key) {
+            final int bit = bitOf(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            final int i = 2 * indexOf(bit);
+            final Object k = array[i];
+            if (k == null) {
+                final Node child = ((Node) array[i + 1]).minus(shift + BITS, hash, key);
+                if (child == array[i + 1]) {
+                    return this;
+                }
+                return child == null ? remove(bit, i) : replace(i, null, child);
+            }
+            return key.equals(k) ? remove(bit, i) : this;
+        }
+
+        private BitmapNode remove(int bit, int i) {
+            if (bitmap == bit) {
+                return null;
+            }
+            final Object[] removed = new Object[array.length - 2];
+            System.arraycopy(array, 0, removed, 0, i);
+            System.arraycopy(array, i + 2, removed, i, array.length - i - 2);
+            return new BitmapNode(bitmap & ~bit, removed);
+        }
+    }
+
+    /**
+     * A node of the keys which have the same hash, which are searched linearly.
+     */
+    private static final class CollisionNode extends Node {
+        final int hash;
+
+        CollisionNode(int hash, Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key, Object notFound) {
+            final int i = indexOf(key);
+            return i < 0 ? notFound : array[i + 1];
+        }
+
+        @Override
+        Node plus(int shift, int hash, String key, Object value, boolean[] added) {
+            if (hash != this.hash) {
+                // the key has a different hash, so this node is moved under a bitmap node
+                final Node parent = new BitmapNode(BitmapNode.bitOf(this.hash, shift), new Object[]{null, this});
+                return parent.plus(shift, hash, key, value, added);
+            }
+            final int i = indexOf(key);
+            if (i >= 0) {
+                if (array[i + 1] == value) {
+                    return this;
+                }
+                final Object[] replaced = array.clone();
+                replaced[i + 1] = value;
+                return new CollisionNode(hash, replaced);
+            }
+            added[0] = true;
+            final Object[] appended = new Object[array.length + 2];
+            System.arraycopy(array, 0, appended, 0, array.length);
+            appended[array.length] = key;
+            appended[array.length + 1] = value;
+            return new CollisionNode(hash, appended);
+        }
+
+        @Override
+        Node minus(int shift, int hash, Object key) {
+            final int i = indexOf(key);
+            if (i < 0) {
+                return this;
+            }
+            if (array.length == 2) {
+                return null;
+            }
+            final Object[] removed = new Object[array.length - 2];
+            System.arraycopy(array, 0, removed, 0, i);
+            System.arraycopy(array, i + 2, removed, i, array.length - i - 2);
+            return new CollisionNode(hash, removed);
+        }
+    }
+
+    /**
+     * Visits the entries depth-first with a stack of the arrays of the nodes and the positions in them.
+     */
+    private static final class EntryIterator implements Iterator<Map.Entry<String, Object>> {
+        private final Object[][] arrays = new Object[MAX_DEPTH][];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth;
+        private Map.Entry<String, Object> next;
+
+        EntryIterator(Node root) {
+            if (root == null) {
+                depth = -1;
+            } else {
+                arrays[0] = root.array;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && depth >= 0) {
+                final Object[] array = arrays[depth];
+                final int i = positions[depth];
+                if (i >= array.length) {
+                    depth--;
+                    continue;
+                }
+                positions[depth] = i + 2;
+                if (array[i] == null) {
+                    depth++;
+                    arrays[depth] = ((Node) array[i + 1]).array;
+                    positions[depth] = 0;
+                } else {
+                    next = new AbstractMap.SimpleImmutableEntry<>((String) array[i], array[i + 1]);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final Map.Entry<String, Object> entry = next;
+            next = null;
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,439 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import org.apache.kafka.common.cache.Cache;
+import org.apache.kafka.common.cache.LRUCache;
+import org.apache.kafka.common.cache.SynchronizedCache;
+import org.apache.kafka.common.config.AbstractConfig;
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.utils.Utils;
+import org.apache.kafka.connect.data.Date;
+import org.apache.kafka.connect.data.Decimal;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaAndValue;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.data.Time;
+import org.apache.kafka.connect.data.Timestamp;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.storage.Converter;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Converter which decodes JSON in the same format as JsonConverter, but materializes only the subtrees
+ * on the configured JsonPaths. Everything else is skipped at the token level.
+ * With schemas enabled, the returned Struct has a schema narrowed down to the fields on the paths,
+ * so the records can be accessed with StructAccessor or MapAccessor by the same paths.
+ * Serialization is delegated to another converter, JsonConverter by default.
+ */
+public class ProjectingJsonConverter implements Converter {
+    public static final String PATHS_CONFIG = "projection.paths";
+    public static final String DELEGATE_CONFIG = "projection.delegate";
+    public static final String DELEGATE_DEFAULT = "org.apache.kafka.connect.json.JsonConverter";
+    public static final String SCHEMAS_ENABLE_CONFIG = "schemas.enable";
+    public static final boolean SCHEMAS_ENABLE_DEFAULT = true;
+    public static final String SCHEMAS_CACHE_SIZE_CONFIG = "schemas.cache.size";
+    public static final int SCHEMAS_CACHE_SIZE_DEFAULT = 1000;
+    public static final String PERSISTENT_MAPS_CONFIG = "projection.persistent.maps";
+    public static final boolean PERSISTENT_MAPS_DEFAULT = false;
+
+    private static final String ENVELOPE_SCHEMA = "schema";
+    private static final String ENVELOPE_PAYLOAD = "payload";
+
+    static final ConfigDef CONFIG_DEF = new ConfigDef()
+            .define(PATHS_CONFIG, ConfigDef.Type.LIST, ConfigDef.Importance.HIGH,
+                    "JsonPaths of the subtrees to be materialized.")
+            .define(DELEGATE_CONFIG, ConfigDef.Type.STRING, DELEGATE_DEFAULT, ConfigDef.Importance.LOW,
+                    "Class name of the Converter which serializes the Connect data. It is configured with the same properties.")
+            .define(SCHEMAS_ENABLE_CONFIG, ConfigDef.Type.BOOLEAN, SCHEMAS_ENABLE_DEFAULT, ConfigDef.Importance.HIGH,
+                    "Include schemas within each of the serialized values, same as JsonConverter.")
+            .define(SCHEMAS_CACHE_SIZE_CONFIG, ConfigDef.Type.INT, SCHEMAS_CACHE_SIZE_DEFAULT, ConfigDef.Importance.LOW,
+                    "The maximum number of projected schemas that can be cached.")
+            .define(PERSISTENT_MAPS_CONFIG, ConfigDef.Type.BOOLEAN, PERSISTENT_MAPS_DEFAULT, ConfigDef.Importance.LOW,
+                    "Convert schemaless values into PersistentMap, which MapAccessor.Updater updates without copying the whole record.");
+
+    private PathTrie projection;
+    private boolean schemasEnabled;
+    private boolean persistentMaps;
+    private Converter delegate;
+    private Cache<ByteBuffer, Schema> schemaCache;
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        final AbstractConfig config = new AbstractConfig(CONFIG_DEF, configs);
+        final List<PathSegment[]> paths = new ArrayList<>();
+        for (String jsonPath : config.getList(PATHS_CONFIG)) {
+            paths.add(AccessorBase.compile(jsonPath));
+        }
+        this.projection = PathTrie.projection(paths);
+        this.schemasEnabled = config.getBoolean(SCHEMAS_ENABLE_CONFIG);
+        this.persistentMaps = config.getBoolean(PERSISTENT_MAPS_CONFIG);
+        this.schemaCache = new SynchronizedCache<>(new LRUCache<>(config.getInt(SCHEMAS_CACHE_SIZE_CONFIG)));
+        try {
+            this.delegate = Utils.newInstance(config.getString(DELEGATE_CONFIG), Converter.class);
+        } catch (ClassNotFoundException e) {
+            throw new ConfigException(DELEGATE_CONFIG, config.getString(DELEGATE_CONFIG), "Class not found");
+        }
+        this.delegate.configure(configs, isKey);
+    }
+
+    @Override
+    public byte[] fromConnectData(String topic, Schema schema, Object value) {
+        return delegate.fromConnectData(topic, schema, value);
+    }
+
+    @Override
+    public SchemaAndValue toConnectData(String topic, byte[] value) {
+        if (value == null) {
+            return SchemaAndValue.NULL;
+        }
+        try {
+            final JsonScanner scanner = new JsonScanner(value, 0, value.length);
+            if (!schemasEnabled) {
+                return new SchemaAndValue(null, schemaless(readSchemaless(scanner, projection)));
+            }
+            return readEnvelope(value, scanner);
+        } catch (JsonPathException e) {
+            throw new DataException("Converting byte[] to Kafka Connect data failed due to serialization error: " + e.getMessage(), e);
+        }
+    }
+
+    private SchemaAndValue readEnvelope(byte[] value, JsonScanner scanner) {
+        int schemaStart = -1;
+        int schemaEnd = -1;
+        int payloadStart = -1;
+        if (!scanner.isObject()) {
+            throw envelopeError();
+        }
+        scanner.beginObject();
+        for (boolean first = true; scanner.nextMember(first); first = false) {
+            final String name = scanner.memberName();
+            scanner.peek();
+            if (ENVELOPE_SCHEMA.equals(name) && schemaStart < 0) {
+                schemaStart = scanner.position();
+                scanner.skipValue();
+                schemaEnd = scanner.position();
+            } else if (ENVELOPE_PAYLOAD.equals(name) && payloadStart < 0) {
+                payloadStart = scanner.position();
+                scanner.skipValue();
+            } else {
+                throw envelopeError();
+            }
+        }
+        if (schemaStart < 0 || payloadStart < 0) {
+            throw envelopeError();
+        }
+
+        scanner.position(schemaStart);
+        if (scanner.isNull()) {
+            scanner.position(payloadStart);
+            return new SchemaAndValue(null, schemaless(readSchemaless(scanner, projection)));
+        }
+
+        final ByteBuffer schemaKey = ByteBuffer.wrap(value, schemaStart, schemaEnd - schemaStart).slice();
+        Schema schema = schemaCache.get(schemaKey);
+        if (schema == null) {
+            schema = Schemas.project(asConnectSchema(scanner.readValue()), projection);
+            final byte[] copied = new byte[schemaEnd - schemaStart];
+            System.arraycopy(value, schemaStart, copied, 0, copied.length);
+            schemaCache.put(ByteBuffer.wrap(copied), schema);
+        }
+
+        scanner.position(payloadStart);
+        return new SchemaAndValue(schema, read(scanner, schema));
+    }
+
+    private static DataException envelopeError() {
+        return new DataException("JsonConverter with schemas.enable requires \"schema\" and \"payload\" fields and may not contain additional fields." +
+                " If you are trying to deserialize plain JSON data, set schemas.enable=false in your converter configuration.");
+    }
+
+    private Object schemaless(Object value) {
+        return persistentMaps && value instanceof Map ? PersistentMap.of((Map<String, Object>) value) : value;
+    }
+
+    /**
+     * Read a schemaless value, building only the subtrees on the trie.
+     */
+    private static Object readSchemaless(JsonScanner scanner, PathTrie node) {
+        if (node.isTerminal()) {
+            return scanner.readValue();
+        }
+        if (node.hasFields() && scanner.isObject()) {
+            final Map<String, Object> map = new HashMap<>();
+            scanner.beginObject();
+            for (boolean first = true; scanner.nextMember(first); first = false) {
+                final String name = scanner.memberName();
+                final PathTrie child = node.field(name);
+                if (child == null) {
+                    scanner.skipValue();
+                } else {
+                    map.put(name, readSchemaless(scanner, child));
+                }
+            }
+            return map;
+        }
+        if (node.wildcard() != null && scanner.isArray()) {
+            final List<Object> list = new ArrayList<>();
+            scanner.beginArray();
+            for (boolean first = true; scanner.nextElement(first); first = false) {
+                list.add(readSchemaless(scanner, node.wildcard()));
+            }
+            return list;
+        }
+        // The path does not fit the shape of the value. Keep it as it is so that accessors report the same result.
+        return scanner.readValue();
+    }
+
+    /**
+     * Read a value of the given schema. Struct fields which are not in the (projected) schema are skipped.
+     */
+    private static Object read(JsonScanner scanner, Schema schema) {
+        if (scanner.isNull()) {
+            scanner.skipValue();
+            return nullValue(schema);
+        }
+        if (schema.name() != null) {
+            switch (schema.name()) {
+                case Decimal.LOGICAL_NAME:
+                    if (scanner.peek() == '"') {
+                        return Decimal.toLogical(schema, Base64.getDecoder().decode(scanner.readString()));
+                    }
+                    return scanner.readDecimal();
+                case Date.LOGICAL_NAME:
+                    return Date.toLogical(schema, readNumber(scanner, schema).intValue());
+                case Time.LOGICAL_NAME:
+                    return Time.toLogical(schema, readNumber(scanner, schema).intValue());
+                case Timestamp.LOGICAL_NAME:
+                    return Timestamp.toLogical(schema, readNumber(scanner, schema).longValue());
+                default:
+                    break;
+            }
+        }
+
+        switch (schema.type()) {
+            case INT8:
+                return readNumber(scanner, schema).byteValue();
+            case INT16:
+                return readNumber(scanner, schema).shortValue();
+            case INT32:
+                return readNumber(scanner, schema).intValue();
+            case INT64:
+                return readNumber(scanner, schema).longValue();
+            case FLOAT32:
+                return readNumber(scanner, schema).floatValue();
+            case FLOAT64:
+                return readNumber(scanner, schema).doubleValue();
+            case BOOLEAN:
+                return readTyped(scanner, schema, Boolean.class);
+            case STRING:
+                return readTyped(scanner, schema, String.class);
+            case BYTES:
+                return Base64.getDecoder().decode(readTyped(scanner, schema, String.class));
+            case ARRAY: {
+                expect(scanner.isArray(), schema);
+                final List<Object> list = new ArrayList<>();
+                scanner.beginArray();
+                for (boolean first = true; scanner.nextElement(first); first = false) {
+                    list.add(read(scanner, schema.valueSchema()));
+                }
+                return list;
+            }
+            case MAP: {
+                final Map<Object, Object> map = new HashMap<>();
+                if (schema.keySchema().type() == Schema.Type.STRING) {
+                    expect(scanner.isObject(), schema);
+                    scanner.beginObject();
+                    for (boolean first = true; scanner.nextMember(first); first = false) {
+                        final String key = scanner.memberName();
+                        map.put(key, read(scanner, schema.valueSchema()));
+                    }
+                } else {
+                    // non-string keys are serialized as an array of [key, value] pairs
+                    expect(scanner.isArray(), schema);
+                    scanner.beginArray();
+                    for (boolean first = true; scanner.nextElement(first); first = false) {
+                        expect(scanner.isArray(), schema);
+                        scanner.beginArray();
+                        scanner.nextElement(true);
+                        final Object key = read(scanner, schema.keySchema());
+                        scanner.nextElement(false);
+                        final Object val = read(scanner, schema.valueSchema());
+                        if (scanner.nextElement(false)) {
+                            throw new DataException("Found invalid map entry instead of array tuple");
+                        }
+                        map.put(key, val);
+                    }
+                }
+                return map;
+            }
+            case STRUCT: {
+                expect(scanner.isObject(), schema);
+                final Struct struct = new Struct(schema);
+                scanner.beginObject();
+                for (boolean first = true; scanner.nextMember(first); first = false) {
+                    final Field field = schema.field(scanner.memberName());
+                    if (field == null) {
+                        scanner.skipValue();
+                    } else {
+                        struct.put(field, read(scanner, field.schema()));
+                    }
+                }
+                for (Field field : schema.fields()) {
+                    if (struct.getWithoutDefault(field.name()) == null) {
+                        struct.put(field, nullValue(field.schema()));
+                    }
+                }
+                return struct;
+            }
+            default:
+                throw new DataException("Unknown schema type: " + schema.type());
+        }
+    }
+
+    private static Object nullValue(Schema schema) {
+        if (schema.defaultValue() != null) {
+            return schema.defaultValue();
+        }
+        if (schema.isOptional()) {
+            return null;
+        }
+        throw new DataException("Invalid null value for required " + schema.type() + " field");
+    }
+
+    private static Number readNumber(JsonScanner scanner, Schema schema) {
+        return readTyped(scanner, schema, Number.class);
+    }
+
+    private static <T> T readTyped(JsonScanner scanner, Schema schema, Class<T> clazz) {
+        final Object value = scanner.readValue();
+        if (!clazz.isInstance(value)) {
+            throw new DataException("Invalid JSON for " + schema.type() + " schema: " + value);
+        }
+        return clazz.cast(value);
+    }
+
+    private static void expect(boolean matches, Schema schema) {
+        if (!matches) {
+            throw new DataException("Invalid JSON for " + schema.type() + " schema");
+        }
+    }
+
+    /**
+     * Convert the schema in the envelope into a Connect Schema, in the same way as JsonConverter.
+     */
+    private static Schema asConnectSchema(Object jsonSchema) {
+        if (jsonSchema == null) {
+            return null;
+        }
+        if (jsonSchema instanceof Map == false) {
+            throw new DataException("Schema must be an object but " + jsonSchema);
+        }
+        final Map<String, Object> node = (Map<String, Object>) jsonSchema;
+        final Object type = node.get("type");
+        if (type instanceof String == false) {
+            throw new DataException("Schema must contain 'type' field");
+        }
+
+        final SchemaBuilder builder;
+        switch ((String) type) {
+            case "boolean":
+                builder = SchemaBuilder.bool();
+                break;
+            case "int8":
+                builder = SchemaBuilder.int8();
+                break;
+            case "int16":
+                builder = SchemaBuilder.int16();
+                break;
+            case "int32":
+                builder = SchemaBuilder.int32();
+                break;
+            case "int64":
+                builder = SchemaBuilder.int64();
+                break;
+            case "float":
+                builder = SchemaBuilder.float32();
+                break;
+            case "double":
+                builder = SchemaBuilder.float64();
+                break;
+            case "bytes":
+                builder = SchemaBuilder.bytes();
+                break;
+            case "string":
+                builder = SchemaBuilder.string();
+                break;
+            case "array":
+                if (node.get("items") == null) {
+                    throw new DataException("Array schema did not specify the element type");
+                }
+                builder = SchemaBuilder.array(asConnectSchema(node.get("items")));
+                break;
+            case "map":
+                if (node.get("keys") == null || node.get("values") == null) {
+                    throw new DataException("Map schema did not specify the key or value type");
+                }
+                builder = SchemaBuilder.map(asConnectSchema(node.get("keys")), asConnectSchema(node.get("values")));
+                break;
+            case "struct":
+                builder = SchemaBuilder.struct();
+                if (node.get("fields") instanceof List == false) {
+                    throw new DataException("Struct schema's \"fields\" argument is not an array.");
+                }
+                for (Object field : (List<Object>) node.get("fields")) {
+                    if (field instanceof Map == false || ((Map<String, Object>) field).get("field") instanceof String == false) {
+                        throw new DataException("Struct schema's field name not specified properly");
+                    }
+                    builder.field((String) ((Map<String, Object>) field).get("field"), asConnectSchema(field));
+                }
+                break;
+            default:
+                throw new DataException("Unknown schema type: " + type);
+        }
+
+        if (Boolean.TRUE.equals(node.get("optional"))) {
+            builder.optional();
+        } else {
+            builder.required();
+        }
+        if (node.get("name") instanceof String) {
+            builder.name((String) node.get("name"));
+        }
+        if (node.get("version") instanceof Number) {
+            builder.version(((Number) node.get("version")).intValue());
+        }
+        if (node.get("doc") instanceof String) {
+            builder.doc((String) node.get("doc"));
+        }
+        if (node.get("parameters") instanceof Map) {
+            ((Map<String, Object>) node.get("parameters")).forEach((k, v) -> {
+                if (v instanceof String == false) {
+                    throw new DataException("Schema parameters must have string values.");
+                }
+                builder.parameter(k, (String) v);
+            });
+        }
+        if (node.get("default") != null) {
+            builder.defaultValue(defaultValue(builder, node.get("default")));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Convert a default value, which has already been materialized as a schemaless value.
+     */
+    private static Object defaultValue(Schema schema, Object value) {
+        final JsonWriter writer = new JsonWriter(64);
+        writer.writeValue(value);
+        final byte[] json = writer.toByteArray();
+        return read(new JsonScanner(json, 0, json.length), schema);
+    }
+}
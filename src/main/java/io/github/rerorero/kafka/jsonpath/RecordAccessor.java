@@ -0,0 +1,157 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import org.apache.kafka.connect.connector.ConnectRecord;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.header.Header;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Accessors for the whole ConnectRecord, whose JsonPath starts with one of the roots below instead of `$`.
+ * <ul>
+ *     <li>`$key` : the key of the record</li>
+ *     <li>`$value` : the value of the record</li>
+ *     <li>`$headers['name']` or `$headers.name` : the value of the last header with the name</li>
+ * </ul>
+ * e.g. `$value.after.id` or `$headers['trace'].span_id`.
+ * The rest of the path is compiled once for both StructAccessor and MapAccessor, and evaluated by either of them
+ * according to whether the part has a Struct schema or is a schemaless Map.
+ */
+public class RecordAccessor extends AccessorBase {
+    private static final Pattern ROOT = Pattern.compile("^\\s*\\$(key|value|headers(?:\\.([_A-Za-z][_A-Za-z0-9]*)|\\['([^'\\\\]*)'\\]))");
+
+    private enum Part {
+        KEY, VALUE, HEADER
+    }
+
+    public static class Getter<R extends ConnectRecord<R>> implements Accessor.Getter<R> {
+        private final Part part;
+        private final String headerName;
+        private final String root;
+        // true if the path has no subscript after the root, which matches the part itself regardless of its type
+        private final boolean wholePart;
+        private final StructAccessor.Getter structGetter;
+        private final MapAccessor.Getter mapGetter;
+        private final Accessor.MismatchHandler onMismatch;
+
+        /**
+         * Parse the given JsonPath and build a new Getter instance which retrieves values from
+         * the key, the value or a header of the passed record according to the json path.
+         *
+         * @param jsonPath JsonPath string starting with `$key`, `$value` or `$headers['name']`
+         */
+        public Getter(String jsonPath) {
+            this(jsonPath, null);
+        }
+
+        /**
+         * Parse the given JsonPath and build a new Getter instance in lenient mode,
+         * which treats a type mismatch or a null node as a non-match instead of throwing JsonPathException.
+         *
+         * @param jsonPath   JsonPath string starting with `$key`, `$value` or `$headers['name']`
+         * @param onMismatch handler to which mismatches are reported, or null to throw JsonPathException
+         */
+        public Getter(String jsonPath, Accessor.MismatchHandler onMismatch) {
+            final Matcher matcher = ROOT.matcher(jsonPath);
+            if (!matcher.find()) {
+                throw new JsonPathException("JsonPath for a record must start with $key, $value or $headers['name']: " + jsonPath);
+            }
+            switch (matcher.group(1)) {
+                case "key":
+                    this.part = Part.KEY;
+                    this.headerName = null;
+                    break;
+                case "value":
+                    this.part = Part.VALUE;
+                    this.headerName = null;
+                    break;
+                default:
+                    this.part = Part.HEADER;
+                    this.headerName = matcher.group(2) != null ? matcher.group(2) : matcher.group(3);
+                    break;
+            }
+            this.root = matcher.group().trim();
+            final String subPath = "$" + jsonPath.substring(matcher.end());
+            this.wholePart = jsonPath.substring(matcher.end()).trim().isEmpty();
+            this.structGetter = new StructAccessor.Getter(subPath, onMismatch);
+            this.mapGetter = new MapAccessor.Getter(subPath, onMismatch);
+            this.onMismatch = onMismatch;
+        }
+
+        /**
+         * Get the values from the given record.
+         *
+         * @param record ConnectRecord from which to get the values
+         * @return Map of field paths and values for retrieved values. The paths start with the root of the JsonPath, e.g. `$value.after.id`.
+         */
+        @Override
+        public Map<String, Object> run(R record) {
+            final Object value = valueOf(record);
+            if (wholePart) {
+                return value == null ? Collections.emptyMap() : Collections.singletonMap(root, value);
+            }
+            final Accessor.Getter<Object> getter = getterOf(value);
+            if (getter == null) {
+                return Collections.emptyMap();
+            }
+            final Map<String, Object> values = getter.run(value);
+            final Map<String, Object> rooted = new HashMap<>();
+            values.forEach((path, v) -> rooted.put(root + path.substring(1), v));
+            return rooted;
+        }
+
+        @Override
+        public boolean exists(R record) {
+            final Object value = valueOf(record);
+            if (wholePart) {
+                return value != null;
+            }
+            final Accessor.Getter<Object> getter = getterOf(value);
+            return getter != null && getter.exists(value);
+        }
+
+        @Override
+        public int count(R record) {
+            final Object value = valueOf(record);
+            if (wholePart) {
+                return value == null ? 0 : 1;
+            }
+            final Accessor.Getter<Object> getter = getterOf(value);
+            return getter == null ? 0 : getter.count(value);
+        }
+
+        private Object valueOf(R record) {
+            switch (part) {
+                case KEY:
+                    return record.key();
+                case VALUE:
+                    return record.value();
+                default:
+                    final Header header = record.headers().lastWithName(headerName);
+                    return header == null ? null : header.value();
+            }
+        }
+
+        /**
+         * @return the Getter for the part, StructAccessor for a part with a Struct schema and MapAccessor for a schemaless one,
+         * or null if the part is null or cannot be navigated.
+         */
+        private Accessor.Getter<Object> getterOf(Object value) {
+            if (value == null) {
+                return null;
+            }
+            if (value instanceof Struct) {
+                return (Accessor.Getter) structGetter;
+            }
+            if (value instanceof Map) {
+                return (Accessor.Getter) mapGetter;
+            }
+            mismatch(onMismatch, root, "a Struct or a Map", value);
+            return null;
+        }
+    }
+}
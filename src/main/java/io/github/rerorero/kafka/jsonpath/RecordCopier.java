@@ -0,0 +1,237 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.Struct;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deep copies of Struct and schemaless Map records, which Updaters modify in place.
+ * <p>
+ * The copy of a Struct follows a plan compiled once per Schema, which tells the fields to share from the ones to copy,
+ * so that the types are not dispatched per field per record. The nested Structs and arrays are put into their parents
+ * only after they are complete, since Struct.put() validates the whole subtree of the value.
+ * <p>
+ * Both copies are built with an explicit stack rather than recursion, so deeply nested records cannot overflow the stack,
+ * and the collections are sized from the source.
+ */
+final class RecordCopier {
+    private static final SchemaCache<Plan> plans = new SchemaCache<>();
+
+    private RecordCopier() {
+    }
+
+    /**
+     * How to copy the values of a Schema. Plans of nested Schemas are compiled along with their parent.
+     */
+    private static final class Plan {
+        final Schema.Type type;
+        // name of the field for error messages
+        final String name;
+        // fields of a STRUCT and the plans of their values, which is null for the values to share
+        final Field[] fields;
+        final Plan[] fieldPlans;
+        // plan of the elements of an ARRAY, which is null for the elements to share
+        final Plan element;
+
+        private Plan(Schema.Type type, String name, Field[] fields, Plan[] fieldPlans, Plan element) {
+            this.type = type;
+            this.name = name;
+            this.fields = fields;
+            this.fieldPlans = fieldPlans;
+            this.element = element;
+        }
+
+        /**
+         * @return the plan of the values of the schema, or null if the values are immutable and shared by the copy
+         */
+        static Plan compile(Schema schema, String name) {
+            switch (schema.type()) {
+                case INT8:
+                case INT16:
+                case INT32:
+                case INT64:
+                case FLOAT32:
+                case FLOAT64:
+                case BOOLEAN:
+                case STRING:
+                case BYTES:
+                    return null;
+                case STRUCT:
+                    final Field[] fields = schema.fields().toArray(new Field[0]);
+                    final Plan[] fieldPlans = new Plan[fields.length];
+                    for (int i = 0; i < fields.length; i++) {
+                        fieldPlans[i] = compile(fields[i].schema(), fields[i].name());
+                    }
+                    return new Plan(Schema.Type.STRUCT, name, fields, fieldPlans, null);
+                case ARRAY:
+                    return new Plan(Schema.Type.ARRAY, name, null, null, compile(schema.valueSchema(), name));
+                default:
+                    // thrown only when a value is found, the same as Struct itself accepts a null value
+                    return new Plan(schema.type(), name, null, null, null);
+            }
+        }
+
+        /**
+         * @return a new empty container into which the value is copied
+         */
+        Object newContainer(Object value) {
+            switch (type) {
+                case STRUCT:
+                    return new Struct(((Struct) value).schema());
+                case ARRAY:
+                    return new ArrayList<>(((List<?>) value).size());
+                default:
+                    throw new JsonPathException(type + " is not supported for field " + name);
+            }
+        }
+    }
+
+    /**
+     * A source container whose values are to be copied into the target container.
+     */
+    private static final class Task {
+        final Object source;
+        final Object target;
+        final Plan plan;
+        // name of the field for error messages of schemaless records
+        final String name;
+
+        Task(Object source, Object target, Plan plan, String name) {
+            this.source = source;
+            this.target = target;
+            this.plan = plan;
+            this.name = name;
+        }
+    }
+
+    /**
+     * A field of a Struct copy to put after the nested copy of its value is complete.
+     */
+    private static final class DeferredPut {
+        final Struct target;
+        final Field field;
+        final Object value;
+
+        DeferredPut(Struct target, Field field, Object value) {
+            this.target = target;
+            this.field = field;
+            this.value = value;
+        }
+    }
+
+    static Struct copyStruct(Struct org) {
+        final Plan rootPlan = plans.computeIfAbsent(org.schema(), schema -> Plan.compile(schema, null));
+        final Struct root = new Struct(org.schema());
+        final Deque<Task> tasks = new ArrayDeque<>();
+        final List<DeferredPut> deferred = new ArrayList<>();
+        tasks.push(new Task(org, root, rootPlan, null));
+        while (!tasks.isEmpty()) {
+            final Task task = tasks.pop();
+            final Plan plan = task.plan;
+            if (plan.type == Schema.Type.ARRAY) {
+                final List<Object> target = (List<Object>) task.target;
+                for (Object element : (List<Object>) task.source) {
+                    if (element == null || plan.element == null) {
+                        target.add(element);
+                        continue;
+                    }
+                    final Object copy = plan.element.newContainer(element);
+                    tasks.push(new Task(element, copy, plan.element, null));
+                    target.add(copy);
+                }
+                continue;
+            }
+
+            final Struct source = (Struct) task.source;
+            final Struct target = (Struct) task.target;
+            for (int i = 0; i < plan.fields.length; i++) {
+                final Field field = plan.fields[i];
+                final Object value = source.get(field);
+                if (value == null) {
+                    continue;
+                }
+                final Plan fieldPlan = plan.fieldPlans[i];
+                if (fieldPlan == null) {
+                    target.put(field, value);
+                    continue;
+                }
+                final Object copy = fieldPlan.newContainer(value);
+                tasks.push(new Task(value, copy, fieldPlan, null));
+                deferred.add(new DeferredPut(target, field, copy));
+            }
+        }
+        // a nested copy is deferred after its parent, so the reverse order puts complete copies
+        for (int i = deferred.size() - 1; i >= 0; i--) {
+            final DeferredPut put = deferred.get(i);
+            put.target.put(put.field, put.value);
+        }
+        return root;
+    }
+
+    static Map<String, Object> copyMap(Map<String, Object> org) {
+        final Map<String, Object> root = newMap(org.size());
+        final Deque<Task> tasks = new ArrayDeque<>();
+        tasks.push(new Task(org, root, null, null));
+        while (!tasks.isEmpty()) {
+            final Task task = tasks.pop();
+            if (task.source instanceof List) {
+                final List<Object> target = (List<Object>) task.target;
+                for (Object element : (List<Object>) task.source) {
+                    if (element == null || isSchemalessLeaf(element)) {
+                        target.add(element);
+                    } else if (element instanceof Map) {
+                        final Map<String, Object> copy = newMap(((Map<?, ?>) element).size());
+                        tasks.push(new Task(element, copy, null, task.name));
+                        target.add(copy);
+                    } else {
+                        throw new JsonPathException(element.getClass() + " is not supported for the element of array field " + task.name);
+                    }
+                }
+                continue;
+            }
+
+            final Map<String, Object> target = (Map<String, Object>) task.target;
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) task.source).entrySet()) {
+                final String key = entry.getKey();
+                final Object value = entry.getValue();
+                if (value == null) {
+                    continue;
+                }
+                if (isSchemalessLeaf(value)) {
+                    target.put(key, value);
+                } else if (value instanceof Map) {
+                    final Map<String, Object> copy = newMap(((Map<?, ?>) value).size());
+                    tasks.push(new Task(value, copy, null, key));
+                    target.put(key, copy);
+                } else if (value instanceof List) {
+                    final List<Object> copy = new ArrayList<>(((List<?>) value).size());
+                    tasks.push(new Task(value, copy, null, key));
+                    target.put(key, copy);
+                } else {
+                    throw new JsonPathException(value.getClass() + " is not supported for schemaless record field " + key);
+                }
+            }
+        }
+        return root;
+    }
+
+    /**
+     * @return true if the value is an immutable value of a schemaless record, which is shared by the copy
+     */
+    private static boolean isSchemalessLeaf(Object value) {
+        return value instanceof String || value instanceof Long || value instanceof Integer || value instanceof Double
+                || value instanceof Float || value instanceof Boolean || value instanceof byte[] || value instanceof ByteBuffer;
+    }
+
+    private static Map<String, Object> newMap(int size) {
+        return new HashMap<>((int) (size / 0.75f) + 1);
+    }
+}
@@ -0,0 +1,188 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A reusable container of the values retrieved by Getter, which can be kept by a task thread for its whole lifetime.
+ * The values are held in an array in the order of traversal, along with the array indices of each match
+ * from which the path is built only when it is requested.
+ * This class is not thread-safe.
+ */
+public final class ResultBuffer {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private PathSegment[] segments = new PathSegment[0];
+    // positions of the array subscripts in the segments
+    private int[] arraySubscripts = new int[0];
+    // array indices being visited during the traversal, indexed by the depth of the segments
+    private int[] cursor = new int[0];
+    private Object[] values;
+    private final AccessorBase.MatchCollector collector = this::add;
+    // indices of the array subscripts of each match, arraySubscripts.length elements per match
+    private int[] indices;
+    private int size;
+
+    public ResultBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity number of values the buffer can hold without growing
+     */
+    public ResultBuffer(int initialCapacity) {
+        this.values = new Object[Math.max(initialCapacity, 1)];
+        this.indices = new int[0];
+    }
+
+    /**
+     * @return the number of retrieved values
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param position position of the value, from 0 to size() - 1
+     * @return the retrieved value at the position
+     */
+    public Object value(int position) {
+        checkPosition(position);
+        return values[position];
+    }
+
+    /**
+     * Build the path of the value at the position, such as `$.users[1].name`.
+     *
+     * @param position position of the value, from 0 to size() - 1
+     * @return the path of the value, in the same format as the keys returned by Getter.run()
+     */
+    public String path(int position) {
+        checkPosition(position);
+        final StringBuilder sb = new StringBuilder("$");
+        int sub = position * arraySubscripts.length;
+        for (PathSegment segment : segments) {
+            if (segment.isField()) {
+                sb.append('.').append(segment.key());
+            } else {
+                sb.append('[').append(indices[sub++]).append(']');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param path path in the same format as the keys returned by Getter.run()
+     * @return the position of the value with the path, or -1 if there is no such value
+     */
+    public int indexOf(String path) {
+        final int[] wanted = new int[segments.length];
+        if (!AccessorBase.matchPath(segments, path, wanted)) {
+            return -1;
+        }
+        final int width = arraySubscripts.length;
+        for (int i = 0; i < size; i++) {
+            int j = 0;
+            while (j < width && indices[i * width + j] == wanted[arraySubscripts[j]]) {
+                j++;
+            }
+            if (j == width) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param path path in the same format as the keys returned by Getter.run()
+     * @return the value with the path, or null if there is no such value
+     */
+    public Object get(String path) {
+        final int position = indexOf(path);
+        return position < 0 ? null : values[position];
+    }
+
+    /**
+     * @return a new Map of the paths and values, which is the same as the result of Getter.run()
+     */
+    public Map<String, Object> toMap() {
+        final Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put(path(i), values[i]);
+        }
+        return map;
+    }
+
+    /**
+     * Remove all the values. References to the values are released.
+     */
+    public void clear() {
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Clear the buffer and prepare it for the results of the path.
+     */
+    void begin(PathSegment[] segments) {
+        clear();
+        if (this.segments != segments) {
+            this.segments = segments;
+            int count = 0;
+            for (PathSegment segment : segments) {
+                if (!segment.isField()) {
+                    count++;
+                }
+            }
+            this.arraySubscripts = new int[count];
+            count = 0;
+            for (int i = 0; i < segments.length; i++) {
+                if (!segments[i].isField()) {
+                    arraySubscripts[count++] = i;
+                }
+            }
+            if (cursor.length < segments.length) {
+                cursor = new int[segments.length];
+            }
+        }
+    }
+
+    /**
+     * @return a scratch array to hold the array indices being visited, reused across the traversals.
+     */
+    int[] cursor() {
+        return cursor;
+    }
+
+    AccessorBase.MatchCollector collector() {
+        return collector;
+    }
+
+    /**
+     * @param indices array indices visited, indexed by the depth of the segments
+     */
+    void add(Object value, int[] indices) {
+        final int width = arraySubscripts.length;
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        if ((size + 1) * width > this.indices.length) {
+            this.indices = Arrays.copyOf(this.indices, Math.max(values.length * width, (size + 1) * width));
+        }
+        for (int j = 0; j < width; j++) {
+            this.indices[size * width + j] = indices[arraySubscripts[j]];
+        }
+        values[size++] = value;
+    }
+
+    private void checkPosition(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Position " + position + " is out of the results of size " + size);
+        }
+    }
+}
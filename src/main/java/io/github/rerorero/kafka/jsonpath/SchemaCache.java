@@ -0,0 +1,72 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import org.apache.kafka.connect.data.Schema;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A thread-safe, bounded cache of values derived from a Schema, keyed by the identity of the Schema.
+ * Records of a topic usually share the same Schema instance, so the last entry is checked first without locking.
+ */
+final class SchemaCache<V> {
+    static final int DEFAULT_CAPACITY = 16;
+
+    private static final class Entry<V> {
+        final Schema schema;
+        final V value;
+
+        Entry(Schema schema, V value) {
+            this.schema = schema;
+            this.value = value;
+        }
+    }
+
+    private static final class IdentityKey {
+        final Schema schema;
+
+        IdentityKey(Schema schema) {
+            this.schema = schema;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IdentityKey && ((IdentityKey) o).schema == schema;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(schema);
+        }
+    }
+
+    private final Map<IdentityKey, V> entries;
+    private volatile Entry<V> last;
+
+    SchemaCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    SchemaCache(int capacity) {
+        this.entries = new LinkedHashMap<IdentityKey, V>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<IdentityKey, V> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    V computeIfAbsent(Schema schema, Function<Schema, V> derive) {
+        final Entry<V> cached = last;
+        if (cached != null && cached.schema == schema) {
+            return cached.value;
+        }
+        final V value;
+        synchronized (entries) {
+            value = entries.computeIfAbsent(new IdentityKey(schema), key -> derive.apply(key.schema));
+        }
+        last = new Entry<>(schema, value);
+        return value;
+    }
+}
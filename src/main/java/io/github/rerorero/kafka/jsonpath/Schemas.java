@@ -0,0 +1,248 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import org.apache.kafka.connect.data.Date;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Time;
+import org.apache.kafka.connect.data.Timestamp;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Helpers to derive a new Schema from an existing one.
+ */
+final class Schemas {
+    private Schemas() {
+    }
+
+    /**
+     * Copy the name, version, doc, parameters and optionality of the source schema into the builder.
+     * The default value is not copied since it may not be valid for the derived schema.
+     */
+    static SchemaBuilder copyBasics(Schema source, SchemaBuilder builder) {
+        builder.name(source.name());
+        builder.version(source.version());
+        builder.doc(source.doc());
+        if (source.parameters() != null) {
+            builder.parameters(source.parameters());
+        }
+        if (source.isOptional()) {
+            builder.optional();
+        }
+        return builder;
+    }
+
+    /**
+     * Derive the schema which contains only the fields on the paths of the trie.
+     * Subtrees which cannot be narrowed (terminal nodes, maps and primitives) keep the original schema.
+     */
+    static Schema project(Schema schema, PathTrie node) {
+        if (node.isTerminal()) {
+            return schema;
+        }
+        switch (schema.type()) {
+            case STRUCT: {
+                if (!node.hasFields()) {
+                    return schema;
+                }
+                final SchemaBuilder builder = copyBasics(schema, SchemaBuilder.struct());
+                for (Field field : schema.fields()) {
+                    final PathTrie child = node.field(field.name());
+                    if (child != null) {
+                        builder.field(field.name(), project(field.schema(), child));
+                    }
+                }
+                return builder.build();
+            }
+            case ARRAY: {
+                if (node.wildcard() == null) {
+                    return schema;
+                }
+                final Schema valueSchema = project(schema.valueSchema(), node.wildcard());
+                if (valueSchema == schema.valueSchema()) {
+                    return schema;
+                }
+                return copyBasics(schema, SchemaBuilder.array(valueSchema)).build();
+            }
+            default:
+                return schema;
+        }
+    }
+
+    /**
+     * Derive the schema in which the schema at the end of the path is replaced.
+     * Schemas which are not on the path are shared with the original one.
+     *
+     * @param end     index of the segment at which the path ends
+     * @param replace function which returns a new schema from the schema at the end of the path
+     * @return the derived schema, or the passed schema itself if nothing is changed
+     */
+    static Schema replace(Schema schema, PathSegment[] segments, int end, int depth, UnaryOperator<Schema> replace) {
+        if (depth == end) {
+            return replace.apply(schema);
+        }
+        final PathSegment segment = segments[depth];
+        if (segment.isField()) {
+            final Field target = schema.type() == Schema.Type.STRUCT ? schema.field(segment.key()) : null;
+            if (target == null) {
+                return schema;
+            }
+            final Schema fieldSchema = replace(target.schema(), segments, end, depth + 1, replace);
+            if (fieldSchema == target.schema()) {
+                return schema;
+            }
+            final SchemaBuilder builder = copyBasics(schema, SchemaBuilder.struct());
+            for (Field field : schema.fields()) {
+                builder.field(field.name(), field == target ? fieldSchema : field.schema());
+            }
+            return builder.build();
+        }
+
+        if (schema.type() != Schema.Type.ARRAY) {
+            return schema;
+        }
+        return withValueSchema(schema, segment, replace(schema.valueSchema(), segments, end, depth + 1, replace));
+    }
+
+    private static Schema withValueSchema(Schema schema, PathSegment segment, Schema valueSchema) {
+        if (valueSchema == schema.valueSchema()) {
+            return schema;
+        }
+        if (!segment.isWildcard()) {
+            throw new JsonPathException("The schema of a single array element [" + segment.index() + "] cannot be changed, use a wildcard instead");
+        }
+        return copyBasics(schema, SchemaBuilder.array(valueSchema)).build();
+    }
+
+    /**
+     * @return the struct schema without the field, or the passed schema itself if it has no such field
+     */
+    static Schema withoutField(Schema schema, String name) {
+        if (schema.type() != Schema.Type.STRUCT || schema.field(name) == null) {
+            return schema;
+        }
+        final SchemaBuilder builder = copyBasics(schema, SchemaBuilder.struct());
+        for (Field field : schema.fields()) {
+            if (!field.name().equals(name)) {
+                builder.field(field.name(), field.schema());
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Derive the schema in which the schema at the end of the path is replaced with the value schema,
+     * adding the missing fields on the path. Missing intermediate fields are added as optional Structs.
+     *
+     * @param schema schema on the path, or null if the field is missing
+     * @return the derived schema, or the passed schema itself if nothing is changed
+     */
+    static Schema upsert(Schema schema, PathSegment[] segments, int depth, Schema valueSchema) {
+        if (depth == segments.length) {
+            return valueSchema.equals(schema) ? schema : valueSchema;
+        }
+        final PathSegment segment = segments[depth];
+        if (schema == null) {
+            if (!segment.isField()) {
+                throw new JsonPathException("Arrays are not created by upsert: " + segment.index());
+            }
+            return SchemaBuilder.struct().optional().field(segment.key(), upsert(null, segments, depth + 1, valueSchema)).build();
+        }
+        if (segment.isField()) {
+            if (schema.type() != Schema.Type.STRUCT) {
+                return schema;
+            }
+            final Field target = schema.field(segment.key());
+            final Schema fieldSchema = upsert(target == null ? null : target.schema(), segments, depth + 1, valueSchema);
+            if (target != null && fieldSchema == target.schema()) {
+                return schema;
+            }
+            final SchemaBuilder builder = copyBasics(schema, SchemaBuilder.struct());
+            for (Field field : schema.fields()) {
+                builder.field(field.name(), field == target ? fieldSchema : field.schema());
+            }
+            if (target == null) {
+                builder.field(segment.key(), fieldSchema);
+            }
+            return builder.build();
+        }
+        if (schema.type() != Schema.Type.ARRAY) {
+            return schema;
+        }
+        return withValueSchema(schema, segment, upsert(schema.valueSchema(), segments, depth + 1, valueSchema));
+    }
+
+    /**
+     * @return the schema of the field at the end of the path consisting of object subscripts, or null if it is missing
+     */
+    static Schema fieldSchema(Schema schema, PathSegment[] segments) {
+        for (PathSegment segment : segments) {
+            final Field field = schema.type() == Schema.Type.STRUCT ? schema.field(segment.key()) : null;
+            if (field == null) {
+                return null;
+            }
+            schema = field.schema();
+        }
+        return schema;
+    }
+
+    /**
+     * @return the schema of the values matched by the path, or null if it cannot be determined from the schema,
+     * e.g. the path goes through a map or a missing field
+     */
+    static Schema leafSchema(Schema schema, PathSegment[] segments) {
+        for (PathSegment segment : segments) {
+            if (segment.isField()) {
+                final Field field = schema.type() == Schema.Type.STRUCT ? schema.field(segment.key()) : null;
+                if (field == null) {
+                    return null;
+                }
+                schema = field.schema();
+            } else {
+                if (schema.type() != Schema.Type.ARRAY) {
+                    return null;
+                }
+                schema = schema.valueSchema();
+            }
+        }
+        return schema;
+    }
+
+    /**
+     * @return true if the schema is one of the logical types Date, Time and Timestamp,
+     * whose values are java.util.Date even though the types are integers
+     */
+    static boolean isTimeLogical(Schema schema) {
+        final String name = schema.name();
+        return Date.LOGICAL_NAME.equals(name) || Time.LOGICAL_NAME.equals(name) || Timestamp.LOGICAL_NAME.equals(name);
+    }
+
+    /**
+     * Convert a number to the Java type of the primitive schema, e.g. a Long from a LongColumn to an Integer for INT32.
+     *
+     * @return the converted value, or the passed value itself if it is not a number or the schema is not a numeric type
+     */
+    static Object narrow(Schema schema, Object value) {
+        if (schema == null || value instanceof Number == false || isTimeLogical(schema)) {
+            return value;
+        }
+        final Number number = (Number) value;
+        switch (schema.type()) {
+            case INT8:
+                return number.byteValue();
+            case INT16:
+                return number.shortValue();
+            case INT32:
+                return number.intValue();
+            case INT64:
+                return number.longValue();
+            case FLOAT32:
+                return number.floatValue();
+            case FLOAT64:
+                return number.doubleValue();
+            default:
+                return value;
+        }
+    }
+}
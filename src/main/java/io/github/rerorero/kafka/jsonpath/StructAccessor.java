@@ -2,285 +2,1000 @@ package io.github.rerorero.kafka.jsonpath;
 
 import org.apache.kafka.connect.data.Field;
 import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
 import org.apache.kafka.connect.data.Struct;
 import org.apache.kafka.connect.errors.DataException;
 
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 
 public class StructAccessor extends AccessorBase {
 
-    private static final ParserListener.TaskGen<GetTaskState> getTaskGen = new GetTaskGen();
-    private static final ParserListener.TaskGen<UpdateTaskState> updateTaskGen = new UpdateTaskGen();
+    static final ObjectModel objectModel = new ObjectModel() {
+        @Override
+        public String description() {
+            return "a Struct";
+        }
+
+        @Override
+        public boolean isObject(Object node) {
+            return node instanceof Struct;
+        }
+
+        @Override
+        public Object child(Object node, String key) {
+            // A missing field is skipped without error, the same as Getter.
+            final Struct struct = (Struct) node;
+            return struct.schema().field(key) == null ? null : struct.get(key);
+        }
+
+        @Override
+        public void put(Object node, String key, Object value) {
+            ((Struct) node).put(key, value);
+        }
+
+        @Override
+        public boolean has(Object node, String key) {
+            return ((Struct) node).schema().field(key) != null;
+        }
+    };
 
     public static class Getter implements Accessor.Getter<Struct> {
-        private final List<ParserListener.Task<GetTaskState>> tasks;
+        private static final Set<Schema.Type> INTEGER_TYPES = EnumSet.of(Schema.Type.INT8, Schema.Type.INT16, Schema.Type.INT32, Schema.Type.INT64);
+        private static final Set<Schema.Type> NUMBER_TYPES = EnumSet.of(Schema.Type.INT8, Schema.Type.INT16, Schema.Type.INT32, Schema.Type.INT64,
+                Schema.Type.FLOAT32, Schema.Type.FLOAT64);
+        private static final Set<Schema.Type> BOOLEAN_TYPES = EnumSet.of(Schema.Type.BOOLEAN);
+
+        private final PathSegment[] segments;
+        private final Accessor.MismatchHandler onMismatch;
+        // schemas of the matched values, which are null if they cannot be determined
+        private final SchemaCache<Optional<Schema>> leafSchemas = new SchemaCache<>();
 
         /**
-         * Parse the given JsonPath and build a new Getter instance which is a
-         * task runner to retrieve values from the passed Map according to the json path.
+         * Parse the given JsonPath and build a new Getter instance which
+         * retrieves values from the passed Struct according to the json path.
          *
          * @param jsonPath JsonPath string
          */
         public Getter(String jsonPath) {
-            this.tasks = parse(jsonPath, getTaskGen);
+            this(jsonPath, null);
+        }
+
+        /**
+         * Parse the given JsonPath and build a new Getter instance in lenient mode,
+         * which treats a type mismatch or a null node as a non-match instead of throwing JsonPathException.
+         *
+         * @param jsonPath   JsonPath string
+         * @param onMismatch handler to which mismatches are reported, or null to throw JsonPathException
+         */
+        public Getter(String jsonPath, Accessor.MismatchHandler onMismatch) {
+            this.segments = compile(jsonPath);
+            this.onMismatch = onMismatch;
         }
 
         /**
-         * Run the tasks generated from JsonPath and get the value from the given Struct.
+         * Evaluate the JsonPath and get the value from the given Struct.
          *
          * @param s Struct from which to get the values
          * @return Map of field paths and values for retrieved values
          */
         public Map<String, Object> run(Struct s) {
-            final GetTaskState state = new GetTaskState(s);
-            runTasks(state, tasks);
-            return state.pathMap;
+            return collectMatches(segments, s, objectModel, onMismatch);
+        }
+
+        /**
+         * Get the values from the given Struct into the reusable buffer, without building the result Map.
+         * The buffer is cleared before it is filled.
+         *
+         * @param s      Struct from which to get the values
+         * @param buffer buffer to fill
+         * @return the passed buffer
+         */
+        public ResultBuffer run(Struct s, ResultBuffer buffer) {
+            collectMatches(segments, s, objectModel, onMismatch, buffer);
+            return buffer;
+        }
+
+        /**
+         * Test whether the JsonPath matches any value in the given Struct, without building the result.
+         * The evaluation stops at the first match.
+         */
+        @Override
+        public boolean exists(Struct s) {
+            return countMatches(segments, s, objectModel, onMismatch, true) > 0;
+        }
+
+        /**
+         * Count the values matched by the JsonPath in the given Struct, without building the result.
+         * The matches at a trailing array subscript are counted without visiting the elements.
+         */
+        @Override
+        public int count(Struct s) {
+            return countMatches(segments, s, objectModel, onMismatch, false);
+        }
+
+        /**
+         * Evaluate the JsonPath lazily, depth-first, and iterate over the matched values in the order of traversal.
+         * The given Struct is traversed only as far as the iterator is advanced, so a mismatch is thrown by hasNext() or next().
+         */
+        public Iterator<Match> iterator(Struct s) {
+            return new MatchIterator(segments, s, objectModel, onMismatch);
+        }
+
+        /**
+         * Evaluate the JsonPath lazily, depth-first, and stream the matched values in the order of traversal.
+         * Short-circuiting operations such as findFirst(), limit() and anyMatch() stop the traversal early.
+         */
+        public Stream<Match> stream(Struct s) {
+            return streamMatches(segments, s, objectModel, onMismatch);
+        }
+
+        /**
+         * Append the integer values matched by the JsonPath to the column, without boxing them into a Map.
+         * The schema of the matched fields has to be INT8, INT16, INT32 or INT64, which is checked once per schema.
+         * Null array elements are appended as null.
+         *
+         * @param s      Struct from which to get the values
+         * @param column column to which the values are appended
+         * @return the passed column
+         */
+        public LongColumn getLongs(Struct s, LongColumn column) {
+            if (checkLeafSchema(s, INTEGER_TYPES, "an integer")) {
+                collectLongs(segments, s, objectModel, onMismatch, column);
+            }
+            return column;
+        }
+
+        /**
+         * @return a new array of the integer values matched by the JsonPath, in which null values are 0
+         */
+        public long[] getLongs(Struct s) {
+            return getLongs(s, new LongColumn()).toArray();
+        }
+
+        /**
+         * Append the numeric values matched by the JsonPath to the column, without boxing them into a Map.
+         * The schema of the matched fields has to be FLOAT32, FLOAT64 or an integer type, which is checked once per schema.
+         * Null array elements are appended as null.
+         *
+         * @param s      Struct from which to get the values
+         * @param column column to which the values are appended
+         * @return the passed column
+         */
+        public DoubleColumn getDoubles(Struct s, DoubleColumn column) {
+            if (checkLeafSchema(s, NUMBER_TYPES, "a number")) {
+                collectDoubles(segments, s, objectModel, onMismatch, column);
+            }
+            return column;
+        }
+
+        /**
+         * @return a new array of the numeric values matched by the JsonPath, in which null values are 0.0
+         */
+        public double[] getDoubles(Struct s) {
+            return getDoubles(s, new DoubleColumn()).toArray();
+        }
+
+        /**
+         * Append the boolean values matched by the JsonPath to the column, without boxing them into a Map.
+         * The schema of the matched fields has to be BOOLEAN, which is checked once per schema.
+         * Null array elements are appended as null.
+         *
+         * @param s      Struct from which to get the values
+         * @param column column to which the values are appended
+         * @return the passed column
+         */
+        public BooleanColumn getBooleans(Struct s, BooleanColumn column) {
+            if (checkLeafSchema(s, BOOLEAN_TYPES, "a boolean")) {
+                collectBooleans(segments, s, objectModel, onMismatch, column);
+            }
+            return column;
+        }
+
+        /**
+         * @return a new array of the boolean values matched by the JsonPath, in which null values are false
+         */
+        public boolean[] getBooleans(Struct s) {
+            return getBooleans(s, new BooleanColumn()).toArray();
+        }
+
+        /**
+         * Check the schema of the matched values against the expected types, if it can be determined from the schema.
+         *
+         * @return false if the schema does not match in lenient mode
+         */
+        private boolean checkLeafSchema(Struct s, Set<Schema.Type> types, String expected) {
+            if (s == null) {
+                return true;
+            }
+            final Schema leaf = leafSchemas.computeIfAbsent(s.schema(), schema -> Optional.ofNullable(Schemas.leafSchema(schema, segments))).orElse(null);
+            if (leaf == null || (types.contains(leaf.type()) && !Schemas.isTimeLogical(leaf))) {
+                return true;
+            }
+            final Supplier<String> message = () -> "field '" + pathOf(segments) + "' is not " + expected + " but "
+                    + (leaf.name() != null ? leaf.name() : leaf.type()) + " in the schema";
+            if (onMismatch == null) {
+                throw new JsonPathException(message.get());
+            }
+            onMismatch.onMismatch(message);
+            return false;
         }
     }
 
     public static class Updater implements Accessor.Updater<Struct> {
-        private final List<ParserListener.Task<UpdateTaskState>> tasks;
+        private final PathSegment[] segments;
+        private final Accessor.MismatchHandler onMismatch;
 
         /**
-         * Parse the given JsonPath and build a new Updater instance which is a
-         * task runner to update the given Map according to the json path.
+         * Parse the given JsonPath and build a new Updater instance which
+         * updates the given Map according to the json path.
          *
          * @param jsonPath JsonPath string
          */
         public Updater(String jsonPath) {
-            this.tasks = parse(jsonPath, updateTaskGen);
+            this(jsonPath, null);
         }
 
         /**
-         * Run the tasks generated from JsonPath and create a new Struct with updated value.
+         * Parse the given JsonPath and build a new Updater instance in lenient mode,
+         * which treats a type mismatch or a null node as a non-match instead of throwing JsonPathException.
+         *
+         * @param jsonPath   JsonPath string
+         * @param onMismatch handler to which mismatches are reported, or null to throw JsonPathException
+         */
+        public Updater(String jsonPath, Accessor.MismatchHandler onMismatch) {
+            this.segments = compile(jsonPath);
+            this.onMismatch = onMismatch;
+        }
+
+        /**
+         * Evaluate the JsonPath and create a new Struct with updated value.
          *
          * @param org           Original Struct value
          * @param valueToUpdate Map of field paths and updated values
          * @return a new Struct instance with the passed valueToUpdate applied.
          */
         public Struct run(Struct org, Map<String, Object> valueToUpdate) {
-            final Struct updated = copyStruct(org);
+            final Struct updated = RecordCopier.copyStruct(org);
             if (valueToUpdate.isEmpty()) {
                 return updated;
             }
-            final UpdateTaskState state = new SelectableUpdateTaskState(updated, valueToUpdate);
-            runTasks(state, tasks);
+            updateSelected(segments, updated, objectModel, onMismatch, compileUpdates(segments, valueToUpdate));
             return updated;
         }
 
         /**
-         * Run the tasks generated from JsonPath and create a new Struct with updated value.
+         * Evaluate the JsonPath and create a new Struct with updated value.
          *
          * @param org           Original Struct value
          * @param valueToUpdate value to update
          * @return a new Struct instance with the passed valueToUpdate applied.
          */
         public Struct run(Struct org, Object valueToUpdate) {
-            final Struct updated = copyStruct(org);
-            final UpdateTaskState state = new SimpleUpdateTaskState(updated, valueToUpdate);
-            runTasks(state, tasks);
+            final Struct updated = RecordCopier.copyStruct(org);
+            updateMatches(segments, updated, objectModel, onMismatch, current -> valueToUpdate);
             return updated;
         }
+
+        /**
+         * Evaluate the JsonPath and create a new Struct in which each matched value is replaced with the result of
+         * the function, e.g. to hash or tokenize the values. Wrap the function with TransformCache to memoize it.
+         *
+         * @param org       Original Struct value
+         * @param transform function which returns the new value from the current one, or null to keep the current value
+         * @return a new Struct instance with the transformed values applied.
+         */
+        public Struct transform(Struct org, Function<Object, Object> transform) {
+            final Struct updated = RecordCopier.copyStruct(org);
+            updateMatches(segments, updated, objectModel, onMismatch, transform);
+            return updated;
+        }
+
+        /**
+         * Evaluate the JsonPath once and return the locations of the matched values in a new Struct, through which
+         * the values can be read and replaced without another traversal, e.g. to update values depending on themselves.
+         *
+         * @param org Original Struct value
+         * @return the locations in a new Struct instance, which is returned by Locations.record().
+         */
+        public Locations<Struct> locate(Struct org) {
+            final Struct updated = RecordCopier.copyStruct(org);
+            return new Locations<>(updated, locateMatches(segments, updated, objectModel, onMismatch));
+        }
     }
 
-    private static Struct copyStruct(Struct org) {
-        Struct newStruct = new Struct(org.schema());
-        for (Field field : org.schema().fields()) {
-            final Object obj = org.get(field);
-            if (obj == null) {
-                continue;
-            }
+    /**
+     * An Updater which changes the schema of the fields matched by the JsonPath, e.g. to replace an INT64 field with
+     * a STRING hash. The output schema is derived once per input schema and cached by the identity of the input schema,
+     * so records sharing a schema also share the derived one.
+     * <p>
+     * Unlike Updater, only the Structs and arrays on the path are rebuilt. Other fields of the output share their
+     * values with the original Struct.
+     */
+    public static class RetypingUpdater implements Accessor.Updater<Struct> {
+        private final PathSegment[] segments;
+        private final UnaryOperator<Schema> retype;
+        private final SchemaCache<Schema> schemas = new SchemaCache<>();
 
-            final Schema fieldSchema = field.schema();
-            switch (fieldSchema.type()) {
-                case INT8:
-                case INT16:
-                case INT32:
-                case INT64:
-                case FLOAT32:
-                case FLOAT64:
-                case BOOLEAN:
-                case STRING:
-                case BYTES:
-                    newStruct.put(field, obj);
-                    break;
-                case STRUCT:
-                    newStruct.put(field, copyStruct((Struct) obj));
-                    break;
-                case ARRAY:
-                    newStruct.put(field, copyArray((List<Object>) obj, field));
-                    break;
-                default:
-                    throw new JsonPathException(fieldSchema.type() + " is not supported for field " + field.name());
+        /**
+         * Parse the given JsonPath and build a new RetypingUpdater instance which replaces the schema of the
+         * matched fields with the given one.
+         *
+         * @param jsonPath    JsonPath string
+         * @param valueSchema schema of the updated values
+         */
+        public RetypingUpdater(String jsonPath, Schema valueSchema) {
+            this(jsonPath, s -> valueSchema);
+        }
+
+        /**
+         * Parse the given JsonPath and build a new RetypingUpdater instance which changes the type of the
+         * matched fields to the given primitive type. The optionality of each field is preserved.
+         *
+         * @param jsonPath JsonPath string
+         * @param type     primitive type of the updated values
+         */
+        public RetypingUpdater(String jsonPath, Schema.Type type) {
+            this(jsonPath, primitive(type));
+        }
+
+        private RetypingUpdater(String jsonPath, UnaryOperator<Schema> retype) {
+            this.segments = compile(jsonPath);
+            this.retype = retype;
+        }
+
+        private static UnaryOperator<Schema> primitive(Schema.Type type) {
+            if (!type.isPrimitive()) {
+                throw new JsonPathException(type + " is not a primitive type");
             }
+            final Schema required = SchemaBuilder.type(type).build();
+            final Schema optional = SchemaBuilder.type(type).optional().build();
+            return s -> {
+                if (s.type() == type && s.name() == null) {
+                    return s;
+                }
+                return s.isOptional() ? optional : required;
+            };
+        }
+
+        /**
+         * @param inputSchema schema of the original Structs
+         * @return schema of the Structs returned by this updater
+         */
+        public Schema outputSchema(Schema inputSchema) {
+            return schemas.computeIfAbsent(inputSchema, s -> Schemas.replace(s, segments, segments.length, 0, retype));
         }
-        return newStruct;
+
+        /**
+         * Run the updater and create a new Struct with updated values and the derived schema.
+         * Every non-null value matched by the path must be updated if its schema is changed.
+         *
+         * @param org           Original Struct value
+         * @param valueToUpdate Map of field paths and updated values
+         * @return a new Struct instance with the passed valueToUpdate applied.
+         */
+        public Struct run(Struct org, Map<String, Object> valueToUpdate) {
+            return (Struct) rewrite(segments, segments.length, false, org, org.schema(), outputSchema(org.schema()), new int[segments.length], 0,
+                    compileUpdates(segments, valueToUpdate),
+                    (cur, schema, newSchema, indices, node) -> replaceLeaf(cur, schema, newSchema, node == null ? null : node.value(), segments, indices));
+        }
+
+        /**
+         * Run the updater and create a new Struct with updated values and the derived schema.
+         *
+         * @param org           Original Struct value
+         * @param valueToUpdate value to update
+         * @return a new Struct instance with the passed valueToUpdate applied.
+         */
+        public Struct run(Struct org, Object valueToUpdate) {
+            return (Struct) rewrite(segments, segments.length, false, org, org.schema(), outputSchema(org.schema()), new int[segments.length], 0, null,
+                    (cur, schema, newSchema, indices, node) -> replaceLeaf(cur, schema, newSchema, valueToUpdate, segments, indices));
+        }
+
     }
 
-    private static class GetTaskState {
-        Map<String, Object> pathMap;
+    /**
+     * An Updater which also creates the fields missing on the path, e.g. `$.meta.routing.region` where `meta` has no
+     * `routing` field. The missing fields are added to the schema, the intermediate ones as optional Structs,
+     * and the extended schema is derived once per input schema and cached by the identity of the input schema.
+     * Arrays are never created. Only the Structs and arrays on the path are rebuilt.
+     */
+    public static class Upserter implements Accessor.Updater<Struct> {
+        private final PathSegment[] segments;
+        private final Schema valueSchema;
+        private final SchemaCache<Schema> schemas = new SchemaCache<>();
 
-        GetTaskState(Struct org) {
-            this.pathMap = Collections.singletonMap("$", org);
+        /**
+         * Parse the given JsonPath and build a new Upserter instance.
+         *
+         * @param jsonPath    JsonPath string
+         * @param valueSchema schema of the values to upsert
+         */
+        public Upserter(String jsonPath, Schema valueSchema) {
+            this.segments = compile(jsonPath);
+            this.valueSchema = valueSchema;
+        }
+
+        /**
+         * @param inputSchema schema of the original Structs
+         * @return schema of the Structs returned by this upserter
+         */
+        public Schema outputSchema(Schema inputSchema) {
+            return schemas.computeIfAbsent(inputSchema, s -> Schemas.upsert(s, segments, 0, valueSchema));
+        }
+
+        /**
+         * Run the upserter and create a new Struct with updated values and the derived schema.
+         *
+         * @param org           Original Struct value
+         * @param valueToUpdate Map of field paths and updated values
+         * @return a new Struct instance with the passed valueToUpdate applied.
+         */
+        public Struct run(Struct org, Map<String, Object> valueToUpdate) {
+            return (Struct) rewrite(segments, segments.length, true, org, org.schema(), outputSchema(org.schema()), new int[segments.length], 0,
+                    compileUpdates(segments, valueToUpdate),
+                    (cur, schema, newSchema, indices, node) -> replaceLeaf(cur, schema, newSchema, node == null ? null : node.value(), segments, indices));
+        }
+
+        /**
+         * Run the upserter and create a new Struct with updated values and the derived schema.
+         *
+         * @param org           Original Struct value
+         * @param valueToUpdate value to update
+         * @return a new Struct instance with the passed valueToUpdate applied.
+         */
+        public Struct run(Struct org, Object valueToUpdate) {
+            return (Struct) rewrite(segments, segments.length, true, org, org.schema(), outputSchema(org.schema()), new int[segments.length], 0, null,
+                    (cur, schema, newSchema, indices, node) -> replaceLeaf(cur, schema, newSchema, valueToUpdate, segments, indices));
         }
     }
 
-    private static List<Object> copyArray(List<Object> org, Field field) {
-        Schema valueSchema = field.schema().valueSchema();
-        return org.stream().map(o -> {
-            switch (valueSchema.type()) {
-                case INT8:
-                case INT16:
-                case INT32:
-                case INT64:
-                case FLOAT32:
-                case FLOAT64:
-                case BOOLEAN:
-                case STRING:
-                case BYTES:
-                    return o;
-                case STRUCT:
-                    return copyStruct((Struct) o);
-                default:
-                    throw new JsonPathException(valueSchema.type() + " is not supported for field " + field.name());
+    /**
+     * A Remover which removes every field or array element matched by the JsonPath.
+     * The pruned schema is derived once per input schema and cached by the identity of the input schema.
+     * Only the Structs and arrays on the path are rebuilt, and the removed values are never copied.
+     * A field inside a single array element (e.g. `$.items[0].blob`) cannot be removed since all elements share a schema.
+     */
+    public static class Remover implements Accessor.Remover<Struct> {
+        private final PathSegment[] segments;
+        private final PathSegment last;
+        private final SchemaCache<Schema> schemas = new SchemaCache<>();
 
+        /**
+         * Parse the given JsonPath and build a new Remover instance.
+         *
+         * @param jsonPath JsonPath string
+         */
+        public Remover(String jsonPath) {
+            this.segments = compile(jsonPath);
+            if (segments.length == 0) {
+                throw new JsonPathException("The root cannot be removed: " + jsonPath);
             }
-        }).collect(Collectors.toList());
-    }
+            this.last = segments[segments.length - 1];
+        }
 
-    private static class ObjectSubUpdateParam {
-        final String path;
-        final String key;
-        final Struct parent;
+        /**
+         * @param inputSchema schema of the original Structs
+         * @return schema of the Structs returned by this remover
+         */
+        public Schema outputSchema(Schema inputSchema) {
+            return schemas.computeIfAbsent(inputSchema, s -> Schemas.replace(s, segments, segments.length - 1, 0,
+                    parent -> last.isField() ? Schemas.withoutField(parent, last.key()) : parent));
+        }
 
-        ObjectSubUpdateParam(String path, String key, Struct parent) {
-            this.path = path;
-            this.key = key;
-            this.parent = parent;
+        /**
+         * Create a new Struct from which the values matched by the JsonPath are removed.
+         *
+         * @param org Original Struct value
+         * @return a new Struct instance without the matched values, or the original one if nothing is matched.
+         */
+        public Struct run(Struct org) {
+            return (Struct) rewrite(segments, segments.length - 1, false, org, org.schema(), outputSchema(org.schema()), new int[segments.length], 0, null, this::removeFrom);
+        }
+
+        private Object removeFrom(Object parent, Schema schema, Schema newSchema, int[] indices, PathTrie node) {
+            if (parent == null) {
+                return null;
+            }
+            if (last.isField()) {
+                if (parent instanceof Struct == false) {
+                    throw mismatchError(pathOf(segments, indices, segments.length), "a Struct", parent);
+                }
+                return schema == newSchema ? parent : copyFields((Struct) parent, newSchema, null, null, segments, indices, segments.length - 1);
+            }
+            if (parent instanceof List == false) {
+                throw mismatchError(pathOf(segments, indices, segments.length - 1), "an array", parent);
+            }
+            return removeElements((List<Object>) parent, last);
         }
     }
 
-    private static Map<String, Object> mapObjectSubscript(Map<String, Object> pathMap, String keyName, Function<ObjectSubUpdateParam, Object> onSubscript) {
-        final Map<String, Object> updated = new HashMap<>();
+    /**
+     * A Mover which moves the field at the source path to the target path, e.g. `$.after.cust_id` to
+     * `$.after.customer.id`. Both paths must consist only of object subscripts. The moved field keeps its schema,
+     * missing intermediate fields on the target path are added as optional Structs, and an existing target field is
+     * overwritten. The output schema is derived once per input schema and cached by the identity of the input schema.
+     * Only the Structs on the two paths are rebuilt.
+     */
+    public static class Mover implements Accessor.Mover<Struct> {
+        private final PathSegment[] from;
+        private final PathSegment[] to;
+        private final String lastKey;
+        // the schema without the source field, and the output schema
+        private final SchemaCache<Schema[]> schemas = new SchemaCache<>();
+
+        /**
+         * Parse the given JsonPaths and build a new Mover instance.
+         *
+         * @param fromJsonPath JsonPath of the field to move
+         * @param toJsonPath   JsonPath to which the field is moved
+         */
+        public Mover(String fromJsonPath, String toJsonPath) {
+            this.from = compileDefinite(fromJsonPath);
+            this.to = compileDefinite(toJsonPath);
+            if (startsWith(from, to) || startsWith(to, from)) {
+                throw new JsonPathException("Cannot move '" + fromJsonPath + "' to '" + toJsonPath + "'");
+            }
+            this.lastKey = from[from.length - 1].key();
+        }
+
+        private Schema[] deriveSchemas(Schema inputSchema) {
+            final Schema fieldSchema = Schemas.fieldSchema(inputSchema, from);
+            if (fieldSchema == null) {
+                return new Schema[]{inputSchema, inputSchema};
+            }
+            final Schema removed = Schemas.replace(inputSchema, from, from.length - 1, 0, parent -> Schemas.withoutField(parent, lastKey));
+            return new Schema[]{removed, Schemas.upsert(removed, to, 0, fieldSchema)};
+        }
+
+        /**
+         * @param inputSchema schema of the original Structs
+         * @return schema of the Structs returned by this mover
+         */
+        public Schema outputSchema(Schema inputSchema) {
+            return schemas.computeIfAbsent(inputSchema, this::deriveSchemas)[1];
+        }
 
-        pathMap.forEach((path, cur) -> {
-            final String childPath = pathOfObjectSub(path, keyName);
-            if (cur instanceof Struct == false) {
-                throw new JsonPathException("field '" + childPath + "' is not a Struct but " + cur.getClass());
+        /**
+         * Create a new Struct in which the field at the source path is moved to the target path.
+         *
+         * @param org Original Struct value
+         * @return a new Struct instance with the field moved, or the original one if the source field is missing in the schema.
+         */
+        public Struct run(Struct org) {
+            final Schema[] derived = schemas.computeIfAbsent(org.schema(), this::deriveSchemas);
+            if (derived[0] == org.schema()) {
+                return org;
             }
-            try {
-                Struct parent = (Struct) cur;
-                // If the specified field is missing, skip it without error. This is the same behavior as Map.
-                if (parent.schema().field(keyName) == null) {
-                    return;
+            final Object[] moved = new Object[1];
+            final Object removed = rewrite(from, from.length - 1, false, org, org.schema(), derived[0], new int[from.length], 0, null, (parent, schema, newSchema, indices, node) -> {
+                if (parent == null) {
+                    return null;
                 }
-                final Object child = onSubscript.apply(new ObjectSubUpdateParam(childPath, keyName, parent));
-                if (child != null) {
-                    updated.put(childPath, child);
+                final Struct struct = (Struct) parent;
+                moved[0] = struct.getWithoutDefault(lastKey);
+                return copyFields(struct, newSchema, null, null, from, indices, from.length - 1);
+            });
+            return (Struct) rewrite(to, to.length, true, removed, derived[0], derived[1], new int[to.length], 0, null, (cur, schema, newSchema, indices, node) -> moved[0]);
+        }
+    }
+
+    /**
+     * A Projector which builds a new Struct containing only the subtrees selected by the JsonPaths.
+     * Array subscripts keep the shape of arrays, that is, every element is narrowed to the union of the paths
+     * below any subscript of the array. The projected schema is derived once per input schema and cached by
+     * the identity of the input schema, and the selected subtrees are shared with the original Struct.
+     */
+    public static class Projector implements Accessor.Projector<Struct> {
+        private final PathTrie projection;
+        private final SchemaCache<Schema> schemas = new SchemaCache<>();
+
+        /**
+         * Parse the given JsonPaths and build a new Projector instance.
+         *
+         * @param jsonPaths JsonPath strings to select
+         */
+        public Projector(Collection<String> jsonPaths) {
+            this.projection = compileProjection(jsonPaths);
+        }
+
+        /**
+         * @param inputSchema schema of the original Structs
+         * @return schema of the Structs returned by this projector
+         */
+        public Schema outputSchema(Schema inputSchema) {
+            return schemas.computeIfAbsent(inputSchema, s -> Schemas.project(s, projection));
+        }
+
+        /**
+         * Create a new Struct which contains only the subtrees selected by the JsonPaths.
+         *
+         * @param org Original Struct value
+         * @return a new Struct instance with only the selected subtrees.
+         */
+        public Struct run(Struct org) {
+            return (Struct) project(org, org.schema(), outputSchema(org.schema()));
+        }
+
+        private static Object project(Object cur, Schema schema, Schema newSchema) {
+            if (cur == null || schema == newSchema) {
+                return cur;
+            }
+            if (newSchema.type() == Schema.Type.STRUCT) {
+                final Struct struct = (Struct) cur;
+                final Struct projected = new Struct(newSchema);
+                for (Field field : newSchema.fields()) {
+                    final Object value = project(struct.getWithoutDefault(field.name()), schema.field(field.name()).schema(), field.schema());
+                    if (value != null) {
+                        projected.put(field, value);
+                    }
                 }
-            } catch (DataException e) {
-                throw new JsonPathException("An error occurred during processing of Struct field '" + childPath + "': " + e.getMessage(), e);
+                return projected;
             }
-        });
-
-        return updated;
+            final List<Object> list = (List<Object>) cur;
+            final List<Object> projected = new ArrayList<>(list.size());
+            for (Object element : list) {
+                projected.add(project(element, schema.valueSchema(), newSchema.valueSchema()));
+            }
+            return projected;
+        }
     }
 
-    private static class GetTaskGen implements ParserListener.TaskGen<GetTaskState> {
+    /**
+     * A Differ which reports the values matched by the JsonPaths that differ between two Structs, e.g. the `before` and
+     * `after` of a change event. Both Structs are walked in lockstep along the paths, and subtrees which are the same
+     * instance in both are skipped. A value missing in one of them differs from any non-null value in the other.
+     */
+    public static class Differ implements Accessor.Differ<Struct> {
+        private final PathSegment[][] segments;
+        private final Accessor.MismatchHandler onMismatch;
+
+        /**
+         * Parse the given JsonPaths and build a new Differ instance.
+         *
+         * @param jsonPaths JsonPath strings to compare
+         */
+        public Differ(Collection<String> jsonPaths) {
+            this(jsonPaths, null);
+        }
+
+        /**
+         * Parse the given JsonPaths and build a new Differ instance in lenient mode,
+         * which treats a type mismatch or a null node as a missing value instead of throwing JsonPathException.
+         *
+         * @param jsonPaths  JsonPath strings to compare
+         * @param onMismatch handler to which mismatches are reported, or null to throw JsonPathException
+         */
+        public Differ(Collection<String> jsonPaths, Accessor.MismatchHandler onMismatch) {
+            this.segments = new PathSegment[jsonPaths.size()][];
+            int i = 0;
+            for (String jsonPath : jsonPaths) {
+                segments[i++] = compile(jsonPath);
+            }
+            this.onMismatch = onMismatch;
+        }
+
+        /**
+         * Compare the values matched by the JsonPaths in the two Structs.
+         *
+         * @param before Struct before the change
+         * @param after  Struct after the change
+         * @return paths of the values which differ, in the order of the JsonPaths
+         */
         @Override
-        public ParserListener.Task<GetTaskState> subscriptObject(String keyName) {
-            return state ->
-                    state.pathMap = mapObjectSubscript(state.pathMap, keyName, param -> param.parent.get(param.key));
+        public Set<String> run(Struct before, Struct after) {
+            final Set<String> changed = new LinkedHashSet<>();
+            for (PathSegment[] path : segments) {
+                diffMatches(path, before, after, objectModel, onMismatch, changed);
+            }
+            return changed;
         }
 
+        /**
+         * Test whether any value matched by the JsonPaths differs, without building the paths.
+         * The comparison stops at the first change.
+         */
         @Override
-        public ParserListener.Task<GetTaskState> subscriptArray(int index) {
-            return state ->
-                    state.pathMap = mapSubscriptArray(state.pathMap, index, param -> param.parent.get(param.index));
+        public boolean changed(Struct before, Struct after) {
+            for (PathSegment[] path : segments) {
+                if (diffMatches(path, before, after, objectModel, onMismatch, null)) {
+                    return true;
+                }
+            }
+            return false;
         }
     }
 
-    private static abstract class UpdateTaskState {
-        Map<String, Object> pathMap;
+    /**
+     * A Getter which evaluates a set of JsonPaths over a batch of Structs and fills a column for each path,
+     * in which the value at position i is the value in the i-th Struct.
+     * The values of integer, floating point and boolean fields are held in LongColumn, DoubleColumn and BooleanColumn
+     * according to the schema of the first Struct, and the others in ObjectColumn.
+     * The paths must not contain wildcards, so that each of them matches at most one value in a Struct.
+     */
+    public static class ColumnGetter {
+        private final List<String> jsonPaths;
+        private final PathSegment[][] segments;
+        private final Accessor.MismatchHandler onMismatch;
+        private final SchemaCache<Schema[]> leafSchemas = new SchemaCache<>();
 
-        UpdateTaskState(Struct org) {
-            this.pathMap = Collections.singletonMap("$", org);
+        /**
+         * Parse the given JsonPaths and build a new ColumnGetter instance.
+         *
+         * @param jsonPaths JsonPath strings without wildcards
+         */
+        public ColumnGetter(List<String> jsonPaths) {
+            this(jsonPaths, null);
         }
 
-        abstract Object getNewValue(String path);
+        /**
+         * Parse the given JsonPaths and build a new ColumnGetter instance in lenient mode,
+         * which treats a type mismatch or a null node as a missing value instead of throwing JsonPathException.
+         *
+         * @param jsonPaths  JsonPath strings without wildcards
+         * @param onMismatch handler to which mismatches are reported, or null to throw JsonPathException
+         */
+        public ColumnGetter(List<String> jsonPaths, Accessor.MismatchHandler onMismatch) {
+            this.jsonPaths = new ArrayList<>(jsonPaths);
+            this.segments = compileColumns(this.jsonPaths);
+            this.onMismatch = onMismatch;
+        }
+
+        /**
+         * Evaluate the JsonPaths over the batch.
+         *
+         * @param records Structs from which to get the values
+         * @return the columns of the JsonPaths, in which missing values are null
+         */
+        public ColumnBatch run(List<Struct> records) {
+            final Schema[] leaves = records.isEmpty() || records.get(0) == null ? new Schema[segments.length]
+                    : leafSchemas(leafSchemas, segments, records.get(0).schema());
+            final Column[] columns = new Column[segments.length];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = columnFor(leaves[i], records.size());
+            }
+            for (Struct record : records) {
+                for (int i = 0; i < segments.length; i++) {
+                    final Object value = valueAt(segments[i], segments[i].length, record, objectModel, onMismatch);
+                    if (!append(columns[i], value)) {
+                        mismatch(onMismatch, jsonPaths.get(i), expectedBy(columns[i]), value);
+                        columns[i].addNull();
+                    }
+                }
+            }
+            return new ColumnBatch(jsonPaths, columns, records.size());
+        }
+
+        private static Column columnFor(Schema leaf, int capacity) {
+            if (leaf == null || Schemas.isTimeLogical(leaf)) {
+                return new ObjectColumn(capacity);
+            }
+            switch (leaf.type()) {
+                case INT8:
+                case INT16:
+                case INT32:
+                case INT64:
+                    return new LongColumn(capacity);
+                case FLOAT32:
+                case FLOAT64:
+                    return new DoubleColumn(capacity);
+                case BOOLEAN:
+                    return new BooleanColumn(capacity);
+                default:
+                    return new ObjectColumn(capacity);
+            }
+        }
     }
 
-    private static class SelectableUpdateTaskState extends UpdateTaskState {
-        private final Map<String, Object> newValue;
+    /**
+     * An Updater which writes the columns of a ColumnBatch back to the batch of Structs from which it was built.
+     * Each Struct is copied once for all the paths, and null values in the columns keep the current values.
+     * The values are converted to the type of the schema of each field, e.g. a value of a LongColumn is written
+     * to an INT32 field as an Integer, and replaced with the same semantics as Updater.
+     */
+    public static class ColumnUpdater {
+        private final List<String> jsonPaths;
+        private final PathSegment[][] segments;
+        private final Accessor.MismatchHandler onMismatch;
+        private final SchemaCache<Schema[]> leafSchemas = new SchemaCache<>();
 
-        SelectableUpdateTaskState(Struct org, Map<String, Object> newValue) {
-            super(org);
-            this.newValue = newValue;
+        /**
+         * Parse the given JsonPaths and build a new ColumnUpdater instance.
+         *
+         * @param jsonPaths JsonPath strings of the columns to write, which must not contain wildcards
+         */
+        public ColumnUpdater(List<String> jsonPaths) {
+            this(jsonPaths, null);
         }
 
-        @Override
-        Object getNewValue(String path) {
-            return newValue.get(path);
+        /**
+         * Parse the given JsonPaths and build a new ColumnUpdater instance in lenient mode.
+         *
+         * @param jsonPaths  JsonPath strings of the columns to write, which must not contain wildcards
+         * @param onMismatch handler to which mismatches are reported, or null to throw JsonPathException
+         */
+        public ColumnUpdater(List<String> jsonPaths, Accessor.MismatchHandler onMismatch) {
+            this.jsonPaths = new ArrayList<>(jsonPaths);
+            this.segments = compileColumns(this.jsonPaths);
+            this.onMismatch = onMismatch;
+        }
+
+        /**
+         * Create new Structs with the values of the columns applied.
+         *
+         * @param records Original Structs
+         * @param columns columns which have the JsonPaths of this updater, of the same size as the records
+         * @return new Struct instances in the same order as the records
+         */
+        public List<Struct> run(List<Struct> records, ColumnBatch columns) {
+            final Column[] sources = columnsOf(jsonPaths, columns, records.size());
+            final List<Struct> updated = new ArrayList<>(records.size());
+            for (int r = 0; r < records.size(); r++) {
+                final Struct copy = RecordCopier.copyStruct(records.get(r));
+                final Schema[] leaves = leafSchemas(leafSchemas, segments, copy.schema());
+                for (int i = 0; i < segments.length; i++) {
+                    updateAt(segments[i], copy, objectModel, onMismatch, Schemas.narrow(leaves[i], sources[i].getBoxed(r)));
+                }
+                updated.add(copy);
+            }
+            return updated;
         }
     }
 
-    private static class SimpleUpdateTaskState extends UpdateTaskState {
-        private final Object newValue;
+    /**
+     * @return the schemas of the values at the paths, which are null if they cannot be determined from the schema
+     */
+    private static Schema[] leafSchemas(SchemaCache<Schema[]> cache, PathSegment[][] segments, Schema schema) {
+        return cache.computeIfAbsent(schema, s -> {
+            final Schema[] leaves = new Schema[segments.length];
+            for (int i = 0; i < segments.length; i++) {
+                leaves[i] = Schemas.leafSchema(s, segments[i]);
+            }
+            return leaves;
+        });
+    }
 
-        SimpleUpdateTaskState(Struct org, Object newValue) {
-            super(org);
-            this.newValue = newValue;
+    /**
+     * Replace the value at the end of the path with the new one if it is given.
+     * A non-null value whose schema is changed must be replaced.
+     */
+    private static Object replaceLeaf(Object cur, Schema schema, Schema newSchema, Object newVal, PathSegment[] segments, int[] indices) {
+        if (newVal != null) {
+            return newVal;
         }
-
-        @Override
-        Object getNewValue(String path) {
-            return this.newValue;
+        if (cur != null && schema != newSchema) {
+            throw new JsonPathException("No value is given for field '" + pathOf(segments, indices, segments.length) + "' whose schema is changed");
         }
+        return cur;
     }
 
-    private static class UpdateTaskGen implements ParserListener.TaskGen<UpdateTaskState> {
+    private interface LeafRewriter {
+        /**
+         * @param cur       value at the end of the path, or null if it is missing
+         * @param schema    schema of the value
+         * @param newSchema derived schema of the value
+         * @param indices   array indices of the value, indexed by the depth of the segments
+         * @param node      leaf of the trie of update keys which holds the new value,
+         *                  or null if no trie is given or the trie has no key for the value
+         * @return new value, or cur itself if it is not changed
+         */
+        Object rewrite(Object cur, Schema schema, Schema newSchema, int[] indices, PathTrie node);
+    }
 
-        @Override
-        public ParserListener.Task<UpdateTaskState> subscriptObject(String keyName) {
-            return state ->
-                    state.pathMap = mapObjectSubscript(state.pathMap, keyName, param -> {
-                        Object child = param.parent.get(param.key);
-                        if (child instanceof Struct || child instanceof List || child == null) {
-                            return child;
-                        }
-                        // if path is found in newValue, modify the Struct in the state
-                        // otherwise just get the field and return it.
-                        final Object newVal = state.getNewValue(param.path);
-                        if (newVal != null) {
-                            param.parent.put(param.key, newVal);
-                            return newVal;
-                        } else {
-                            return param.parent.get(param.key);
-                        }
-                    });
+    /**
+     * Walk the path and rebuild only the Structs and arrays on it, sharing the other values with the original.
+     * The rebuilt Structs use the derived schema.
+     *
+     * @param end     index of the segment at which the leaf rewriter is called
+     * @param create  true to create missing Structs on the path, whose fields must be in the derived schema
+     * @param indices array indices being visited, from which the paths are built only when they are needed
+     * @param node    node of the trie of update keys built by compileUpdates(), or null to visit every element matched
+     *                by the path. The trie selects the array elements to visit when the schema of the array is
+     *                unchanged. Otherwise every element is visited, since it has to be rebuilt with the derived schema.
+     */
+    private static Object rewrite(PathSegment[] segments, int end, boolean create, Object cur, Schema schema, Schema newSchema, int[] indices, int depth, PathTrie node, LeafRewriter leaf) {
+        if (depth == end) {
+            return leaf.rewrite(cur, schema, newSchema, indices, node);
+        }
+        final PathSegment segment = segments[depth];
+        if (cur == null && !(create && segment.isField())) {
+            return null;
         }
 
-        @Override
-        public ParserListener.Task<UpdateTaskState> subscriptArray(int index) {
-            return state ->
-                    state.pathMap = mapSubscriptArray(state.pathMap, index, param -> {
-                        Object child = param.parent.get(param.index);
-                        if (child instanceof Struct || child instanceof List) {
-                            return child;
-                        }
-                        final Object newVal = state.getNewValue(param.path);
-                        if (newVal != null) {
-                            param.parent.set(param.index, newVal);
-                            return newVal;
-                        } else {
-                            return param.parent.get(param.index);
-                        }
-                    });
+        if (segment.isField()) {
+            if (cur != null && cur instanceof Struct == false) {
+                throw mismatchError(pathOf(segments, indices, depth + 1), "a Struct", cur);
+            }
+            final Struct struct = (Struct) cur;
+            final Field target = struct == null ? null : schema.field(segment.key());
+            final Field newTarget = newSchema.field(segment.key());
+            if (newTarget == null || (target == null && !create)) {
+                return struct;
+            }
+            final Object child = target == null ? null : struct.getWithoutDefault(target.name());
+            final Object newChild = rewrite(segments, end, create, child, target == null ? null : target.schema(), newTarget.schema(),
+                    indices, depth + 1, node, leaf);
+            if (newChild == child && (schema == newSchema || struct == null)) {
+                return struct;
+            }
+            return copyFields(struct, newSchema, newTarget, newChild, segments, indices, depth);
+        }
+
+        if (cur instanceof List == false) {
+            throw mismatchError(pathOf(segments, indices, depth), "an array", cur);
+        }
+        final List<Object> list = (List<Object>) cur;
+        List<Object> updated = null;
+        if (node != null && schema == newSchema) {
+            for (Map.Entry<Integer, PathTrie> entry : node.indexEntries()) {
+                if (entry.getKey() < list.size()) {
+                    updated = rewriteElement(segments, end, create, list, updated, entry.getKey(), schema, newSchema, indices, depth, entry.getValue(), leaf);
+                }
+            }
+            return updated == null ? list : updated;
+        }
+        final int from = segment.isWildcard() ? 0 : segment.index();
+        final int to = segment.isWildcard() ? list.size() : Math.min(segment.index() + 1, list.size());
+        for (int i = from; i < to; i++) {
+            updated = rewriteElement(segments, end, create, list, updated, i, schema, newSchema, indices, depth, node == null ? null : node.index(i), leaf);
+        }
+        return updated == null ? list : updated;
+    }
+
+    /**
+     * @param updated copy of the list to which the rewritten elements are set, or null if no element is rewritten yet
+     * @return the copy of the list if the element is rewritten or has already been, otherwise null
+     */
+    private static List<Object> rewriteElement(PathSegment[] segments, int end, boolean create, List<Object> list, List<Object> updated, int i,
+                                               Schema schema, Schema newSchema, int[] indices, int depth, PathTrie node, LeafRewriter leaf) {
+        indices[depth] = i;
+        final Object child = list.get(i);
+        final Object newChild = rewrite(segments, end, create, child, schema.valueSchema(), newSchema.valueSchema(), indices, depth + 1, node, leaf);
+        if (newChild == child) {
+            return updated;
+        }
+        if (updated == null) {
+            updated = new ArrayList<>(list);
+        }
+        updated.set(i, newChild);
+        return updated;
+    }
+
+    /**
+     * Create a new Struct with the given schema, whose field values are taken from the original Struct
+     * except for the target field. The original Struct may be null or lack some fields of the new schema.
+     *
+     * @param depth number of the segments of the path to the original Struct, which is used for error messages
+     */
+    private static Struct copyFields(Struct org, Schema newSchema, Field target, Object newValue, PathSegment[] segments, int[] indices, int depth) {
+        try {
+            final Struct updated = new Struct(newSchema);
+            for (Field field : newSchema.fields()) {
+                final Object value;
+                if (field == target) {
+                    value = newValue;
+                } else {
+                    final Field orgField = org == null ? null : org.schema().field(field.name());
+                    value = orgField == null ? null : org.getWithoutDefault(orgField.name());
+                }
+                if (value != null) {
+                    updated.put(field, value);
+                }
+            }
+            return updated;
+        } catch (DataException e) {
+            throw new JsonPathException("An error occurred during processing of Struct '" + pathOf(segments, indices, depth) + "': " + e.getMessage(), e);
         }
     }
 }
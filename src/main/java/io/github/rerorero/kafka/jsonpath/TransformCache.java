@@ -0,0 +1,159 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A thread-safe, bounded cache which memoizes a function transforming the values matched by an Updater,
+ * such as hashing or tokenization of low-cardinality fields. e.g.
+ * <pre>
+ *     TransformCache hash = TransformCache.shared("sha256", 100_000, v -&gt; sha256((String) v));
+ *     Struct masked = new StructAccessor.Updater("$.customer.id").transform(struct, hash);
+ * </pre>
+ * The entries are split into segments by the hash of the value, each of which evicts its least recently used entry
+ * when it is full, so that concurrent tasks rarely contend for the same lock.
+ * The function is called outside the locks, so concurrent misses of the same value may call it more than once.
+ * Values are compared by equals(), so null and arrays such as byte[] are passed to the function without caching.
+ */
+public final class TransformCache implements Function<Object, Object> {
+    private static final int SEGMENTS = 16;
+    private static final Object NULL = new Object();
+    private static final ConcurrentMap<String, TransformCache> SHARED = new ConcurrentHashMap<>();
+
+    private final Function<Object, Object> function;
+    private final Map<Object, Object>[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maximumSize maximum number of entries, approximately since each segment is bounded separately
+     * @param function    function to memoize, which has to return the same result for equal values
+     */
+    public TransformCache(int maximumSize, Function<Object, Object> function) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+        }
+        this.function = function;
+        final int segmentSize = Math.max((maximumSize + SEGMENTS - 1) / SEGMENTS, 1);
+        @SuppressWarnings("unchecked") final Map<Object, Object>[] s = (Map<Object, Object>[]) new Map<?, ?>[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            s[i] = new LinkedHashMap<Object, Object>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+                    if (size() > segmentSize) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+        this.segments = s;
+    }
+
+    /**
+     * Get the cache registered with the name, or register a new one, so that all the tasks in a JVM share it.
+     * The size and the function are used only by the first call for the name.
+     *
+     * @param name        name of the cache, usually the name of the transform
+     * @param maximumSize maximum number of entries
+     * @param function    function to memoize
+     * @return the cache shared by the name
+     */
+    public static TransformCache shared(String name, int maximumSize, Function<Object, Object> function) {
+        return SHARED.computeIfAbsent(name, n -> new TransformCache(maximumSize, function));
+    }
+
+    /**
+     * Unregister the shared cache with the name, e.g. when the connector which registered it is stopped.
+     */
+    public static void removeShared(String name) {
+        SHARED.remove(name);
+    }
+
+    @Override
+    public Object apply(Object value) {
+        if (value == null || value.getClass().isArray()) {
+            return function.apply(value);
+        }
+        final Map<Object, Object> segment = segmentOf(value);
+        Object cached;
+        synchronized (segment) {
+            cached = segment.get(value);
+        }
+        if (cached != null) {
+            hits.increment();
+            return cached == NULL ? null : cached;
+        }
+        misses.increment();
+        final Object result = function.apply(value);
+        synchronized (segment) {
+            segment.put(value, result == null ? NULL : result);
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of entries currently held
+     */
+    public int size() {
+        int size = 0;
+        for (Map<Object, Object> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Remove all the entries. The statistics are kept.
+     */
+    public void clear() {
+        for (Map<Object, Object> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * @return the number of calls answered from the cache
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of calls which invoked the function, except for the values which are not cached
+     */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of entries evicted to keep the size
+     */
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the ratio of hits to the cached lookups, or 1.0 if there is no lookup yet
+     */
+    public double hitRate() {
+        final long hit = hits.sum();
+        final long total = hit + misses.sum();
+        return total == 0 ? 1.0 : (double) hit / total;
+    }
+
+    private Map<Object, Object> segmentOf(Object value) {
+        final int h = value.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+}
@@ -0,0 +1,49 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Searches of UTF-8 encoded JSON bytes used on the hot paths of JsonScanner.
+ * This is the implementation for Java 17 and later, which reads 8 bytes at a time through a VarHandle
+ * and tests them at once with SWAR (SIMD within a register) arithmetic.
+ */
+final class ByteSearch {
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+    private static final long QUOTES = ONES * '"';
+    private static final long BACKSLASHES = ONES * '\\';
+
+    private ByteSearch() {
+    }
+
+    /**
+     * @return the position of the first '"' or '\' from `from` until `limit`, or `limit` if there is none.
+     * `from` is returned as is if it is not less than `limit`.
+     */
+    static int indexOfQuoteOrBackslash(byte[] buf, int from, int limit) {
+        int i = from;
+        while (i + Long.BYTES <= limit) {
+            final long word = (long) LONGS.get(buf, i);
+            final long found = zeroBytes(word ^ QUOTES) | zeroBytes(word ^ BACKSLASHES);
+            if (found != 0) {
+                // the lowest flag is exact, false positives can only appear above a zero byte
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+            i += Long.BYTES;
+        }
+        while (i < limit && buf[i] != '"' && buf[i] != '\\') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return the word in which the high bit of each zero byte of the given word is set
+     */
+    private static long zeroBytes(long word) {
+        return (word - ONES) & ~word & HIGHS;
+    }
+}
@@ -0,0 +1,29 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event of an evaluation of a path over a Struct or a Map, which is recorded only if it takes 1 ms or longer
+ * unless the threshold is changed in the recording settings.
+ */
+@Name(PathEvaluationEvent.NAME)
+@Label("JsonPath Evaluation")
+@Description("Evaluation of a JsonPath over a Struct or a Map by an accessor")
+@Category({"Kafka Connect", "JsonPath"})
+@StackTrace(false)
+@Threshold("1 ms")
+final class PathEvaluationEvent extends Event {
+    static final String NAME = "io.github.rerorero.kafka.jsonpath.PathEvaluation";
+
+    @Label("Path")
+    String path;
+
+    @Label("Matches")
+    int matches;
+}
@@ -0,0 +1,179 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Struct;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates a path over Structs and Maps for Getter and the other read-only accessors.
+ * This is the implementation for Java 17 and later, which differs from the baseline in two ways:
+ * <ul>
+ *     <li>The children of Structs and Maps are looked up directly instead of through ObjectModel.child,
+ *     whose call site sees the models of all the accessors and cannot be inlined. A Struct is looked up
+ *     with a single search of its schema. The model still decides which nodes are objects.</li>
+ *     <li>Evaluations and mismatches are reported as JFR events, PathEvaluationEvent and PathMismatchEvent.</li>
+ * </ul>
+ */
+final class PathEvaluator {
+    private PathEvaluator() {
+    }
+
+    /**
+     * Pass the values matched by the path to the collector in the order of traversal.
+     *
+     * @param indices array indices visited, indexed by the depth of the segments
+     */
+    static void collect(PathSegment[] segments, int[] indices, Object root, AccessorBase.ObjectModel model, Accessor.MismatchHandler onMismatch, AccessorBase.MatchCollector collector) {
+        final PathEvaluationEvent event = new PathEvaluationEvent();
+        event.begin();
+        final int matches;
+        if (segments.length == 0) {
+            collector.add(root, indices);
+            matches = 1;
+        } else {
+            matches = collect(segments, indices, 0, root, model, onMismatch, collector);
+        }
+        commit(event, segments, matches);
+    }
+
+    /**
+     * Count the values matched by the path. Matches at a trailing array subscript are counted from the size of the array.
+     *
+     * @param stopAtFirst true to return as soon as a match is found
+     */
+    static int count(PathSegment[] segments, int[] indices, Object root, AccessorBase.ObjectModel model, Accessor.MismatchHandler onMismatch, boolean stopAtFirst) {
+        if (segments.length == 0) {
+            return 1;
+        }
+        final PathEvaluationEvent event = new PathEvaluationEvent();
+        event.begin();
+        final int matches = count(segments, indices, 0, root, model, onMismatch, stopAtFirst);
+        commit(event, segments, matches);
+        return matches;
+    }
+
+    private static void commit(PathEvaluationEvent event, PathSegment[] segments, int matches) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = AccessorBase.pathOf(segments);
+            event.matches = matches;
+            event.commit();
+        }
+    }
+
+    /**
+     * @return the number of the values passed to the collector
+     */
+    private static int collect(PathSegment[] segments, int[] indices, int depth, Object cur, AccessorBase.ObjectModel model, Accessor.MismatchHandler onMismatch, AccessorBase.MatchCollector collector) {
+        final PathSegment segment = segments[depth];
+        final boolean last = depth == segments.length - 1;
+        if (segment.isField()) {
+            if (!model.isObject(cur)) {
+                mismatch(onMismatch, segments, indices, depth + 1, model.description(), cur);
+                return 0;
+            }
+            final Object child = child(cur, segment.key(), model);
+            if (child == null) {
+                return 0;
+            }
+            if (last) {
+                collector.add(child, indices);
+                return 1;
+            }
+            return collect(segments, indices, depth + 1, child, model, onMismatch, collector);
+        }
+
+        if (!(cur instanceof List<?> list)) {
+            mismatch(onMismatch, segments, indices, depth, "an array", cur);
+            return 0;
+        }
+        final int from = segment.isWildcard() ? 0 : segment.index();
+        final int to = segment.isWildcard() ? list.size() : Math.min(segment.index() + 1, list.size());
+        int matches = 0;
+        for (int i = from; i < to; i++) {
+            indices[depth] = i;
+            if (last) {
+                collector.add(list.get(i), indices);
+                matches++;
+            } else {
+                matches += collect(segments, indices, depth + 1, list.get(i), model, onMismatch, collector);
+            }
+        }
+        return matches;
+    }
+
+    private static int count(PathSegment[] segments, int[] indices, int depth, Object cur, AccessorBase.ObjectModel model, Accessor.MismatchHandler onMismatch, boolean stopAtFirst) {
+        final PathSegment segment = segments[depth];
+        final boolean last = depth == segments.length - 1;
+        if (segment.isField()) {
+            if (!model.isObject(cur)) {
+                mismatch(onMismatch, segments, indices, depth + 1, model.description(), cur);
+                return 0;
+            }
+            final Object child = child(cur, segment.key(), model);
+            if (child == null) {
+                return 0;
+            }
+            return last ? 1 : count(segments, indices, depth + 1, child, model, onMismatch, stopAtFirst);
+        }
+
+        if (!(cur instanceof List<?> list)) {
+            mismatch(onMismatch, segments, indices, depth, "an array", cur);
+            return 0;
+        }
+        if (last) {
+            if (segment.isWildcard()) {
+                return list.size();
+            }
+            return segment.index() < list.size() ? 1 : 0;
+        }
+        if (!segment.isWildcard()) {
+            if (segment.index() >= list.size()) {
+                return 0;
+            }
+            indices[depth] = segment.index();
+            return count(segments, indices, depth + 1, list.get(segment.index()), model, onMismatch, stopAtFirst);
+        }
+        int count = 0;
+        for (int i = 0; i < list.size(); i++) {
+            indices[depth] = i;
+            count += count(segments, indices, depth + 1, list.get(i), model, onMismatch, stopAtFirst);
+            if (stopAtFirst && count > 0) {
+                return count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the child of the object node, which is looked up the same way as ObjectModel.child of all the accessors
+     */
+    private static Object child(Object node, String key, AccessorBase.ObjectModel model) {
+        if (node instanceof Struct struct) {
+            // A missing field is skipped without error, the same as Getter.
+            final Field field = struct.schema().field(key);
+            return field == null ? null : struct.get(field);
+        }
+        if (node instanceof Map<?, ?> map) {
+            return map.get(key);
+        }
+        return model.child(node, key);
+    }
+
+    /**
+     * Report a mismatch to the handler as AccessorBase does, and to JFR if the event is enabled.
+     * The path is rendered for the event only while a recording takes it.
+     */
+    private static void mismatch(Accessor.MismatchHandler onMismatch, PathSegment[] segments, int[] indices, int depth, String expected, Object actual) {
+        final PathMismatchEvent event = new PathMismatchEvent();
+        if (event.shouldCommit()) {
+            event.path = AccessorBase.pathOf(segments, indices, depth);
+            event.expected = expected;
+            event.actual = actual == null ? "null" : actual.getClass().getName();
+            event.commit();
+        }
+        AccessorBase.mismatch(onMismatch, segments, indices, depth, expected, actual);
+    }
+}
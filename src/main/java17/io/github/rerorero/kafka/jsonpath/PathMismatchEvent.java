@@ -0,0 +1,27 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of a type mismatch found while evaluating a path, which is recorded in lenient mode as well as strict mode.
+ */
+@Name(PathMismatchEvent.NAME)
+@Label("JsonPath Mismatch")
+@Description("A value of an unexpected type found while evaluating a JsonPath")
+@Category({"Kafka Connect", "JsonPath"})
+final class PathMismatchEvent extends Event {
+    static final String NAME = "io.github.rerorero.kafka.jsonpath.PathMismatch";
+
+    @Label("Path")
+    String path;
+
+    @Label("Expected")
+    String expected;
+
+    @Label("Actual")
+    String actual;
+}
@@ -0,0 +1,62 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncBatchUpdaterTest {
+    private static Map<String, Object> newUsers(String... names) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("users", Arrays.stream(names).map(name -> Collections.singletonMap("name", name)).collect(Collectors.toList()));
+        return m;
+    }
+
+    @Test
+    public void testRunTask() {
+        AtomicInteger calls = new AtomicInteger();
+        AsyncBatchUpdater<Map<String, Object>> updater = new AsyncBatchUpdater<>(
+                new MapAccessor.Getter("$.users[*].name"),
+                new MapAccessor.Updater("$.users[*].name"),
+                values -> {
+                    calls.incrementAndGet();
+                    return CompletableFuture.completedFuture(values.stream()
+                            .map(v -> "a".equals(v) ? null : ((String) v).toUpperCase())
+                            .collect(Collectors.toList()));
+                });
+
+        List<Map<String, Object>> org = Arrays.asList(newUsers("a", "b"), newUsers(), newUsers("c"));
+        List<Map<String, Object>> actual = updater.run(org).join();
+        assertEquals(Arrays.asList(newUsers("a", "B"), newUsers(), newUsers("C")), actual);
+        assertEquals(1, calls.get()); // values of all the records are transformed at once
+        assertEquals(newUsers("a", "b"), org.get(0)); // source should not be modified
+
+        // the function is not called if nothing is matched
+        assertEquals(Arrays.asList(newUsers(), newUsers()), updater.run(Arrays.asList(newUsers(), newUsers())).join());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void testRunTaskFailure() {
+        List<Map<String, Object>> org = Collections.singletonList(newUsers("a", "b"));
+        AsyncBatchUpdater<Map<String, Object>> wrongSize = new AsyncBatchUpdater<>(
+                new MapAccessor.Getter("$.users[*].name"),
+                new MapAccessor.Updater("$.users[*].name"),
+                values -> CompletableFuture.completedFuture(Collections.singletonList("x")));
+        CompletionException e = assertThrows(CompletionException.class, () -> wrongSize.run(org).join());
+        assertTrue(e.getCause() instanceof JsonPathException);
+
+        AsyncBatchUpdater<Map<String, Object>> throwing = new AsyncBatchUpdater<>(
+                new MapAccessor.Getter("$.users[*].name"),
+                new MapAccessor.Updater("$.users[*].name"),
+                values -> {
+                    throw new IllegalStateException("unavailable");
+                });
+        assertTrue(throwing.run(org).isCompletedExceptionally());
+    }
+}
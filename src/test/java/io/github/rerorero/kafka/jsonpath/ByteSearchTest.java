@@ -0,0 +1,40 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ByteSearchTest {
+    @Test
+    public void testIndexOfQuoteOrBackslash() {
+        for (int length = 0; length < 40; length++) {
+            byte[] buf = new byte[length];
+            Arrays.fill(buf, (byte) 'a');
+            assertEquals(length, ByteSearch.indexOfQuoteOrBackslash(buf, 0, length));
+            for (int at = 0; at < length; at++) {
+                for (byte target : new byte[]{'"', '\\'}) {
+                    buf[at] = target;
+                    for (int from = 0; from <= length; from++) {
+                        int expected = from <= at ? at : length;
+                        assertEquals(expected, ByteSearch.indexOfQuoteOrBackslash(buf, from, length), "length=" + length + " at=" + at + " from=" + from);
+                    }
+                    // the limit hides the target
+                    assertEquals(at, ByteSearch.indexOfQuoteOrBackslash(buf, 0, at));
+                    buf[at] = 'a';
+                }
+            }
+        }
+
+        // bytes of multi-byte characters and bytes next to the targets do not match
+        byte[] buf = "\u00e9\u3042!#[]\u00a2\"".getBytes(StandardCharsets.UTF_8);
+        assertEquals(buf.length - 1, ByteSearch.indexOfQuoteOrBackslash(buf, 0, buf.length));
+        buf = "abc\"\\def\"".getBytes(StandardCharsets.UTF_8);
+        assertEquals(3, ByteSearch.indexOfQuoteOrBackslash(buf, 0, buf.length));
+        assertEquals(4, ByteSearch.indexOfQuoteOrBackslash(buf, 4, buf.length));
+        assertEquals(8, ByteSearch.indexOfQuoteOrBackslash(buf, 5, buf.length));
+        assertEquals(12, ByteSearch.indexOfQuoteOrBackslash(buf, 12, buf.length));
+    }
+}
@@ -0,0 +1,239 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import org.apache.kafka.connect.json.JsonConverter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonBytesAccessorTest {
+
+    private static final String JSON = "{\n" +
+            "  \"text\": \"original_text\",\n" +
+            "  \"number\": 42,\n" +
+            "  \"float\": 1.5e2,\n" +
+            "  \"bool\": true,\n" +
+            "  \"nullable\": null,\n" +
+            "  \"escaped\": \"a\\\"b\\\\c\\u00e9\\n\",\n" +
+            "  \"k\\u0065y\": \"escaped key\",\n" +
+            "  \"struct\": {\n" +
+            "    \"sub_text\": \"original_sub_text\",\n" +
+            "    \"struct_array\": [\n" +
+            "      {\"string_element\": \"original_element0\", \"noise\": [1, {\"a\": \"]}\"}]},\n" +
+            "      {\"string_element\": \"original_element1\"},\n" +
+            "      {\"string_element\": \"original_element2\"}\n" +
+            "    ],\n" +
+            "    \"string_array\": [\"original_string_array0\", \"original_string_array1\", null]\n" +
+            "  },\n" +
+            "  \"after\": \"\u65e5\u672c\u8a9e\"\n" +
+            "}";
+
+    private static Map<String, Object> newMap() {
+        HashMap<String, Object> struct = new HashMap<>();
+        struct.put("sub_text", "original_sub_text");
+        struct.put("struct_array", Arrays.asList(
+                new HashMap<String, Object>() {{
+                    put("string_element", "original_element0");
+                    put("noise", Arrays.asList(1L, Collections.singletonMap("a", "]}")));
+                }},
+                new HashMap<String, Object>() {{
+                    put("string_element", "original_element1");
+                }},
+                new HashMap<String, Object>() {{
+                    put("string_element", "original_element2");
+                }}
+        ));
+        struct.put("string_array", Arrays.asList(
+                "original_string_array0",
+                "original_string_array1",
+                null));
+
+        Map<String, Object> m = new HashMap<>();
+        m.put("text", "original_text");
+        m.put("number", 42L);
+        m.put("float", 150.0);
+        m.put("bool", true);
+        m.put("nullable", null);
+        m.put("escaped", "a\"b\\c\u00e9\n");
+        m.put("key", "escaped key");
+        m.put("struct", struct);
+        m.put("after", "\u65e5\u672c\u8a9e");
+        return m;
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "$",
+            "$.text",
+            "$['text']",
+            "$.number",
+            "$.float",
+            "$.bool",
+            "$.nullable",
+            "$.escaped",
+            "$.key",
+            "$.after",
+            "$.struct",
+            "$.struct.sub_text",
+            "$['struct']['sub_text']",
+            "$.struct.string_array[1]",
+            "$.struct.string_array[2]",
+            "$.struct.string_array[*]",
+            "$.struct.struct_array[2].string_element",
+            "$.struct.struct_array[*].string_element",
+            "$['struct']['struct_array'][*]['string_element']",
+            "$.struct.struct_array[*].noise[*]",
+            "$.struct.struct_array[0].optional_string_element",
+            "$.struct.struct_array[5].string_element",
+            "$.unknown",
+            "$.struct['unknown'].foo",
+    })
+    public void testGetTask(String jsonPath) {
+        byte[] json = JSON.getBytes(StandardCharsets.UTF_8);
+        Map<String, Object> expected = new MapAccessor.Getter(jsonPath).run(newMap());
+        JsonBytesAccessor.Getter getter = new JsonBytesAccessor.Getter(jsonPath);
+        assertEquals(expected, getter.run(json));
+        assertEquals(expected, getter.run(json)); // Getter should be idempotent
+        assertEquals(expected, getter.run(ByteBuffer.wrap(json)));
+        assertEquals(expected.size(), getter.count(json));
+        assertEquals(!expected.isEmpty(), getter.exists(json));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(json.length);
+        direct.put(json).flip();
+        assertEquals(expected, getter.run(direct));
+        assertEquals(json.length, direct.remaining());
+    }
+
+    @Test
+    public void testGetTaskStopsAfterMatch() {
+        // The input after the root object is not scanned, and the values off the path are only skipped over.
+        byte[] json = "{\"a\": {\"b\": 1, \"c\": [tru, {\"x\": }]}, \"d\": {\"e\": fals}} broken".getBytes(StandardCharsets.UTF_8);
+        assertEquals(Collections.singletonMap("$.a.b", 1L), new JsonBytesAccessor.Getter("$.a.b").run(json));
+        // The rest of the objects on the path is scanned for duplicate members.
+        byte[] brokenMember = "{\"a\": {\"b\": 1, \"c\": 2}, \"broken".getBytes(StandardCharsets.UTF_8);
+        assertThrows(JsonPathException.class, () -> new JsonBytesAccessor.Getter("$.a.b").run(brokenMember));
+
+        // exists stops at the first match, while count has to read the broken values after it
+        byte[] items = "{\"items\": [{\"id\": 1}, {\"id\": tru}, {\"id\": 3}]}".getBytes(StandardCharsets.UTF_8);
+        JsonBytesAccessor.Getter getter = new JsonBytesAccessor.Getter("$.items[*].id");
+        assertTrue(getter.exists(items));
+        assertThrows(JsonPathException.class, () -> getter.count(items));
+        assertFalse(new JsonBytesAccessor.Getter("$.items[5]").exists("{\"items\": [1, 2]}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testGetTaskDuplicateMembers() {
+        // the last of duplicate members wins, as JsonConverter (Jackson) does
+        String text = "{\"a\": 1, \"b\": {\"c\": 1}, \"d\": 1, \"a\": 2, \"b\": {\"e\": [1, 2]}, \"d\": null}";
+        byte[] json = text.getBytes(StandardCharsets.UTF_8);
+        JsonConverter converter = new JsonConverter();
+        converter.configure(Collections.singletonMap("schemas.enable", "false"), false);
+        Map<String, Object> map = (Map<String, Object>) converter.toConnectData("topic", json).value();
+        for (String path : Arrays.asList("$.a", "$.b.c", "$.b.e[*]", "$.b.e[1]", "$.d", "$.b")) {
+            JsonBytesAccessor.Getter getter = new JsonBytesAccessor.Getter(path);
+            Map<String, Object> expected = new MapAccessor.Getter(path).run(map);
+            assertEquals(expected, getter.run(json), path);
+            assertEquals(expected.size(), getter.count(json), path);
+            assertEquals(!expected.isEmpty(), getter.exists(json), path);
+        }
+        assertEquals(Collections.singletonMap("$.a", 2L), new JsonBytesAccessor.Getter("$.a").run(json));
+
+        // only the last member is updated, which is the one read back
+        byte[] updated = new JsonBytesAccessor.Updater("$.b.e[1]").run(json, (Object) 9L);
+        assertEquals(Collections.singletonMap("$.b.e[1]", 9L), new JsonBytesAccessor.Getter("$.b.e[1]").run(updated));
+        assertEquals(text.replace("[1, 2]", "[1, 9]"), new String(updated, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testGetTaskFailure() {
+        byte[] json = JSON.getBytes(StandardCharsets.UTF_8);
+        assertThrows(JsonPathException.class, () -> new JsonBytesAccessor.Getter("$foo")); // parse error
+        assertThrows(JsonPathException.class, () -> new JsonBytesAccessor.Getter("$.struct[0]").run(json));
+        assertThrows(JsonPathException.class, () -> new JsonBytesAccessor.Getter("$.struct.string_array.foo").run(json));
+        assertThrows(JsonPathException.class, () -> new JsonBytesAccessor.Getter("$.a").run("{\"a\": tru}".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(JsonPathException.class, () -> new JsonBytesAccessor.Getter("$.a").run("{\"a\": \"foo".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // JSON without nulls, because MapAccessor.Updater does not accept null array elements.
+    private static final String UPDATE_JSON = "{\"text\": \"original_text\", \"number\" : 42 ,\n" +
+            "  \"struct\": {\"sub_text\": \"original_sub_text\",\n" +
+            "    \"struct_array\": [{\"string_element\": \"original_element0\"}, {\"string_element\": \"original_element1\"}],\n" +
+            "    \"string_array\": [\"original_string_array0\", \"original_string_array1\", \"original_string_array2\"]}}";
+
+    private static Object parse(byte[] json) {
+        return new JsonBytesAccessor.Getter("$").run(json).get("$");
+    }
+
+    private static Stream<Arguments> testUpdateTaskArguments() {
+        return Stream.of(
+                Arguments.of("$.text", Collections.singletonMap("$.text", "updated!")),
+                Arguments.of("$['number']", Collections.singletonMap("$.number", 7L)),
+                Arguments.of("$.struct.sub_text", Collections.singletonMap("$.struct.sub_text", "\"quoted\" \u00e9\t\ud83d\ude00")),
+                Arguments.of("$.struct.string_array[1]", Collections.singletonMap("$.struct.string_array[1]", 1.5)),
+                Arguments.of("$.struct.string_array[*]", new HashMap<String, Object>() {{
+                    put("$.struct.string_array[0]", "updated!0");
+                    put("$.struct.string_array[2]", "updated!2");
+                }}),
+                Arguments.of("$.struct.struct_array[*].string_element", new HashMap<String, Object>() {{
+                    put("$.struct.struct_array[0].string_element", Collections.singletonMap("nested", Arrays.asList(1L, true)));
+                    put("$.struct.struct_array[1].string_element", "updated!1");
+                }}),
+                // containers are not replaced
+                Arguments.of("$.struct", Collections.singletonMap("$.struct", "updated!")),
+                Arguments.of("$.unknown", Collections.singletonMap("$.unknown", "updated!")),
+                Arguments.of("$.text", new HashMap<String, Object>())
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("testUpdateTaskArguments")
+    public void testUpdateTask(String jsonPath, Map<String, Object> newValue) {
+        byte[] org = UPDATE_JSON.getBytes(StandardCharsets.UTF_8);
+        Map<String, Object> expected = new MapAccessor.Updater(jsonPath).run((Map<String, Object>) parse(org), newValue);
+        JsonBytesAccessor.Updater updater = new JsonBytesAccessor.Updater(jsonPath);
+        assertEquals(expected, parse(updater.run(org, newValue)));
+        assertEquals(expected, parse(updater.run(ByteBuffer.wrap(org), newValue)));
+        assertEquals(UPDATE_JSON, new String(org, StandardCharsets.UTF_8)); // source should not be modified
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "$.text",
+            "$.struct.sub_text",
+            "$.struct.string_array[*]",
+            "$['struct']['struct_array'][*]['string_element']",
+            "$.struct",
+            "$.unknown",
+    })
+    public void testSimpleUpdateTask(String jsonPath) {
+        byte[] org = UPDATE_JSON.getBytes(StandardCharsets.UTF_8);
+        Map<String, Object> expected = new MapAccessor.Updater(jsonPath).run((Map<String, Object>) parse(org), (Object) "updated!");
+        assertEquals(expected, parse(new JsonBytesAccessor.Updater(jsonPath).run(org, (Object) "updated!")));
+    }
+
+    @Test
+    public void testUpdateTaskKeepsUntouchedBytes() {
+        byte[] org = UPDATE_JSON.getBytes(StandardCharsets.UTF_8);
+        byte[] actual = new JsonBytesAccessor.Updater("$.struct.string_array[1]").run(org, Collections.singletonMap("$.struct.string_array[1]", "x"));
+        assertEquals(UPDATE_JSON.replace("\"original_string_array1\"", "\"x\""), new String(actual, StandardCharsets.UTF_8));
+
+        byte[] binary = new JsonBytesAccessor.Updater("$.number").run(org, (Object) new byte[]{0x10, 0x20, 0x30});
+        assertEquals("ECAw", ((Map<String, Object>) parse(binary)).get("number"));
+    }
+
+    @Test
+    public void testUpdateTaskFailure() {
+        byte[] org = UPDATE_JSON.getBytes(StandardCharsets.UTF_8);
+        assertThrows(JsonPathException.class, () -> new JsonBytesAccessor.Updater("$foo")); // parse error
+        assertThrows(JsonPathException.class, () -> new JsonBytesAccessor.Updater("$.struct[0]").run(org, Collections.singletonMap("$.struct[0]", "foo")));
+        assertThrows(JsonPathException.class, () -> new JsonBytesAccessor.Updater("$.text").run(org, (Object) Double.NaN));
+    }
+}
@@ -6,6 +6,8 @@ import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
 import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -95,6 +97,26 @@ class MapAccessorTest {
         Map<String, Object> actual = getter.run(newMap());
         assertEquals(expected, actual);
         assertEquals(expected, getter.run(newMap())); // Getter should be idempotent
+        assertEquals(expected.size(), getter.count(newMap()));
+        assertEquals(!expected.isEmpty(), getter.exists(newMap()));
+
+        Map<String, Object> streamed = new HashMap<>();
+        getter.stream(newMap()).forEach(match -> streamed.put(match.path(), match.value()));
+        assertEquals(expected, streamed);
+        Iterator<Match> iterator = getter.iterator(newMap());
+        for (int i = 0; i < expected.size(); i++) {
+            Match match = iterator.next();
+            assertEquals(expected.get(match.path()), match.value());
+        }
+        assertFalse(iterator.hasNext());
+
+        ResultBuffer buffer = new ResultBuffer(1);
+        for (int i = 0; i < 2; i++) { // the buffer should be reusable
+            assertSame(buffer, getter.run(newMap(), buffer));
+            assertEquals(expected, buffer.toMap());
+            assertEquals(expected.size(), buffer.size());
+            expected.forEach((path, value) -> assertEquals(value, buffer.value(buffer.indexOf(path))));
+        }
     }
 
     @Test
@@ -278,6 +300,7 @@ class MapAccessorTest {
         assertEquals(org, newMap()); // source struct should not be modified
 
         assertEquals(expected, updater.run(org, newValue)); // Updater should be idempotent
+        assertEquals(expected, updater.transform(org, current -> newValue));
     }
 
     @Test
@@ -300,4 +323,431 @@ class MapAccessorTest {
         assertThrows(JsonPathException.class, () -> new MapAccessor.Updater("$.struct[0]").run(s, Collections.singletonMap("$.struct[0]", "foo")));
         assertThrows(JsonPathException.class, () -> new MapAccessor.Updater("$.struct.string_array.foo").run(s, Collections.singletonMap("$.struct.string_array.foo", "foo")));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGetTypedTask() {
+        Map<String, Object> m = new HashMap<>();
+        m.put("samples", Arrays.asList(
+                Collections.singletonMap("value", 1.5),
+                Collections.singletonMap("value", 2L),
+                Collections.singletonMap("value", 3.5f)));
+        m.put("flags", Arrays.asList(true, null, false));
+        m.put("mixed", Arrays.asList(1L, "two", 3));
+
+        assertArrayEquals(new double[]{1.5, 2.0, 3.5}, new MapAccessor.Getter("$.samples[*].value").getDoubles(m));
+        assertArrayEquals(new long[]{1}, new MapAccessor.Getter("$.mixed[0]").getLongs(m));
+
+        BooleanColumn flags = new MapAccessor.Getter("$.flags[*]").getBooleans(m, new BooleanColumn());
+        assertArrayEquals(new boolean[]{true, false, false}, flags.toArray());
+        assertTrue(flags.isNull(1));
+        flags.set(1, true);
+        assertFalse(flags.isNull(1));
+        assertEquals(0, flags.nullCount());
+        flags.setNull(0);
+        assertNull(flags.getBoxed(0));
+        flags.clear();
+        assertTrue(flags.isEmpty());
+        assertThrows(IndexOutOfBoundsException.class, () -> flags.get(0));
+
+        assertThrows(JsonPathException.class, () -> new MapAccessor.Getter("$.mixed[*]").getLongs(m));
+        assertThrows(JsonPathException.class, () -> new MapAccessor.Getter("$.samples[*].value").getLongs(m));
+        Accessor.MismatchCounter counter = new Accessor.MismatchCounter();
+        LongColumn column = new MapAccessor.Getter("$.mixed[*]", counter).getLongs(m, new LongColumn());
+        assertArrayEquals(new long[]{1, 0, 3}, column.toArray());
+        assertTrue(column.isNull(1)); // mismatched values are appended as null in lenient mode
+        assertEquals(1, counter.count());
+
+        LongColumn large = new LongColumn(1);
+        for (int i = 0; i < 200; i++) {
+            if (i % 3 == 0) {
+                large.addNull();
+            } else {
+                large.add(i);
+            }
+        }
+        assertEquals(200, large.size());
+        assertEquals(67, large.nullCount());
+        assertTrue(large.isNull(198));
+        assertEquals(199, large.get(199));
+    }
+
+    @Test
+    public void testDiffTask() {
+        Map<String, Object> before = newMap();
+        Map<String, Object> after = newMap();
+        Map<String, Object> struct = (Map<String, Object>) after.get("struct");
+        struct.put("string_array", Arrays.asList("original_string_array0", "changed", "original_string_array2", "added"));
+        struct.remove("sub_text");
+        after.put("binary", new byte[]{1, 2});
+        before.put("binary", new byte[]{1, 2});
+
+        MapAccessor.Differ differ = new MapAccessor.Differ(Arrays.asList("$.struct.string_array[*]", "$.struct.sub_text", "$.text", "$.binary"));
+        assertEquals(new LinkedHashSet<>(Arrays.asList("$.struct.string_array[1]", "$.struct.string_array[3]", "$.struct.sub_text")),
+                differ.run(before, after));
+        assertTrue(differ.changed(before, after));
+        assertFalse(new MapAccessor.Differ(Arrays.asList("$.text", "$.binary", "$.struct.string_array[0]")).changed(before, after));
+        assertTrue(new MapAccessor.Differ(Collections.singletonList("$.struct")).changed(before, after));
+        assertTrue(new MapAccessor.Differ(Collections.singletonList("$.text")).changed(before, Collections.emptyMap()));
+        assertFalse(new MapAccessor.Differ(Collections.singletonList("$.unknown.foo")).changed(before, after));
+
+        // a null element or field differs from a missing one
+        Map<String, Object> withNull = new HashMap<>();
+        withNull.put("tags", Arrays.asList("a", null));
+        withNull.put("note", null);
+        Map<String, Object> shrunk = new HashMap<>();
+        shrunk.put("tags", Collections.singletonList("a"));
+        MapAccessor.Differ nulls = new MapAccessor.Differ(Arrays.asList("$.tags[*]", "$.note"));
+        assertEquals(new LinkedHashSet<>(Arrays.asList("$.tags[1]", "$.note")), nulls.run(withNull, shrunk));
+        assertTrue(nulls.changed(shrunk, withNull));
+        assertFalse(nulls.changed(withNull, new HashMap<>(withNull)));
+    }
+
+    @Test
+    public void testColumnTask() {
+        List<Map<String, Object>> batch = Arrays.asList(newMap(), newMap(), Collections.singletonMap("text", 1L));
+        List<String> paths = Arrays.asList("$.text", "$.struct.string_array[2]");
+
+        ColumnBatch columns = new MapAccessor.ColumnGetter(paths).run(batch);
+        ObjectColumn text = (ObjectColumn) columns.column("$.text");
+        assertArrayEquals(new Object[]{"original_text", "original_text", 1L}, text.toArray());
+        ObjectColumn element = (ObjectColumn) columns.column(1);
+        assertEquals("original_string_array2", element.get(1));
+        assertTrue(element.isNull(2));
+
+        text.set(1, "updated!");
+        element.set(2, "not written since the parent is missing");
+        List<Map<String, Object>> updated = new MapAccessor.ColumnUpdater(paths).run(batch, columns);
+        Map<String, Object> expected = newMap();
+        expected.put("text", "updated!");
+        assertEquals(Arrays.asList(newMap(), expected, Collections.singletonMap("text", 1L)), updated);
+        assertEquals(newMap(), batch.get(1)); // source should not be modified
+    }
+
+    @Test
+    public void testLenientGetTask() {
+        Map<String, Object> s = newMap();
+        s.put("mixed", Arrays.asList(
+                Collections.singletonMap("name", "a"),
+                "not a map",
+                null,
+                Collections.singletonMap("name", "b")));
+
+        Accessor.MismatchCounter counter = new Accessor.MismatchCounter();
+        assertEquals(new HashMap<String, Object>(), new MapAccessor.Getter("$.struct[0]", counter).run(s));
+        assertEquals(new HashMap<String, Object>(), new MapAccessor.Getter("$.struct.string_array.foo", counter).run(s));
+        assertEquals(2, counter.count());
+
+        counter.reset();
+        Map<String, Object> expected = new HashMap<String, Object>() {{
+            put("$.mixed[0].name", "a");
+            put("$.mixed[3].name", "b");
+        }};
+        assertEquals(expected, new MapAccessor.Getter("$.mixed[*].name", counter).run(s));
+        assertEquals(2, counter.count());
+        assertEquals(expected, new MapAccessor.Getter("$.mixed[*].name", Accessor.MismatchHandler.IGNORE).run(s));
+        assertEquals(2, new MapAccessor.Getter("$.mixed[*].name", Accessor.MismatchHandler.IGNORE).count(s));
+        assertTrue(new MapAccessor.Getter("$.mixed[*].name", Accessor.MismatchHandler.IGNORE).exists(s));
+        assertThrows(JsonPathException.class, () -> new MapAccessor.Getter("$.mixed[*].name").count(s));
+        assertThrows(JsonPathException.class, () -> new MapAccessor.Getter("$.mixed[*].name").run(s));
+
+        // the descriptions can be built after the traversal has moved on
+        List<Supplier<String>> descriptions = new ArrayList<>();
+        new MapAccessor.Getter("$.mixed[*].name", descriptions::add).run(s);
+        assertEquals(Arrays.asList(
+                "field '$.mixed[1].name' is not a Map but class java.lang.String",
+                "field '$.mixed[2].name' is not a Map but null"),
+                descriptions.stream().map(Supplier::get).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testLenientUpdateTask() {
+        Accessor.MismatchCounter counter = new Accessor.MismatchCounter();
+        // intermediate values which are not a Map should not be replaced
+        assertEquals(newMap(), new MapAccessor.Updater("$.text.foo", counter).run(newMap(), "updated!"));
+        assertEquals(newMap(), new MapAccessor.Updater("$.struct[0]", counter).run(newMap(), Collections.singletonMap("$.struct[0]", "updated!")));
+        assertEquals(2, counter.count());
+
+        Map<String, Object> org = newMap();
+        org.put("mixed", Arrays.asList(Collections.singletonMap("name", "a"), 1, null));
+        Map<String, Object> expected = newMap();
+        expected.put("mixed", Arrays.asList(Collections.singletonMap("name", "updated!"), 1, null));
+        assertEquals(expected, new MapAccessor.Updater("$.mixed[*].name", Accessor.MismatchHandler.IGNORE).run(org, "updated!"));
+    }
+
+    @Test
+    public void testSelectiveUpdateTask() {
+        List<Object> users = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            users.add(i % 2 == 0 ? new HashMap<>(Collections.singletonMap("name", "user" + i)) : "not a map");
+        }
+        Map<String, Object> org = Collections.singletonMap("users", users);
+
+        Map<String, Object> valueToUpdate = new HashMap<>();
+        valueToUpdate.put("$.users[4710].name", "updated!");
+        valueToUpdate.put("$.users[20000].name", "out of range");
+        valueToUpdate.put("$.users[2].id", "not matched by the path");
+        valueToUpdate.put("$.users[4].name", null);
+        // only the elements with an update are visited, so the other elements do not cause mismatches
+        Map<String, Object> actual = new MapAccessor.Updater("$.users[*].name").run(org, valueToUpdate);
+
+        List<Object> expected = new ArrayList<>(users);
+        expected.set(4710, Collections.singletonMap("name", "updated!"));
+        assertEquals(Collections.singletonMap("users", expected), actual);
+        assertEquals("user4710", ((Map<String, Object>) users.get(4710)).get("name")); // source should not be modified
+
+        assertEquals(org, new MapAccessor.Updater("$.users[1].name").run(org, Collections.singletonMap("$.users[4710].name", "updated!")));
+        assertThrows(JsonPathException.class, () -> new MapAccessor.Updater("$.users[*].name").run(org, Collections.singletonMap("$.users[1].name", "updated!")));
+    }
+
+    @Test
+    public void testTransformTask() {
+        Map<String, Object> expected = newMap();
+        List<String> arr = (List<String>) ((Map<String, Object>) expected.get("struct")).get("string_array");
+        arr.set(0, "ORIGINAL_STRING_ARRAY0");
+        arr.set(2, "ORIGINAL_STRING_ARRAY2");
+
+        MapAccessor.Updater updater = new MapAccessor.Updater("$.struct.string_array[*]");
+        TransformCache cache = new TransformCache(10, v -> v.equals("original_string_array1") ? null : ((String) v).toUpperCase());
+        assertEquals(expected, updater.transform(newMap(), cache));
+        assertEquals(expected, updater.transform(newMap(), cache));
+        assertEquals(3, cache.missCount());
+        assertEquals(3, cache.hitCount());
+    }
+
+    @Test
+    public void testStreamTask() {
+        Map<String, Object> m = new HashMap<>();
+        m.put("routes", Arrays.asList(
+                Collections.singletonMap("region", "us"),
+                Collections.singletonMap("region", "eu"),
+                "broken"));
+        MapAccessor.Getter getter = new MapAccessor.Getter("$.routes[*].region");
+        assertThrows(JsonPathException.class, () -> getter.run(m));
+
+        // the traversal stops before reaching the broken element
+        Match first = getter.stream(m).findFirst().get();
+        assertEquals("$.routes[0].region", first.path());
+        assertEquals("us", first.value());
+        assertEquals(Arrays.asList("us", "eu"), getter.stream(m).limit(2).map(Match::value).collect(Collectors.toList()));
+        assertTrue(getter.stream(m).anyMatch(match -> "eu".equals(match.value())));
+        assertThrows(JsonPathException.class, () -> getter.stream(m).anyMatch(match -> "jp".equals(match.value())));
+
+        Iterator<Match> iterator = getter.iterator(m);
+        assertEquals("$.routes[0].region", iterator.next().path());
+        assertEquals("$.routes[1].region", iterator.next().path());
+        assertThrows(JsonPathException.class, iterator::hasNext);
+
+        // a mismatch at the root is thrown by the traversal, not by iterator() or stream()
+        Iterator<Match> nullRoot = getter.iterator(null);
+        assertThrows(JsonPathException.class, nullRoot::hasNext);
+        Stream<Match> nullStream = getter.stream(null);
+        assertThrows(JsonPathException.class, nullStream::count);
+
+        // lenient getters skip the mismatch
+        Accessor.MismatchCounter counter = new Accessor.MismatchCounter();
+        assertEquals(2, new MapAccessor.Getter("$.routes[*].region", counter).stream(m).count());
+        assertEquals(1, counter.count());
+        assertFalse(new MapAccessor.Getter("$.unknown[*]").iterator(m).hasNext());
+        assertFalse(new MapAccessor.Getter("$.routes[*].region", counter).iterator(null).hasNext());
+        assertEquals(2, counter.count());
+    }
+
+    @Test
+    public void testPersistentUpdateTask() {
+        PersistentMap org = PersistentMap.of(newMap());
+        Map<String, Object> struct = (Map<String, Object>) org.get("struct");
+
+        MapAccessor.Updater updater = new MapAccessor.Updater("$.struct.struct_array[*].string_element");
+        Map<String, Object> actual = updater.transform(org, v -> ((String) v).toUpperCase());
+        assertTrue(actual instanceof PersistentMap);
+        Map<String, Object> expected = newMap();
+        for (Object elem : (List<Object>) ((Map<String, Object>) expected.get("struct")).get("struct_array")) {
+            ((Map<String, Object>) elem).compute("string_element", (k, v) -> ((String) v).toUpperCase());
+        }
+        assertEquals(expected, actual);
+        assertEquals(newMap(), org); // source should not be modified
+        // values which are not on the path are shared
+        Map<String, Object> updatedStruct = (Map<String, Object>) actual.get("struct");
+        assertSame(struct.get("string_array"), updatedStruct.get("string_array"));
+        assertThrows(UnsupportedOperationException.class, () -> ((List<Object>) updatedStruct.get("struct_array")).set(0, "x"));
+
+        // selected values
+        updater = new MapAccessor.Updater("$.struct.string_array[*]");
+        actual = updater.run(org, Collections.singletonMap("$.struct.string_array[1]", "new"));
+        expected = newMap();
+        ((Map<String, Object>) expected.get("struct")).put("string_array", Arrays.asList("original_string_array0", "new", "original_string_array2"));
+        assertEquals(expected, actual);
+        assertEquals(expected, new MapAccessor.Updater("$.struct.string_array[1]").run(org, (Object) "new"));
+
+        // nothing is matched
+        assertSame(org, updater.run(org, Collections.singletonMap("$.struct.string_array[5]", "new")));
+        assertSame(org, new MapAccessor.Updater("$.struct.unknown").run(org, (Object) "new"));
+        assertSame(org, new MapAccessor.Updater("$.struct").run(org, (Object) "new"));
+        assertThrows(JsonPathException.class, () -> new MapAccessor.Updater("$.text.foo").run(org, (Object) "new"));
+
+        // other accessors read it as a normal Map
+        assertEquals(new MapAccessor.Getter("$.struct.string_array[*]").run(newMap()), new MapAccessor.Getter("$.struct.string_array[*]").run(org));
+        expected = newMap();
+        expected.remove("text");
+        assertEquals(expected, new MapAccessor.Remover("$.text").run(org));
+    }
+
+    @Test
+    public void testLocateTask() {
+        Map<String, Object> org = newMap();
+        Locations<Map<String, Object>> locations = new MapAccessor.Updater("$.struct.struct_array[*].string_element").locate(org);
+        assertEquals(3, locations.size());
+        assertEquals("$.struct.struct_array[1].string_element", locations.get(1).path());
+        for (Locations.Location location : locations) {
+            location.set(((String) location.get()).toUpperCase());
+        }
+        assertEquals("ORIGINAL_ELEMENT1", locations.get(1).get());
+
+        Map<String, Object> expected = newMap();
+        for (Object elem : (List<Object>) ((Map<String, Object>) expected.get("struct")).get("struct_array")) {
+            ((Map<String, Object>) elem).compute("string_element", (k, v) -> ((String) v).toUpperCase());
+        }
+        assertEquals(expected, locations.record());
+        assertEquals(newMap(), org); // source should not be modified
+
+        // array elements
+        locations = new MapAccessor.Updater("$.struct.string_array[2]").locate(org);
+        assertEquals(1, locations.size());
+        assertEquals("original_string_array2", locations.get(0).get());
+        locations.get(0).set("new");
+        assertEquals("new", ((List<Object>) ((Map<String, Object>) locations.record().get("struct")).get("string_array")).get(2));
+
+        // objects and arrays are not located, the same as Updater
+        assertTrue(new MapAccessor.Updater("$.struct").locate(org).isEmpty());
+        assertThrows(JsonPathException.class, () -> new MapAccessor.Updater("$.text[0]").locate(org));
+    }
+
+    @Test
+    public void testRemoveTask() {
+        Map<String, Object> org = newMap();
+        Map<String, Object> actual = new MapAccessor.Remover("$.struct.struct_array[*].string_element").run(org);
+        Map<String, Object> sub = (Map<String, Object>) actual.get("struct");
+        assertEquals(Arrays.asList(new HashMap<>(), new HashMap<>(), new HashMap<>()), sub.get("struct_array"));
+        // values which are not on the path are shared, and the original is not modified
+        assertSame(((Map<String, Object>) org.get("struct")).get("string_array"), sub.get("string_array"));
+        assertEquals(newMap(), org);
+
+        Map<String, Object> expected = newMap();
+        expected.remove("text");
+        assertEquals(expected, new MapAccessor.Remover("$.text").run(org));
+
+        expected = newMap();
+        ((Map<String, Object>) expected.get("struct")).put("string_array", Arrays.asList("original_string_array0", "original_string_array2"));
+        assertEquals(expected, new MapAccessor.Remover("$.struct.string_array[1]").run(org));
+
+        // nothing is matched
+        assertSame(org, new MapAccessor.Remover("$.struct.unknown.foo").run(org));
+        assertSame(org, new MapAccessor.Remover("$.struct.string_array[5]").run(org));
+
+        assertThrows(JsonPathException.class, () -> new MapAccessor.Remover("$.text.foo").run(org));
+    }
+
+    @Test
+    public void testUpsertTask() {
+        Map<String, Object> org = newMap();
+        Map<String, Object> actual = new MapAccessor.Upserter("$.meta.routing.region").run(org, "eu");
+        assertEquals(Collections.singletonMap("routing", Collections.singletonMap("region", "eu")), actual.get("meta"));
+        assertSame(org.get("struct"), actual.get("struct"));
+        assertEquals(newMap(), org);
+
+        actual = new MapAccessor.Upserter("$.struct.struct_array[*].meta.index").run(org, new HashMap<String, Object>() {{
+            put("$.struct.struct_array[0].meta.index", 0);
+            put("$.struct.struct_array[2].meta.index", 2);
+        }});
+        assertEquals(new HashMap<String, Object>() {{
+            put("$.struct.struct_array[0].meta.index", 0);
+            put("$.struct.struct_array[2].meta.index", 2);
+        }}, new MapAccessor.Getter("$.struct.struct_array[*].meta.index").run(actual));
+        assertEquals("original_element1", new MapAccessor.Getter("$.struct.struct_array[1].string_element").run(actual).get("$.struct.struct_array[1].string_element"));
+        // only the elements which have a value to upsert are visited, and the others are shared
+        List<Object> orgArray = (List<Object>) ((Map<String, Object>) org.get("struct")).get("struct_array");
+        List<Object> actualArray = (List<Object>) ((Map<String, Object>) actual.get("struct")).get("struct_array");
+        assertSame(orgArray.get(1), actualArray.get(1));
+        Map<String, Object> sparse = new HashMap<>();
+        sparse.put("items", Arrays.asList(new HashMap<>(), "not a map", new HashMap<>()));
+        assertEquals(Collections.singletonMap("id", "x"), ((List<Object>) new MapAccessor.Upserter("$.items[*].id")
+                .run(sparse, Collections.singletonMap("$.items[2].id", "x")).get("items")).get(2));
+        assertSame(sparse, new MapAccessor.Upserter("$.items[*].id").run(sparse, Collections.singletonMap("$.unknown", "x")));
+
+        // existing values are replaced, and arrays are not created
+        Map<String, Object> expected = newMap();
+        expected.put("text", Collections.singletonMap("a", 1));
+        assertEquals(expected, new MapAccessor.Upserter("$.text").run(org, (Object) Collections.singletonMap("a", 1)));
+        assertSame(org, new MapAccessor.Upserter("$.unknown[*].foo").run(org, "foo"));
+        assertThrows(JsonPathException.class, () -> new MapAccessor.Upserter("$.text.foo").run(org, "foo"));
+        JsonPathException e = assertThrows(JsonPathException.class, () -> new MapAccessor.Upserter("$.struct.struct_array[1].string_element.foo").run(org, "foo"));
+        assertTrue(e.getMessage().contains("$.struct.struct_array[1].string_element.foo"), e.getMessage());
+        e = assertThrows(JsonPathException.class, () -> new MapAccessor.Remover("$.struct.sub_text[0]").run(org));
+        assertTrue(e.getMessage().contains("$.struct.sub_text"), e.getMessage());
+        // only the element at a fixed index is visited
+        Map<String, Object> mixed = new HashMap<>();
+        mixed.put("items", Arrays.asList("not a map", new HashMap<>()));
+        assertEquals(Collections.singletonMap("id", "x"), ((List<Object>) new MapAccessor.Upserter("$.items[1].id").run(mixed, "x").get("items")).get(1));
+    }
+
+    @Test
+    public void testMoveTask() {
+        Map<String, Object> org = newMap();
+        Map<String, Object> actual = new MapAccessor.Mover("$.struct.sub_text", "$.struct.sub.text").run(org);
+        Map<String, Object> sub = (Map<String, Object>) actual.get("struct");
+        assertFalse(sub.containsKey("sub_text"));
+        assertEquals(Collections.singletonMap("text", "original_sub_text"), sub.get("sub"));
+        assertSame(((Map<String, Object>) org.get("struct")).get("struct_array"), sub.get("struct_array"));
+        assertEquals(newMap(), org);
+
+        Map<String, Object> expected = newMap();
+        expected.put("renamed", expected.remove("struct"));
+        assertEquals(expected, new MapAccessor.Mover("$.struct", "$.renamed").run(org));
+
+        // the target is overwritten
+        expected = newMap();
+        expected.put("text", ((Map<String, Object>) expected.get("struct")).remove("sub_text"));
+        assertEquals(expected, new MapAccessor.Mover("$.struct.sub_text", "$.text").run(org));
+
+        // nothing is moved
+        assertSame(org, new MapAccessor.Mover("$.unknown", "$.foo").run(org));
+
+        assertThrows(JsonPathException.class, () -> new MapAccessor.Mover("$.struct.string_array[0]", "$.foo"));
+        assertThrows(JsonPathException.class, () -> new MapAccessor.Mover("$.struct", "$.struct.foo"));
+        assertThrows(JsonPathException.class, () -> new MapAccessor.Mover("$.text.foo", "$.foo").run(org));
+    }
+
+    @Test
+    public void testProjectTask() {
+        Map<String, Object> org = newMap();
+        org.put("noise", Arrays.asList(1, 2));
+        Map<String, Object> actual = new MapAccessor.Projector(Arrays.asList("$.text", "$.struct.string_array", "$.struct.struct_array[1].string_element", "$.unknown.foo")).run(org);
+        Map<String, Object> expected = newMap();
+        ((Map<String, Object>) expected.get("struct")).remove("sub_text");
+        assertEquals(expected, actual);
+        // the selected subtrees are shared
+        assertSame(((Map<String, Object>) org.get("struct")).get("string_array"), ((Map<String, Object>) actual.get("struct")).get("string_array"));
+
+        // paths which do not fit the shape of the value keep the value
+        assertEquals(Collections.singletonMap("text", "original_text"), new MapAccessor.Projector(Collections.singletonList("$.text.foo")).run(org));
+    }
+
+    @Test
+    public void testResultBuffer() {
+        ResultBuffer buffer = new ResultBuffer();
+        new MapAccessor.Getter("$.struct.struct_array[*].string_element").run(newMap(), buffer);
+        assertEquals(3, buffer.size());
+        assertEquals("$.struct.struct_array[1].string_element", buffer.path(1));
+        assertEquals("original_element2", buffer.get("$.struct.struct_array[2].string_element"));
+        assertNull(buffer.get("$.struct.struct_array[3].string_element"));
+        assertNull(buffer.get("$.struct.struct_array[x].string_element"));
+        assertNull(buffer.get("$.struct.struct_array[1].string_element.foo"));
+        assertThrows(IndexOutOfBoundsException.class, () -> buffer.value(3));
+
+        // the buffer can be shared by different getters
+        new MapAccessor.Getter("$.text").run(newMap(), buffer);
+        assertEquals(Collections.singletonMap("$.text", "original_text"), buffer.toMap());
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+    }
+}
@@ -0,0 +1,215 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import org.apache.kafka.connect.data.Date;
+import org.apache.kafka.connect.data.Decimal;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.data.Time;
+import org.apache.kafka.connect.data.Timestamp;
+import org.apache.kafka.connect.json.JsonConverter;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PathHasherTest {
+    private static final Schema itemSchema = SchemaBuilder.struct()
+            .field("sku", Schema.STRING_SCHEMA)
+            .field("qty", Schema.INT32_SCHEMA)
+            .build();
+    private static final Schema orderSchema = SchemaBuilder.struct()
+            .field("id", Schema.INT64_SCHEMA)
+            .field("customer", Schema.OPTIONAL_STRING_SCHEMA)
+            .field("paid", Schema.BOOLEAN_SCHEMA)
+            .field("items", SchemaBuilder.array(itemSchema).build())
+            .build();
+
+    private static Struct newStruct(String customer, int qty) {
+        return new Struct(orderSchema)
+                .put("id", 100L)
+                .put("customer", customer)
+                .put("paid", true)
+                .put("items", Arrays.asList(
+                        new Struct(itemSchema).put("sku", "a-1").put("qty", qty),
+                        new Struct(itemSchema).put("sku", "\u00e9\u3042").put("qty", 2)));
+    }
+
+    private static Map<String, Object> newMap(String customer, int qty) {
+        Map<String, Object> item0 = new LinkedHashMap<>();
+        // keys are in a different order from the fields of the Struct
+        item0.put("qty", (long) qty);
+        item0.put("sku", "a-1");
+        Map<String, Object> item1 = new HashMap<>();
+        item1.put("sku", "\u00e9\u3042");
+        item1.put("qty", 2L);
+        Map<String, Object> m = new HashMap<>();
+        m.put("id", 100L);
+        if (customer != null) {
+            m.put("customer", customer);
+        }
+        m.put("paid", true);
+        m.put("items", Arrays.asList(item0, item1));
+        return m;
+    }
+
+    @Test
+    public void testMurmur3() {
+        assertArrayEquals(new long[]{0L, 0L}, new Murmur3(0).finish());
+        Murmur3 fox = new Murmur3(0);
+        for (byte b : "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.UTF_8)) {
+            fox.putByte(b);
+        }
+        assertArrayEquals(new long[]{0xe34bbc7bbc071b6cL, 0x7a433ca9c49a9347L}, fox.finish());
+
+        // streamed UTF-8 is the same as the encoded bytes
+        String text = "caf\u00e9 \u3042 \ud83d\ude00 and some more text";
+        Murmur3 bytes = new Murmur3(1);
+        for (byte b : text.getBytes(StandardCharsets.UTF_8)) {
+            bytes.putByte(b);
+        }
+        Murmur3 utf8 = new Murmur3(1);
+        utf8.putUtf8(text);
+        assertArrayEquals(bytes.finish(), utf8.finish());
+    }
+
+    @Test
+    public void testHashTask() {
+        List<String> paths = Arrays.asList("$.id", "$.customer", "$.items[*]");
+        PathHasher hasher = new PathHasher(paths);
+
+        // same logical values in Struct and Map form have the same hash
+        assertEquals(hasher.hash64(newStruct("alice", 1)), hasher.hash64(newMap("alice", 1)));
+        assertArrayEquals(hasher.hash128(newStruct("alice", 1)), hasher.hash128(newMap("alice", 1)));
+        assertEquals(hasher.hash64(newStruct(null, 1)), hasher.hash64(newMap(null, 1)));
+        assertEquals(hasher.hash128(newStruct("alice", 1))[0], hasher.hash64(newStruct("alice", 1)));
+
+        // hashes differ if a matched value differs, but not if an unmatched value differs
+        assertNotEquals(hasher.hash64(newStruct("alice", 1)), hasher.hash64(newStruct("bob", 1)));
+        assertNotEquals(hasher.hash64(newStruct("alice", 1)), hasher.hash64(newStruct("alice", 3)));
+        assertNotEquals(hasher.hash64(newStruct("alice", 1)), hasher.hash64(newStruct(null, 1)));
+        Struct unpaid = newStruct("alice", 1).put("paid", false);
+        assertEquals(hasher.hash64(newStruct("alice", 1)), hasher.hash64(unpaid));
+
+        // the values are not shifted between the paths
+        Map<String, Object> ab = new HashMap<>();
+        ab.put("a", "x");
+        Map<String, Object> ba = new HashMap<>();
+        ba.put("b", "x");
+        PathHasher two = new PathHasher(Arrays.asList("$.a", "$.b"));
+        assertNotEquals(two.hash64(ab), two.hash64(ba));
+
+        // the seed changes the hash
+        PathHasher seeded = new PathHasher(paths, 42L, null);
+        assertNotEquals(hasher.hash64(newMap("alice", 1)), seeded.hash64(newMap("alice", 1)));
+        assertEquals(seeded.hash64(newStruct("alice", 1)), seeded.hash64(newMap("alice", 1)));
+
+        // a mismatch is thrown unless a handler is given
+        Map<String, Object> broken = newMap("alice", 1);
+        broken.put("items", "none");
+        assertThrows(JsonPathException.class, () -> hasher.hash64(broken));
+        Accessor.MismatchCounter counter = new Accessor.MismatchCounter();
+        new PathHasher(paths, 0L, counter).hash64(broken);
+        assertEquals(1, counter.count());
+    }
+
+    @Test
+    public void testHashLogicalTypes() {
+        Schema decimalSchema = Decimal.schema(2);
+        Schema schema = SchemaBuilder.struct()
+                .field("date", Date.SCHEMA)
+                .field("time", Time.SCHEMA)
+                .field("timestamp", Timestamp.SCHEMA)
+                .field("decimal", decimalSchema)
+                .field("ratio", Schema.FLOAT32_SCHEMA)
+                .field("ratios", SchemaBuilder.array(Schema.FLOAT32_SCHEMA).build())
+                .field("dates", SchemaBuilder.map(Schema.STRING_SCHEMA, Date.SCHEMA).build())
+                .build();
+        long day = 86400000L;
+        BigDecimal price = new BigDecimal("12.34");
+        Struct struct = new Struct(schema)
+                .put("date", new java.util.Date(3 * day))
+                .put("time", new java.util.Date(5000L))
+                .put("timestamp", new java.util.Date(3 * day + 5000L))
+                .put("decimal", price)
+                .put("ratio", 1.1f)
+                .put("ratios", Arrays.asList(0.1f, 2.5f))
+                .put("dates", Collections.singletonMap("first", new java.util.Date(day)));
+
+        // the values as JsonConverter writes them and reads them back without a schema
+        Map<String, Object> map = new HashMap<>();
+        map.put("date", 3L);
+        map.put("time", 5000L);
+        map.put("timestamp", 3 * day + 5000L);
+        map.put("decimal", Base64.getEncoder().encodeToString(price.unscaledValue().toByteArray()));
+        map.put("ratio", 1.1);
+        map.put("ratios", Arrays.asList(0.1, 2.5));
+        map.put("dates", Collections.singletonMap("first", 1L));
+
+        for (String path : Arrays.asList("$.date", "$.time", "$.timestamp", "$.decimal", "$.ratio", "$.ratios", "$.ratios[1]", "$.dates", "$")) {
+            PathHasher hasher = new PathHasher(Collections.singletonList(path));
+            assertArrayEquals(hasher.hash128(struct), hasher.hash128(map), path);
+        }
+
+        // a Date is not hashed as the epoch milliseconds, and a Float is not widened bit by bit
+        PathHasher date = new PathHasher(Collections.singletonList("$.date"));
+        assertNotEquals(date.hash64(struct), date.hash64(Collections.singletonMap("date", 3 * day)));
+        PathHasher ratio = new PathHasher(Collections.singletonList("$.ratio"));
+        assertNotEquals(ratio.hash64(struct), ratio.hash64(Collections.singletonMap("ratio", (double) 1.1f)));
+
+        // without a schema, java.util.Date is a Timestamp and BigDecimal is a Decimal of its own scale
+        Map<String, Object> logical = new HashMap<>();
+        logical.put("timestamp", new java.util.Date(3 * day + 5000L));
+        logical.put("decimal", price);
+        PathHasher both = new PathHasher(Arrays.asList("$.timestamp", "$.decimal"));
+        assertEquals(both.hash64(map), both.hash64(logical));
+    }
+
+    @Test
+    public void testHashJsonConverterRoundTrip() {
+        Schema nestedSchema = SchemaBuilder.struct()
+                .field("b", Schema.BYTES_SCHEMA)
+                .field("f", Schema.FLOAT32_SCHEMA)
+                .build();
+        Schema schema = SchemaBuilder.struct()
+                .field("b", Schema.BYTES_SCHEMA)
+                .field("d", Decimal.schema(2))
+                .field("f", Schema.FLOAT32_SCHEMA)
+                .field("i", Schema.INT16_SCHEMA)
+                .field("s", Schema.OPTIONAL_STRING_SCHEMA)
+                .field("date", Date.SCHEMA)
+                .field("nested", nestedSchema)
+                .field("list", SchemaBuilder.array(Schema.BYTES_SCHEMA).build())
+                .build();
+        for (int length = 0; length < 5; length++) {
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = (byte) (0xfb + i);
+            }
+            Struct struct = new Struct(schema)
+                    .put("b", bytes)
+                    .put("d", new BigDecimal("-1.23").movePointLeft(length).setScale(2, RoundingMode.DOWN))
+                    .put("f", 1.1f)
+                    .put("i", (short) 7)
+                    .put("date", new java.util.Date(86400000L * length))
+                    .put("nested", new Struct(nestedSchema).put("b", bytes).put("f", 0.1f))
+                    .put("list", Arrays.asList(bytes, new byte[]{1, 2}));
+
+            JsonConverter converter = new JsonConverter();
+            converter.configure(Collections.singletonMap("schemas.enable", "false"), false);
+            Object map = converter.toConnectData("topic", converter.fromConnectData("topic", schema, struct)).value();
+            // bytes and decimals are read back as base64 strings
+            assertTrue(((Map<?, ?>) map).get("b") instanceof String);
+            assertTrue(((Map<?, ?>) map).get("d") instanceof String);
+
+            for (String path : Arrays.asList("$.b", "$.d", "$.f", "$.i", "$.s", "$.date", "$.nested", "$.list", "$.list[1]", "$")) {
+                PathHasher hasher = new PathHasher(Collections.singletonList(path));
+                assertArrayEquals(hasher.hash128(struct), hasher.hash128(map), path + " of " + length + " bytes");
+            }
+        }
+    }
+}
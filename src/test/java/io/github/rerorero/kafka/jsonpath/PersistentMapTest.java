@@ -0,0 +1,96 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentMapTest {
+    @Test
+    public void testPlusMinus() {
+        Map<String, Object> expected = new HashMap<>();
+        PersistentMap map = PersistentMap.empty();
+        List<PersistentMap> versions = new ArrayList<>();
+        List<Map<String, Object>> snapshots = new ArrayList<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 5000; i++) {
+            String key = "k" + random.nextInt(2000);
+            if (random.nextInt(4) == 0) {
+                expected.remove(key);
+                map = map.minus(key);
+            } else {
+                expected.put(key, i);
+                map = map.plus(key, i);
+            }
+            if (i % 1000 == 0) {
+                versions.add(map);
+                snapshots.add(new HashMap<>(expected));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        assertEquals(expected, map);
+        assertEquals(map, expected);
+        assertEquals(expected.hashCode(), map.hashCode());
+        assertEquals(expected.keySet(), map.keySet());
+        for (String key : expected.keySet()) {
+            assertEquals(expected.get(key), map.get(key));
+            assertTrue(map.containsKey(key));
+        }
+        assertNull(map.get("missing"));
+        assertNull(map.get(null));
+        assertFalse(map.containsKey(1));
+
+        // older versions are not modified
+        assertEquals(snapshots, versions);
+
+        for (String key : expected.keySet()) {
+            map = map.minus(key);
+        }
+        assertTrue(map.isEmpty());
+        assertSame(PersistentMap.empty(), map);
+    }
+
+    @Test
+    public void testCollision() {
+        // "Aa" and "BB" have the same hash code
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        PersistentMap map = PersistentMap.empty().plus("Aa", 1).plus("BB", 2).plus("C#", 3);
+        assertEquals(3, map.size());
+        assertEquals(1, map.get("Aa"));
+        assertEquals(2, map.get("BB"));
+        assertEquals(3, map.get("C#"));
+        assertEquals(3, map.plus("BB", 20).size());
+        assertEquals(20, map.plus("BB", 20).get("BB"));
+        assertEquals(1, map.plus("BB", 20).get("Aa"));
+
+        map = map.minus("Aa");
+        assertEquals(2, map.size());
+        assertNull(map.get("Aa"));
+        assertEquals(2, map.get("BB"));
+        assertEquals(new HashSet<>(Arrays.asList("BB", "C#")), map.keySet());
+        assertTrue(map.minus("BB").minus("C#").isEmpty());
+    }
+
+    @Test
+    public void testOf() {
+        Map<String, Object> nested = new HashMap<>();
+        nested.put("x", 1L);
+        nested.put("none", null);
+        Map<String, Object> org = new HashMap<>();
+        org.put("nested", nested);
+        org.put("list", Arrays.asList(nested, null, "s"));
+
+        PersistentMap map = PersistentMap.of(org);
+        assertSame(map, PersistentMap.of(map));
+        assertTrue(map.get("nested") instanceof PersistentMap);
+        assertEquals(Collections.singletonMap("x", 1L), map.get("nested"));
+        assertEquals(Arrays.asList(Collections.singletonMap("x", 1L), null, "s"), map.get("list"));
+
+        // the same value keeps the same instance
+        assertSame(map, map.plus("nested", map.get("nested")));
+        assertThrows(UnsupportedOperationException.class, () -> map.put("a", 1));
+        assertThrows(UnsupportedOperationException.class, () -> ((List<Object>) map.get("list")).add(1));
+        assertThrows(NullPointerException.class, () -> map.plus(null, 1));
+    }
+}
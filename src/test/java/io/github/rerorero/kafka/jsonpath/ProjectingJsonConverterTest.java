@@ -0,0 +1,184 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import org.apache.kafka.connect.data.Decimal;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaAndValue;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.data.Timestamp;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.json.JsonConverter;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProjectingJsonConverterTest {
+    static final Schema ELEMENT_SCHEMA = SchemaBuilder.struct()
+            .field("id", Schema.INT32_SCHEMA)
+            .field("name", Schema.STRING_SCHEMA)
+            .field("blob", Schema.OPTIONAL_BYTES_SCHEMA)
+            .build();
+    static final Schema SUB_SCHEMA = SchemaBuilder.struct()
+            .field("amount", Decimal.builder(2).build())
+            .field("at", Timestamp.SCHEMA)
+            .field("ratio", Schema.FLOAT32_SCHEMA)
+            .field("tags", SchemaBuilder.map(Schema.STRING_SCHEMA, Schema.INT64_SCHEMA).build())
+            .build();
+    static final Schema SCHEMA = SchemaBuilder.struct().name("record")
+            .field("text", Schema.STRING_SCHEMA)
+            .field("small", Schema.INT8_SCHEMA)
+            .field("flag", SchemaBuilder.bool().defaultValue(true).build())
+            .field("sub", SUB_SCHEMA)
+            .field("items", SchemaBuilder.array(ELEMENT_SCHEMA).build())
+            .field("optional_struct", SchemaBuilder.struct().optional().field("elem", Schema.STRING_SCHEMA).build())
+            .field("numbers", SchemaBuilder.map(Schema.INT32_SCHEMA, Schema.STRING_SCHEMA).build())
+            .build();
+
+    private static Struct newStruct() {
+        return new Struct(SCHEMA)
+                .put("text", "original_text")
+                .put("small", (byte) 3)
+                .put("sub", new Struct(SUB_SCHEMA)
+                        .put("amount", new BigDecimal("12.34"))
+                        .put("at", new java.util.Date(1620000000000L))
+                        .put("ratio", 0.5f)
+                        .put("tags", Collections.singletonMap("a", 1L)))
+                .put("items", Arrays.asList(
+                        new Struct(ELEMENT_SCHEMA).put("id", 0).put("name", "zero").put("blob", new byte[]{1, 2, 3}),
+                        new Struct(ELEMENT_SCHEMA).put("id", 1).put("name", "one")))
+                .put("numbers", Collections.singletonMap(1, "one"));
+    }
+
+    private static final List<String> PATHS = Arrays.asList(
+            "$.text", "$.flag", "$.sub.amount", "$.sub.at", "$.items[*].name", "$.items[1].id", "$.optional_struct.elem");
+
+    private static Map<String, Object> configs(boolean schemasEnabled) {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(ProjectingJsonConverter.PATHS_CONFIG, String.join(",", PATHS));
+        configs.put(ProjectingJsonConverter.SCHEMAS_ENABLE_CONFIG, schemasEnabled);
+        return configs;
+    }
+
+    @Test
+    public void testToConnectDataWithSchema() {
+        JsonConverter jsonConverter = new JsonConverter();
+        jsonConverter.configure(configs(true), false);
+        ProjectingJsonConverter converter = new ProjectingJsonConverter();
+        converter.configure(configs(true), false);
+
+        byte[] json = jsonConverter.fromConnectData("topic", SCHEMA, newStruct());
+        Struct full = (Struct) jsonConverter.toConnectData("topic", json).value();
+        SchemaAndValue projected = converter.toConnectData("topic", json);
+        Struct actual = (Struct) projected.value();
+        actual.validate();
+
+        for (String path : PATHS) {
+            assertEquals(new StructAccessor.Getter(path).run(full), new StructAccessor.Getter(path).run(actual), path);
+        }
+        assertEquals(Arrays.asList("text", "flag", "sub", "items", "optional_struct"), fieldNames(projected.schema()));
+        assertEquals(Arrays.asList("amount", "at"), fieldNames(projected.schema().field("sub").schema()));
+        assertEquals(Arrays.asList("id", "name"), fieldNames(projected.schema().field("items").schema().valueSchema()));
+        assertEquals("record", projected.schema().name());
+
+        // the projected schema is cached
+        assertSame(projected.schema(), converter.toConnectData("topic", json).schema());
+    }
+
+    @Test
+    public void testToConnectDataWithoutSchema() {
+        JsonConverter jsonConverter = new JsonConverter();
+        jsonConverter.configure(configs(false), false);
+        ProjectingJsonConverter converter = new ProjectingJsonConverter();
+        converter.configure(configs(false), false);
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("text", "original_text");
+        data.put("noise", Arrays.asList(1, 2, Collections.singletonMap("x", "y")));
+        data.put("items", Arrays.asList(
+                new HashMap<String, Object>() {{
+                    put("id", 0);
+                    put("name", "zero");
+                    put("blob", "...");
+                }},
+                new HashMap<String, Object>() {{
+                    put("id", 1);
+                    put("name", "one");
+                }}));
+        data.put("sub", Collections.singletonMap("amount", 1.5));
+
+        byte[] json = jsonConverter.fromConnectData("topic", null, data);
+        Map<String, Object> full = (Map<String, Object>) jsonConverter.toConnectData("topic", json).value();
+        SchemaAndValue projected = converter.toConnectData("topic", json);
+        assertNull(projected.schema());
+        Map<String, Object> actual = (Map<String, Object>) projected.value();
+
+        for (String path : PATHS) {
+            assertEquals(new MapAccessor.Getter(path).run(full), new MapAccessor.Getter(path).run(actual), path);
+        }
+        assertEquals(new HashSet<>(Arrays.asList("text", "items", "sub")), actual.keySet());
+        assertEquals(new HashMap<String, Object>() {{
+            put("id", 0L);
+            put("name", "zero");
+        }}, ((List<Object>) actual.get("items")).get(0));
+    }
+
+    @Test
+    public void testToConnectDataPersistent() {
+        JsonConverter jsonConverter = new JsonConverter();
+        jsonConverter.configure(configs(false), false);
+        ProjectingJsonConverter converter = new ProjectingJsonConverter();
+        converter.configure(configs(false), false);
+        ProjectingJsonConverter persistent = new ProjectingJsonConverter();
+        Map<String, Object> configs = configs(false);
+        configs.put(ProjectingJsonConverter.PERSISTENT_MAPS_CONFIG, true);
+        persistent.configure(configs, false);
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("text", "original_text");
+        data.put("items", Collections.singletonList(Collections.singletonMap("name", "zero")));
+        byte[] json = jsonConverter.fromConnectData("topic", null, data);
+
+        Object actual = persistent.toConnectData("topic", json).value();
+        assertTrue(actual instanceof PersistentMap);
+        assertTrue(((List<Object>) ((Map<String, Object>) actual).get("items")).get(0) instanceof PersistentMap);
+        assertEquals(converter.toConnectData("topic", json).value(), actual);
+    }
+
+    @Test
+    public void testEnvelopeWithNullSchema() {
+        ProjectingJsonConverter converter = new ProjectingJsonConverter();
+        converter.configure(configs(true), false);
+        byte[] json = "{\"payload\": {\"text\": \"t\", \"other\": 1}, \"schema\": null}".getBytes(StandardCharsets.UTF_8);
+        assertEquals(new SchemaAndValue(null, Collections.singletonMap("text", "t")), converter.toConnectData("topic", json));
+        assertEquals(SchemaAndValue.NULL, converter.toConnectData("topic", null));
+    }
+
+    @Test
+    public void testFromConnectDataIsDelegated() {
+        JsonConverter jsonConverter = new JsonConverter();
+        jsonConverter.configure(configs(true), false);
+        ProjectingJsonConverter converter = new ProjectingJsonConverter();
+        converter.configure(configs(true), false);
+        assertArrayEquals(jsonConverter.fromConnectData("topic", SCHEMA, newStruct()), converter.fromConnectData("topic", SCHEMA, newStruct()));
+    }
+
+    @Test
+    public void testToConnectDataFailure() {
+        ProjectingJsonConverter converter = new ProjectingJsonConverter();
+        converter.configure(configs(true), false);
+        assertThrows(DataException.class, () -> converter.toConnectData("topic", "{\"payload\": {}}".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(DataException.class, () -> converter.toConnectData("topic", "{\"schema\": null, \"payload\": {\"text\": \"".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(DataException.class, () -> converter.toConnectData("topic",
+                "{\"schema\": {\"type\": \"struct\", \"fields\": [{\"field\": \"text\", \"type\": \"string\"}]}, \"payload\": {\"text\": 1}}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static List<String> fieldNames(Schema schema) {
+        List<String> names = new ArrayList<>();
+        schema.fields().forEach(f -> names.add(f.name()));
+        return names;
+    }
+}
@@ -0,0 +1,72 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.header.ConnectHeaders;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordAccessorTest {
+    static final Schema KEY_SCHEMA = SchemaBuilder.struct()
+            .field("id", Schema.INT64_SCHEMA)
+            .build();
+
+    private static SinkRecord newRecord() {
+        Map<String, Object> value = new HashMap<>();
+        value.put("text", "original_text");
+        value.put("array", Arrays.asList("a", "b"));
+        ConnectHeaders headers = new ConnectHeaders();
+        headers.addString("plain", "plain_header");
+        headers.addStruct("trace", new Struct(KEY_SCHEMA).put("id", 2L));
+        return new SinkRecord("topic", 0, KEY_SCHEMA, new Struct(KEY_SCHEMA).put("id", 1L), null, value, 0L,
+                null, null, headers);
+    }
+
+    private static Stream<Arguments> testGetTaskArguments() {
+        return Stream.of(
+                Arguments.of("$key.id", Collections.singletonMap("$key.id", 1L)),
+                Arguments.of("$key", Collections.singletonMap("$key", new Struct(KEY_SCHEMA).put("id", 1L))),
+                Arguments.of("$value.text", Collections.singletonMap("$value.text", "original_text")),
+                Arguments.of("$value['text']", Collections.singletonMap("$value.text", "original_text")),
+                Arguments.of("$value.array[*]", new HashMap<String, Object>() {{
+                    put("$value.array[0]", "a");
+                    put("$value.array[1]", "b");
+                }}),
+                Arguments.of("$headers['trace'].id", Collections.singletonMap("$headers['trace'].id", 2L)),
+                Arguments.of("$headers.trace.id", Collections.singletonMap("$headers.trace.id", 2L)),
+                Arguments.of("$headers.plain", Collections.singletonMap("$headers.plain", "plain_header")),
+                Arguments.of("$headers['unknown'].id", Collections.emptyMap()),
+                Arguments.of("$value.unknown", Collections.emptyMap())
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("testGetTaskArguments")
+    public void testGetTask(String jsonPath, Map<String, Object> expected) {
+        RecordAccessor.Getter<SinkRecord> getter = new RecordAccessor.Getter<>(jsonPath);
+        assertEquals(expected, getter.run(newRecord()));
+        assertEquals(expected.size(), getter.count(newRecord()));
+        assertEquals(!expected.isEmpty(), getter.exists(newRecord()));
+    }
+
+    @Test
+    public void testGetTaskFailure() {
+        assertThrows(JsonPathException.class, () -> new RecordAccessor.Getter<SinkRecord>("$.value"));
+        assertThrows(JsonPathException.class, () -> new RecordAccessor.Getter<SinkRecord>("$topic.foo"));
+        assertThrows(JsonPathException.class, () -> new RecordAccessor.Getter<SinkRecord>("$value..foo"));
+        assertThrows(JsonPathException.class, () -> new RecordAccessor.Getter<SinkRecord>("$headers.plain.foo").run(newRecord()));
+
+        Accessor.MismatchCounter counter = new Accessor.MismatchCounter();
+        assertEquals(Collections.emptyMap(), new RecordAccessor.Getter<SinkRecord>("$headers.plain.foo", counter).run(newRecord()));
+        assertEquals(1, counter.count());
+    }
+}
@@ -0,0 +1,122 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordCopierTest {
+    private static final Schema POINT_SCHEMA = SchemaBuilder.struct()
+            .field("x", Schema.INT32_SCHEMA)
+            .field("label", Schema.OPTIONAL_STRING_SCHEMA)
+            .build();
+    private static final Schema SCHEMA = SchemaBuilder.struct()
+            .field("name", Schema.STRING_SCHEMA)
+            .field("point", POINT_SCHEMA)
+            .field("points", SchemaBuilder.array(POINT_SCHEMA).build())
+            .field("matrix", SchemaBuilder.array(SchemaBuilder.array(Schema.OPTIONAL_INT64_SCHEMA).build()).build())
+            .field("defaulted", SchemaBuilder.int32().defaultValue(7).build())
+            .field("tags", SchemaBuilder.map(Schema.STRING_SCHEMA, Schema.STRING_SCHEMA).optional().build())
+            .build();
+
+    private static Struct newStruct() {
+        return new Struct(SCHEMA)
+                .put("name", "n")
+                .put("point", new Struct(POINT_SCHEMA).put("x", 1))
+                .put("points", Arrays.asList(new Struct(POINT_SCHEMA).put("x", 2).put("label", "a")))
+                .put("matrix", Arrays.asList(Arrays.asList(1L, null), Collections.emptyList()));
+    }
+
+    @Test
+    public void testCopyStruct() {
+        Struct org = newStruct();
+        Struct copy = RecordCopier.copyStruct(org);
+        Struct expected = newStruct().put("defaulted", 7); // default values are materialized
+        assertEquals(expected, copy);
+        assertNotSame(org.get("point"), copy.get("point"));
+        assertNotSame(org.getArray("points").get(0), copy.getArray("points").get(0));
+        assertNotSame(org.getArray("matrix").get(0), copy.getArray("matrix").get(0));
+        assertSame(org.getString("name"), copy.getString("name"));
+        copy.validate();
+
+        // the copy is independent of the original
+        copy.getStruct("point").put("x", 100);
+        ((List<Object>) copy.getArray("matrix").get(0)).set(0, 100L);
+        assertEquals(newStruct(), org);
+
+        // the plan is reused for the schema
+        assertEquals(expected, RecordCopier.copyStruct(newStruct()));
+
+        Struct withMap = newStruct().put("tags", Collections.singletonMap("k", "v"));
+        JsonPathException e = assertThrows(JsonPathException.class, () -> RecordCopier.copyStruct(withMap));
+        assertTrue(e.getMessage().contains("tags"));
+    }
+
+    @Test
+    public void testCopyNestedStruct() {
+        // nested copies have to be complete before they are validated by their parents
+        Schema middle = SchemaBuilder.struct()
+                .field("points", SchemaBuilder.array(POINT_SCHEMA).build())
+                .field("point", POINT_SCHEMA)
+                .build();
+        Schema outer = SchemaBuilder.struct()
+                .field("middles", SchemaBuilder.array(middle).build())
+                .build();
+        Struct org = new Struct(outer).put("middles", Arrays.asList(
+                new Struct(middle)
+                        .put("points", Arrays.asList(new Struct(POINT_SCHEMA).put("x", 1), new Struct(POINT_SCHEMA).put("x", 2)))
+                        .put("point", new Struct(POINT_SCHEMA).put("x", 3))));
+        Struct copy = RecordCopier.copyStruct(org);
+        assertEquals(org, copy);
+        assertNotSame(org.getArray("middles").get(0), copy.getArray("middles").get(0));
+        copy.validate();
+    }
+
+    @Test
+    public void testCopyMap() {
+        Map<String, Object> point = new HashMap<>();
+        point.put("x", 1L);
+        point.put("label", null);
+        Map<String, Object> org = new HashMap<>();
+        org.put("name", "n");
+        org.put("point", point);
+        org.put("points", Arrays.asList(point, null, "s"));
+
+        Map<String, Object> copy = RecordCopier.copyMap(org);
+        Map<String, Object> expectedPoint = Collections.singletonMap("x", 1L); // null values are dropped
+        assertEquals("n", copy.get("name"));
+        assertEquals(expectedPoint, copy.get("point"));
+        assertEquals(Arrays.asList(expectedPoint, null, "s"), copy.get("points"));
+        assertNotSame(point, copy.get("point"));
+        assertNotSame(point, ((List<Object>) copy.get("points")).get(0));
+
+        org.put("date", new Date());
+        assertThrows(JsonPathException.class, () -> RecordCopier.copyMap(org));
+    }
+
+    @Test
+    public void testCopyDeepMap() {
+        // deeper than the recursion would allow
+        Map<String, Object> org = new HashMap<>();
+        Map<String, Object> cur = org;
+        for (int i = 0; i < 100_000; i++) {
+            Map<String, Object> child = new HashMap<>();
+            cur.put("child", Collections.singletonList(child));
+            cur = child;
+        }
+        cur.put("leaf", "end");
+
+        Object node = RecordCopier.copyMap(org);
+        int depth = 0;
+        while (((Map<String, Object>) node).containsKey("child")) {
+            node = ((List<Object>) ((Map<String, Object>) node).get("child")).get(0);
+            depth++;
+        }
+        assertEquals(100_000, depth);
+        assertEquals("end", ((Map<String, Object>) node).get("leaf"));
+    }
+}
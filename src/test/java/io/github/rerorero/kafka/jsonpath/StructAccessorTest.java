@@ -1,5 +1,6 @@
 package io.github.rerorero.kafka.jsonpath;
 
+import org.apache.kafka.connect.data.Field;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.connect.data.SchemaBuilder;
 import org.apache.kafka.connect.data.Struct;
@@ -9,6 +10,7 @@ import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
 import java.util.*;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -110,6 +112,26 @@ class StructAccessorTest {
         Map<String, Object> actual = getter.run(newStruct());
         assertEquals(expected, actual);
         assertEquals(expected, getter.run(newStruct())); // Getter should be idempotent
+        assertEquals(expected.size(), getter.count(newStruct()));
+        assertEquals(!expected.isEmpty(), getter.exists(newStruct()));
+
+        Map<String, Object> streamed = new HashMap<>();
+        getter.stream(newStruct()).forEach(match -> streamed.put(match.path(), match.value()));
+        assertEquals(expected, streamed);
+        Iterator<Match> iterator = getter.iterator(newStruct());
+        for (int i = 0; i < expected.size(); i++) {
+            Match match = iterator.next();
+            assertEquals(expected.get(match.path()), match.value());
+        }
+        assertFalse(iterator.hasNext());
+
+        ResultBuffer buffer = new ResultBuffer(1);
+        for (int i = 0; i < 2; i++) { // the buffer should be reusable
+            assertSame(buffer, getter.run(newStruct(), buffer));
+            assertEquals(expected, buffer.toMap());
+            assertEquals(expected.size(), buffer.size());
+            expected.forEach((path, value) -> assertEquals(value, buffer.value(buffer.indexOf(path))));
+        }
     }
 
     @Test
@@ -268,6 +290,7 @@ class StructAccessorTest {
         assertEquals(org, newStruct()); // source struct should not be modified
 
         assertEquals(expected, updater.run(org, newValue)); // Updater should be idempotent
+        assertEquals(expected, updater.transform(org, current -> newValue));
     }
 
     @Test
@@ -280,6 +303,35 @@ class StructAccessorTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void testLocateTask() {
+        Struct org = newStruct();
+        Locations<Struct> locations = new StructAccessor.Updater("$.struct.struct_array[*].string_element").locate(org);
+        assertEquals(3, locations.size());
+        assertEquals("$.struct.struct_array[2].string_element", locations.get(2).path());
+        for (Locations.Location location : locations) {
+            location.set(((String) location.get()).toUpperCase());
+        }
+        assertEquals("ORIGINAL_ELEMENT2", locations.get(2).get());
+
+        Struct expected = newStruct();
+        for (Struct elem : expected.getStruct("struct").<Struct>getArray("struct_array")) {
+            elem.put("string_element", elem.getString("string_element").toUpperCase());
+        }
+        assertEquals(expected, locations.record());
+        assertEquals(newStruct(), org); // source should not be modified
+
+        // array elements
+        locations = new StructAccessor.Updater("$.struct.string_array[0]").locate(org);
+        locations.get(0).set("new");
+        assertEquals("new", locations.record().getStruct("struct").getArray("string_array").get(0));
+
+        // the schema is validated
+        Locations.Location text = new StructAccessor.Updater("$.text").locate(org).get(0);
+        assertThrows(JsonPathException.class, () -> text.set(1));
+        assertThrows(JsonPathException.class, () -> text.set(null));
+    }
+
     @Test
     public void testUpdateTaskFailure() {
         Struct s = newStruct();
@@ -288,4 +340,333 @@ class StructAccessorTest {
         assertThrows(JsonPathException.class, () -> new StructAccessor.Updater("$.struct[0]").run(s, Collections.singletonMap("$.struct[0]", "foo")));
         assertThrows(JsonPathException.class, () -> new StructAccessor.Updater("$.struct.string_array.foo").run(s, Collections.singletonMap("$.struct.string_array.foo", "foo")));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGetTypedTask() {
+        Schema sample = SchemaBuilder.struct()
+                .field("value", Schema.FLOAT64_SCHEMA)
+                .field("count", Schema.INT32_SCHEMA)
+                .field("valid", Schema.OPTIONAL_BOOLEAN_SCHEMA)
+                .field("at", org.apache.kafka.connect.data.Timestamp.SCHEMA)
+                .build();
+        Schema schema = SchemaBuilder.struct()
+                .field("samples", SchemaBuilder.array(sample).build())
+                .field("codes", SchemaBuilder.array(Schema.OPTIONAL_INT64_SCHEMA).build())
+                .build();
+        Struct s = new Struct(schema)
+                .put("samples", Arrays.asList(
+                        new Struct(sample).put("value", 1.5).put("count", 1).put("valid", true).put("at", new Date(0)),
+                        new Struct(sample).put("value", 2.5).put("count", 2).put("at", new Date(0))))
+                .put("codes", Arrays.asList(10L, null, 30L));
+
+        assertArrayEquals(new double[]{1.5, 2.5}, new StructAccessor.Getter("$.samples[*].value").getDoubles(s));
+        assertArrayEquals(new long[]{1, 2}, new StructAccessor.Getter("$.samples[*].count").getLongs(s));
+        assertArrayEquals(new double[]{1.0, 2.0}, new StructAccessor.Getter("$.samples[*].count").getDoubles(s));
+        assertArrayEquals(new boolean[]{true}, new StructAccessor.Getter("$.samples[*].valid").getBooleans(s)); // null fields are not matched
+
+        LongColumn column = new StructAccessor.Getter("$.codes[*]").getLongs(s, new LongColumn(1));
+        assertEquals(3, column.size());
+        assertEquals(1, column.nullCount());
+        assertTrue(column.isNull(1));
+        assertNull(column.getBoxed(1));
+        assertEquals(30L, column.get(2));
+        new StructAccessor.Getter("$.codes[0]").getLongs(s, column); // values are appended
+        assertArrayEquals(new long[]{10, 0, 30, 10}, column.toArray());
+
+        // the types are checked against the schema even if nothing is matched
+        Struct empty = new Struct(schema).put("samples", Collections.emptyList()).put("codes", Collections.emptyList());
+        assertThrows(JsonPathException.class, () -> new StructAccessor.Getter("$.samples[*].value").getLongs(empty));
+        assertThrows(JsonPathException.class, () -> new StructAccessor.Getter("$.samples[*].at").getLongs(empty));
+        assertThrows(JsonPathException.class, () -> new StructAccessor.Getter("$.samples[*].count").getBooleans(empty));
+        Accessor.MismatchCounter counter = new Accessor.MismatchCounter();
+        assertEquals(0, new StructAccessor.Getter("$.samples[*].value", counter).getLongs(s).length);
+        assertEquals(1, counter.count());
+    }
+
+    @Test
+    public void testDiffTask() {
+        Struct before = newStruct();
+        Struct after = newStruct();
+        ((Struct) after.getStruct("struct").getArray("struct_array").get(1)).put("string_element", "changed");
+        after.put("optional_struct", new Struct(SCHEMA.field("optional_struct").schema()).put("elem", "added"));
+
+        StructAccessor.Differ differ = new StructAccessor.Differ(Arrays.asList(
+                "$.text", "$.struct.struct_array[*].string_element", "$.optional_struct.elem", "$.struct.sub_text"));
+        assertEquals(new LinkedHashSet<>(Arrays.asList("$.struct.struct_array[1].string_element", "$.optional_struct.elem")), differ.run(before, after));
+        assertTrue(differ.changed(before, after));
+
+        StructAccessor.Differ unchanged = new StructAccessor.Differ(Arrays.asList("$.text", "$.struct.string_array[*]", "$.struct.struct_array[0]"));
+        assertEquals(Collections.emptySet(), unchanged.run(before, after));
+        assertFalse(unchanged.changed(before, after));
+        assertFalse(differ.changed(before, before));
+
+        // subtrees which are the same instance are not walked
+        assertFalse(new StructAccessor.Differ(Collections.singletonList("$.text[0]")).changed(before, after));
+        after.put("text", "changed");
+        assertThrows(JsonPathException.class, () -> new StructAccessor.Differ(Collections.singletonList("$.text[0]")).run(before, after));
+        assertFalse(new StructAccessor.Differ(Collections.singletonList("$.text[0]"), Accessor.MismatchHandler.IGNORE).changed(before, after));
+
+        // a null element or field differs from a missing one
+        Schema withNoteSchema = SchemaBuilder.struct()
+                .field("tags", SchemaBuilder.array(Schema.OPTIONAL_STRING_SCHEMA).build())
+                .field("note", Schema.OPTIONAL_STRING_SCHEMA)
+                .build();
+        Schema withoutNoteSchema = SchemaBuilder.struct()
+                .field("tags", SchemaBuilder.array(Schema.OPTIONAL_STRING_SCHEMA).build())
+                .build();
+        Struct withNull = new Struct(withNoteSchema).put("tags", Arrays.asList("a", null));
+        Struct shrunk = new Struct(withoutNoteSchema).put("tags", Collections.singletonList("a"));
+        StructAccessor.Differ nulls = new StructAccessor.Differ(Arrays.asList("$.tags[*]", "$.note"));
+        assertEquals(new LinkedHashSet<>(Arrays.asList("$.tags[1]", "$.note")), nulls.run(withNull, shrunk));
+        assertTrue(nulls.changed(shrunk, withNull));
+        assertFalse(nulls.changed(withNull, new Struct(withNoteSchema).put("tags", Arrays.asList("a", null))));
+    }
+
+    @Test
+    public void testColumnTask() {
+        Schema schema = SchemaBuilder.struct()
+                .field("id", Schema.INT32_SCHEMA)
+                .field("price", Schema.OPTIONAL_FLOAT64_SCHEMA)
+                .field("name", Schema.STRING_SCHEMA)
+                .field("tags", SchemaBuilder.array(Schema.BOOLEAN_SCHEMA).build())
+                .build();
+        List<Struct> batch = Arrays.asList(
+                new Struct(schema).put("id", 1).put("price", 1.5).put("name", "a").put("tags", Arrays.asList(true, false)),
+                new Struct(schema).put("id", 2).put("name", "b").put("tags", Collections.emptyList()));
+        List<String> paths = Arrays.asList("$.id", "$.price", "$.name", "$.tags[1]", "$.unknown");
+
+        ColumnBatch columns = new StructAccessor.ColumnGetter(paths).run(batch);
+        assertEquals(2, columns.size());
+        assertEquals(paths, columns.paths());
+        assertArrayEquals(new long[]{1, 2}, ((LongColumn) columns.column("$.id")).toArray());
+        DoubleColumn price = (DoubleColumn) columns.column("$.price");
+        assertEquals(1.5, price.get(0));
+        assertTrue(price.isNull(1));
+        assertArrayEquals(new Object[]{"a", "b"}, ((ObjectColumn) columns.column(2)).toArray());
+        BooleanColumn tags = (BooleanColumn) columns.column("$.tags[1]");
+        assertFalse(tags.isNull(0));
+        assertTrue(tags.isNull(1));
+        assertEquals(2, columns.column("$.unknown").nullCount());
+
+        ((LongColumn) columns.column("$.id")).set(1, 20);
+        price.set(1, 2.5); // a null field is not replaced, as with Updater
+        ((ObjectColumn) columns.column("$.name")).set(0, null); // null keeps the current value
+        List<Struct> updated = new StructAccessor.ColumnUpdater(Arrays.asList("$.id", "$.price", "$.name")).run(batch, columns);
+        assertEquals(new Struct(schema).put("id", 1).put("price", 1.5).put("name", "a").put("tags", Arrays.asList(true, false)), updated.get(0));
+        assertEquals(new Struct(schema).put("id", 20).put("name", "b").put("tags", Collections.emptyList()), updated.get(1));
+        assertEquals(2, batch.get(1).get("id")); // source should not be modified
+
+        assertThrows(JsonPathException.class, () -> new StructAccessor.ColumnGetter(Collections.singletonList("$.tags[*]")));
+        assertThrows(JsonPathException.class, () -> new StructAccessor.ColumnUpdater(Collections.singletonList("$.text")).run(batch, columns));
+        assertThrows(JsonPathException.class, () -> new StructAccessor.ColumnUpdater(paths).run(batch.subList(0, 1), columns));
+    }
+
+    @Test
+    public void testLenientGetTask() {
+        Struct s = newStruct();
+        Accessor.MismatchCounter counter = new Accessor.MismatchCounter();
+        assertEquals(new HashMap<String, Object>(), new StructAccessor.Getter("$.struct[0]", counter).run(s));
+        assertEquals(new HashMap<String, Object>(), new StructAccessor.Getter("$.struct.string_array[*].foo", counter).run(s));
+        assertEquals(4, counter.count());
+        assertThrows(JsonPathException.class, () -> new StructAccessor.Getter("$.struct.string_array[*].foo").run(s));
+    }
+
+    @Test
+    public void testLenientUpdateTask() {
+        Accessor.MismatchCounter counter = new Accessor.MismatchCounter();
+        // intermediate values which are not a Struct should not be replaced
+        assertEquals(newStruct(), new StructAccessor.Updater("$.text.foo", counter).run(newStruct(), "updated!"));
+        assertEquals(newStruct(), new StructAccessor.Updater("$.struct.sub_text[*]", counter).run(newStruct(), "updated!"));
+        assertEquals(2, counter.count());
+    }
+
+    @Test
+    public void testRetypingUpdateTask() {
+        Struct s = newStruct();
+        StructAccessor.RetypingUpdater updater = new StructAccessor.RetypingUpdater("$.text", Schema.Type.INT64);
+        Struct actual = updater.run(s, 42L);
+        actual.validate();
+        assertEquals(Schema.INT64_SCHEMA, actual.schema().field("text").schema());
+        assertEquals(42L, actual.get("text"));
+        // fields which are not on the path are shared with the original
+        assertSame(s.get("struct"), actual.get("struct"));
+        assertEquals("original_text", s.get("text"));
+        // the derived schema is cached for the same input schema
+        assertSame(actual.schema(), updater.run(newStruct(), 1L).schema());
+        assertSame(actual.schema(), updater.outputSchema(SCHEMA));
+
+        updater = new StructAccessor.RetypingUpdater("$.struct.struct_array[*].string_element", Schema.OPTIONAL_INT32_SCHEMA);
+        actual = updater.run(newStruct(), new HashMap<String, Object>() {{
+            put("$.struct.struct_array[0].string_element", 0);
+            put("$.struct.struct_array[1].string_element", 1);
+            put("$.struct.struct_array[2].string_element", 2);
+        }});
+        actual.validate();
+        assertEquals(SUB_STRUCT_SCHEMA.field("string_array").schema(), actual.schema().field("struct").schema().field("string_array").schema());
+        assertEquals(new HashMap<String, Object>() {{
+            put("$.struct.struct_array[0].string_element", 0);
+            put("$.struct.struct_array[1].string_element", 1);
+            put("$.struct.struct_array[2].string_element", 2);
+        }}, new StructAccessor.Getter("$.struct.struct_array[*].string_element").run(actual));
+
+        // the schema is not changed if the type is the same
+        updater = new StructAccessor.RetypingUpdater("$.struct.string_array[1]", Schema.Type.STRING);
+        actual = updater.run(newStruct(), "updated!");
+        assertSame(SCHEMA, actual.schema());
+        assertEquals("updated!", new StructAccessor.Getter("$.struct.string_array[1]").run(actual).get("$.struct.string_array[1]"));
+    }
+
+    @Test
+    public void testRetypingUpdateTaskFailure() {
+        Struct s = newStruct();
+        assertThrows(JsonPathException.class, () -> new StructAccessor.RetypingUpdater("$.struct", Schema.Type.STRUCT));
+        // only a wildcard can change the schema of array elements
+        assertThrows(JsonPathException.class, () -> new StructAccessor.RetypingUpdater("$.struct.string_array[1]", Schema.Type.INT64).run(s, 1L));
+        // values whose schema is changed must be updated
+        assertThrows(JsonPathException.class, () -> new StructAccessor.RetypingUpdater("$.text", Schema.Type.INT64).run(s, Collections.emptyMap()));
+        assertThrows(JsonPathException.class, () -> new StructAccessor.RetypingUpdater("$.struct.struct_array[*].string_element", Schema.Type.INT32)
+                .run(s, Collections.singletonMap("$.struct.struct_array[1].string_element", 1)));
+        // values must match the new schema
+        assertThrows(JsonPathException.class, () -> new StructAccessor.RetypingUpdater("$.text", Schema.Type.INT64).run(s, "text"));
+    }
+
+    @Test
+    public void testRemoveTask() {
+        Struct org = newStruct();
+        StructAccessor.Remover remover = new StructAccessor.Remover("$.struct.struct_array[*].string_element");
+        Struct actual = remover.run(org);
+        actual.validate();
+        Schema elementSchema = actual.schema().field("struct").schema().field("struct_array").schema().valueSchema();
+        assertEquals(Collections.singletonList("optional_string_element"), elementSchema.fields().stream().map(Field::name).collect(Collectors.toList()));
+        assertEquals(3, actual.getStruct("struct").getArray("struct_array").size());
+        // values which are not on the path are shared, and the original is not modified
+        assertSame(org.getStruct("struct").getArray("string_array"), actual.getStruct("struct").getArray("string_array"));
+        assertEquals(newStruct(), org);
+        // the pruned schema is cached for the same input schema
+        assertSame(actual.schema(), remover.run(newStruct()).schema());
+
+        actual = new StructAccessor.Remover("$.binary").run(org);
+        actual.validate();
+        assertNull(actual.schema().field("binary"));
+        assertEquals("original_text", actual.get("text"));
+
+        actual = new StructAccessor.Remover("$.struct.string_array[1]").run(org);
+        assertSame(SCHEMA, actual.schema());
+        assertEquals(Arrays.asList("original_string_array0", "original_string_array2"), actual.getStruct("struct").getArray("string_array"));
+
+        // nothing is matched
+        assertSame(org, new StructAccessor.Remover("$.unknown").run(org));
+    }
+
+    @Test
+    public void testRemoveTaskFailure() {
+        Struct s = newStruct();
+        assertThrows(JsonPathException.class, () -> new StructAccessor.Remover("$.struct.struct_array[0].string_element").run(s));
+        assertThrows(JsonPathException.class, () -> new StructAccessor.Remover("$.text.foo").run(s));
+        JsonPathException e = assertThrows(JsonPathException.class, () -> new StructAccessor.Remover("$.struct.struct_array[2].string_element.foo").run(s));
+        assertTrue(e.getMessage().contains("$.struct.struct_array[2].string_element.foo"), e.getMessage());
+    }
+
+    @Test
+    public void testUpsertTask() {
+        Struct org = newStruct();
+        StructAccessor.Upserter upserter = new StructAccessor.Upserter("$.meta.routing.region", Schema.STRING_SCHEMA);
+        Struct actual = upserter.run(org, "eu");
+        actual.validate();
+        assertEquals("eu", new StructAccessor.Getter("$.meta.routing.region").run(actual).get("$.meta.routing.region"));
+        assertTrue(actual.schema().field("meta").schema().isOptional());
+        assertSame(org.get("struct"), actual.get("struct"));
+        assertEquals(newStruct(), org);
+        // the extended schema is cached for the same input schema
+        assertSame(actual.schema(), upserter.run(newStruct(), "us").schema());
+
+        // existing fields keep their schema if it is the same
+        actual = new StructAccessor.Upserter("$.struct.sub_text", Schema.STRING_SCHEMA).run(org, "updated!");
+        assertSame(SCHEMA, actual.schema());
+        assertEquals("updated!", actual.getStruct("struct").get("sub_text"));
+
+        // a null optional Struct is created
+        actual = new StructAccessor.Upserter("$.optional_struct.elem", Schema.STRING_SCHEMA).run(org, "created");
+        actual.validate();
+        assertSame(SCHEMA, actual.schema());
+        assertEquals("created", actual.getStruct("optional_struct").get("elem"));
+
+        actual = new StructAccessor.Upserter("$.struct.struct_array[*].index", Schema.OPTIONAL_INT32_SCHEMA).run(org, new HashMap<String, Object>() {{
+            put("$.struct.struct_array[0].index", 0);
+            put("$.struct.struct_array[2].index", 2);
+        }});
+        actual.validate();
+        assertEquals(new HashMap<String, Object>() {{
+            put("$.struct.struct_array[0].index", 0);
+            put("$.struct.struct_array[2].index", 2);
+        }}, new StructAccessor.Getter("$.struct.struct_array[*].index").run(actual));
+
+        // with the schema unchanged, the elements without a value to upsert are shared
+        Struct indexed = actual;
+        actual = new StructAccessor.Upserter("$.struct.struct_array[*].index", Schema.OPTIONAL_INT32_SCHEMA).run(indexed,
+                Collections.singletonMap("$.struct.struct_array[1].index", 1));
+        actual.validate();
+        assertSame(indexed.schema(), actual.schema());
+        assertSame(indexed.getStruct("struct").getArray("struct_array").get(0), actual.getStruct("struct").getArray("struct_array").get(0));
+        assertEquals(1, ((Struct) actual.getStruct("struct").getArray("struct_array").get(1)).get("index"));
+    }
+
+    @Test
+    public void testUpsertTaskFailure() {
+        Struct s = newStruct();
+        assertThrows(JsonPathException.class, () -> new StructAccessor.Upserter("$.unknown[*].foo", Schema.STRING_SCHEMA).run(s, "foo"));
+        assertThrows(JsonPathException.class, () -> new StructAccessor.Upserter("$.struct.struct_array[0].foo", Schema.STRING_SCHEMA).run(s, "foo"));
+        assertThrows(JsonPathException.class, () -> new StructAccessor.Upserter("$.text.foo", Schema.STRING_SCHEMA).run(s, "foo"));
+    }
+
+    @Test
+    public void testMoveTask() {
+        Struct org = newStruct();
+        StructAccessor.Mover mover = new StructAccessor.Mover("$.struct.sub_text", "$.struct.sub.text");
+        Struct actual = mover.run(org);
+        actual.validate();
+        assertNull(actual.schema().field("struct").schema().field("sub_text"));
+        assertEquals("original_sub_text", new StructAccessor.Getter("$.struct.sub.text").run(actual).get("$.struct.sub.text"));
+        assertSame(org.getStruct("struct").getArray("struct_array"), actual.getStruct("struct").getArray("struct_array"));
+        assertEquals(newStruct(), org);
+        // the derived schema is cached for the same input schema
+        assertSame(actual.schema(), mover.run(newStruct()).schema());
+        assertSame(actual.schema(), mover.outputSchema(SCHEMA));
+
+        actual = new StructAccessor.Mover("$.struct", "$.renamed").run(org);
+        actual.validate();
+        assertEquals(Arrays.asList("text", "binary", "optional_struct", "renamed"), actual.schema().fields().stream().map(Field::name).collect(Collectors.toList()));
+        assertSame(org.get("struct"), actual.get("renamed"));
+
+        // the target field is overwritten with the schema of the source field
+        actual = new StructAccessor.Mover("$.binary", "$.text").run(org);
+        actual.validate();
+        assertEquals(Schema.OPTIONAL_BYTES_SCHEMA, actual.schema().field("text").schema());
+        assertNull(actual.get("text"));
+
+        // nothing is moved
+        assertSame(org, new StructAccessor.Mover("$.unknown", "$.foo").run(org));
+
+        assertThrows(JsonPathException.class, () -> new StructAccessor.Mover("$.struct.string_array[0]", "$.foo"));
+        assertThrows(JsonPathException.class, () -> new StructAccessor.Mover("$.struct", "$.struct.foo"));
+    }
+
+    @Test
+    public void testProjectTask() {
+        Struct org = newStruct();
+        StructAccessor.Projector projector = new StructAccessor.Projector(Arrays.asList("$.text", "$.struct.string_array", "$.struct.struct_array[1].string_element", "$.unknown.foo"));
+        Struct actual = projector.run(org);
+        actual.validate();
+        assertEquals(Arrays.asList("text", "struct"), actual.schema().fields().stream().map(Field::name).collect(Collectors.toList()));
+        Schema subSchema = actual.schema().field("struct").schema();
+        assertEquals(Arrays.asList("struct_array", "string_array"), subSchema.fields().stream().map(Field::name).collect(Collectors.toList()));
+        assertEquals(Collections.singletonList("string_element"), subSchema.field("struct_array").schema().valueSchema().fields().stream().map(Field::name).collect(Collectors.toList()));
+        for (String path : Arrays.asList("$.text", "$.struct.string_array", "$.struct.struct_array[*].string_element")) {
+            assertEquals(new StructAccessor.Getter(path).run(org), new StructAccessor.Getter(path).run(actual), path);
+        }
+        // the selected subtrees are shared, and the projected schema is cached
+        assertSame(org.getStruct("struct").getArray("string_array"), actual.getStruct("struct").getArray("string_array"));
+        assertSame(actual.schema(), projector.run(newStruct()).schema());
+        assertSame(org, new StructAccessor.Projector(Collections.singletonList("$")).run(org));
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransformCacheTest {
+    @Test
+    public void testApply() {
+        AtomicInteger calls = new AtomicInteger();
+        TransformCache cache = new TransformCache(100, v -> {
+            calls.incrementAndGet();
+            return "x".equals(v) ? null : "hashed-" + v;
+        });
+        assertEquals(1.0, cache.hitRate());
+
+        assertEquals("hashed-a", cache.apply("a"));
+        assertEquals("hashed-a", cache.apply("a"));
+        assertNull(cache.apply("x"));
+        assertNull(cache.apply("x")); // null results are also memoized
+        assertEquals(2, calls.get());
+        assertEquals(2, cache.hitCount());
+        assertEquals(2, cache.missCount());
+        assertEquals(0.5, cache.hitRate());
+        assertEquals(2, cache.size());
+
+        // nulls and arrays are not cached
+        assertEquals("hashed-null", cache.apply(null));
+        cache.apply(new byte[]{1});
+        cache.apply(new byte[]{1});
+        assertEquals(5, calls.get());
+        assertEquals(2, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals("hashed-a", cache.apply("a"));
+        assertEquals(6, calls.get());
+    }
+
+    @Test
+    public void testEviction() {
+        TransformCache cache = new TransformCache(32, v -> v);
+        for (int i = 0; i < 1000; i++) {
+            cache.apply(i);
+        }
+        assertTrue(cache.size() <= 32, "size=" + cache.size());
+        assertEquals(1000 - cache.size(), cache.evictionCount());
+
+        // the most recently used entries are kept
+        long misses = cache.missCount();
+        cache.apply(999);
+        assertEquals(misses, cache.missCount());
+    }
+
+    @Test
+    public void testShared() {
+        TransformCache cache = TransformCache.shared("test-shared", 10, v -> v + "!");
+        assertSame(cache, TransformCache.shared("test-shared", 20, v -> v + "?"));
+        assertEquals("a!", TransformCache.shared("test-shared", 20, v -> v + "?").apply("a"));
+        TransformCache.removeShared("test-shared");
+        assertNotSame(cache, TransformCache.shared("test-shared", 10, v -> v + "!"));
+        TransformCache.removeShared("test-shared");
+
+        assertThrows(IllegalArgumentException.class, () -> new TransformCache(0, v -> v));
+    }
+}
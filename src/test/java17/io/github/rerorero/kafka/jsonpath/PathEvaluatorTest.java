@@ -0,0 +1,61 @@
+package io.github.rerorero.kafka.jsonpath;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PathEvaluatorTest {
+    @Test
+    public void testEvents() throws Exception {
+        Map<String, Object> m = new HashMap<>();
+        m.put("tags", List.of("a", "b", "c"));
+        m.put("text", "foo");
+
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(PathEvaluationEvent.NAME).withThreshold(Duration.ZERO);
+            recording.enable(PathMismatchEvent.NAME);
+            recording.start();
+            assertEquals(3, new MapAccessor.Getter("$.tags[*]").run(m).size());
+            assertEquals(1, new MapAccessor.Getter("$.tags[1]").count(m));
+            Accessor.MismatchCounter counter = new Accessor.MismatchCounter();
+            assertTrue(new MapAccessor.Getter("$.text.foo", counter).run(m).isEmpty());
+            recording.stop();
+
+            Path file = Files.createTempFile("path-evaluator", ".jfr");
+            try {
+                recording.dump(file);
+                events = RecordingFile.readAllEvents(file);
+            } finally {
+                Files.delete(file);
+            }
+        }
+
+        List<RecordedEvent> evaluations = events.stream()
+                .filter(e -> e.getEventType().getName().equals(PathEvaluationEvent.NAME))
+                .collect(Collectors.toList());
+        assertEquals(List.of("$.tags[*]", "$.tags[1]", "$.text.foo"),
+                evaluations.stream().map(e -> e.getString("path")).collect(Collectors.toList()));
+        assertEquals(List.of(3, 1, 0),
+                evaluations.stream().map(e -> e.getInt("matches")).collect(Collectors.toList()));
+
+        List<RecordedEvent> mismatches = events.stream()
+                .filter(e -> e.getEventType().getName().equals(PathMismatchEvent.NAME))
+                .collect(Collectors.toList());
+        assertEquals(1, mismatches.size());
+        assertEquals("$.text.foo", mismatches.get(0).getString("path"));
+        assertEquals("a Map", mismatches.get(0).getString("expected"));
+        assertEquals(String.class.getName(), mismatches.get(0).getString("actual"));
+    }
+}